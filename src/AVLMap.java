@@ -0,0 +1,387 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Map backed by an AVL tree of keys, each node holding the value of its key.
+ * Lookups compare the key directly, so finding a record needs only its key and returns the
+ * record itself, without building a probe object. Every update, including
+ * {@link #putIfAbsent} and {@link #computeIfAbsent}, finds the key or its insertion point
+ * in a single descent and then retraces the same path to rebalance.
+ * @param <K> The type of the keys, must be comparable.
+ * @param <V> The type of the values.
+ */
+public class AVLMap<K extends Comparable<K>, V> {
+    /**
+     * Upper bound of the height of an AVL tree with at most Integer.MAX_VALUE nodes.
+     */
+    private static final int MAX_HEIGHT = 64;
+
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        Node<K, V> left;
+        Node<K, V> right;
+        int height = 1;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final Comparator<? super K> comparator;
+    private Node<K, V> root;
+    private int size;
+
+    // Path of the last descent, reused by the retracing after an insertion or a removal
+    private final Node<K, V>[] path = newPath();
+    private int depth;
+    private int lastCompare;
+
+    public AVLMap() {
+        this(null);
+    }
+
+    /**
+     * Creates a map whose keys are ordered by a comparator.
+     * @param comparator The order of the keys, or null for their natural order.
+     */
+    public AVLMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> Node<K, V>[] newPath() {
+        return (Node<K, V>[]) new Node[MAX_HEIGHT];
+    }
+
+    /**
+     * Gets the number of entries.
+     * @return The number of keys in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the map is empty.
+     * @return true if the map is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int compare(K a, K b) {
+        return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Gets the value of a key, without allocating.
+     * @param key The key to look up.
+     * @return The value, or null if the key is not in the map.
+     */
+    public V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int compareResult = compare(key, node.key);
+            if (compareResult == 0) {
+                return node.value;
+            }
+            node = compareResult < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if a key is in the map.
+     * @param key The key to look up.
+     * @return true if the map has an entry for the key.
+     */
+    public boolean containsKey(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int compareResult = compare(key, node.key);
+            if (compareResult == 0) {
+                return true;
+            }
+            node = compareResult < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * Associates a value with a key, replacing the previous value if any.
+     * @param key The key.
+     * @param value The value.
+     * @return The previous value, or null if the key was not in the map.
+     */
+    public V put(K key, V value) {
+        Node<K, V> node = descend(key);
+        if (node != null) {
+            clearPath();
+            V previous = node.value;
+            node.value = value;
+            return previous;
+        }
+        attach(key, value);
+        return null;
+    }
+
+    /**
+     * Associates a value with a key unless the key is already in the map, in one descent.
+     * @param key The key.
+     * @param value The value.
+     * @return The current value if the key was already in the map, or null if the value was added.
+     */
+    public V putIfAbsent(K key, V value) {
+        Node<K, V> node = descend(key);
+        if (node != null) {
+            clearPath();
+            return node.value;
+        }
+        attach(key, value);
+        return null;
+    }
+
+    /**
+     * Gets the value of a key, computing and adding it first if the key is not in the map,
+     * in one descent. Nothing is added if the function returns null.
+     * @param key The key.
+     * @param mappingFunction Computes the value of a missing key; it must not modify the map.
+     * @return The current or computed value, or null if the function returned null.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Node<K, V> node = descend(key);
+        if (node != null) {
+            clearPath();
+            return node.value;
+        }
+        V value = mappingFunction.apply(key);
+        if (value == null) {
+            clearPath();
+            return null;
+        }
+        attach(key, value);
+        return value;
+    }
+
+    /**
+     * Removes the entry of a key.
+     * @param key The key to remove.
+     * @return The value of the removed entry, or null if the key was not in the map.
+     */
+    public V remove(K key) {
+        Node<K, V> node = descend(key);
+        if (node == null) {
+            clearPath();
+            return null;
+        }
+        V removed = node.value;
+
+        Node<K, V>[] path = this.path;
+        int depth = this.depth;
+        if (node.left != null && node.right != null) {
+            // Node with two children: unlink the inorder successor (smallest in the right subtree)
+            // and relink that node in place of this one, since nodes keep their key final
+            Node<K, V> successor = node.right;
+            path[depth++] = successor;
+            while (successor.left != null) {
+                successor = successor.left;
+                path[depth++] = successor;
+            }
+            int nodeIndex = this.depth - 1;
+            replaceChild(depth - 1, successor, successor.right);
+            successor.left = node.left;
+            successor.right = node.right;
+            successor.height = node.height;
+            replaceChild(nodeIndex, node, successor);
+            path[nodeIndex] = successor;
+            depth--;
+        } else {
+            replaceChild(depth - 1, node, node.left != null ? node.left : node.right);
+            depth--;
+        }
+        path[depth] = null;
+        size--;
+
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<K, V> current = path[i];
+            int oldHeight = current.height;
+            int balance = height(current.left) - height(current.right);
+            if (balance > 1 || balance < -1) {
+                Node<K, V> newRoot = rebalance(current, balance);
+                replaceChild(i, current, newRoot);
+                if (newRoot.height == oldHeight) {
+                    break;
+                }
+            } else {
+                current.height = 1 + Math.max(height(current.left), height(current.right));
+                if (current.height == oldHeight) {
+                    break;
+                }
+            }
+        }
+        this.depth = depth;
+        clearPath();
+        return removed;
+    }
+
+    /**
+     * Walks down to a key, remembering the path in path[0..depth) and the last comparison.
+     * @return The node of the key, or null if the key is not in the map.
+     */
+    private Node<K, V> descend(K key) {
+        int depth = 0;
+        Node<K, V> node = root;
+        while (node != null) {
+            path[depth++] = node;
+            int compareResult = compare(key, node.key);
+            if (compareResult == 0) {
+                this.depth = depth;
+                return node;
+            }
+            lastCompare = compareResult;
+            node = compareResult < 0 ? node.left : node.right;
+        }
+        this.depth = depth;
+        return null;
+    }
+
+    /**
+     * Links a new node below the last node of a descent that did not find its key, then
+     * retraces upwards until a subtree keeps its height or a rotation fixes it.
+     */
+    private void attach(K key, V value) {
+        Node<K, V> node = new Node<>(key, value);
+        size++;
+        if (depth == 0) {
+            root = node;
+            return;
+        }
+        Node<K, V> parent = path[depth - 1];
+        if (lastCompare < 0) {
+            parent.left = node;
+        } else {
+            parent.right = node;
+        }
+
+        for (int i = depth - 1; i >= 0; i--) {
+            Node<K, V> current = path[i];
+            int oldHeight = current.height;
+            int balance = height(current.left) - height(current.right);
+            if (balance > 1 || balance < -1) {
+                replaceChild(i, current, rebalance(current, balance));
+                break;
+            }
+            current.height = 1 + Math.max(height(current.left), height(current.right));
+            if (current.height == oldHeight) {
+                break;
+            }
+        }
+        clearPath();
+    }
+
+    private Node<K, V> rebalance(Node<K, V> node, int balance) {
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (height(node.right.right) < height(node.right.left)) {
+            node.right = rotateRight(node.right);
+        }
+        return rotateLeft(node);
+    }
+
+    private Node<K, V> rotateRight(Node<K, V> y) {
+        Node<K, V> x = y.left;
+        y.left = x.right;
+        x.right = y;
+        y.height = 1 + Math.max(height(y.left), height(y.right));
+        x.height = 1 + Math.max(height(x.left), height(x.right));
+        return x;
+    }
+
+    private Node<K, V> rotateLeft(Node<K, V> x) {
+        Node<K, V> y = x.right;
+        x.right = y.left;
+        y.left = x;
+        x.height = 1 + Math.max(height(x.left), height(x.right));
+        y.height = 1 + Math.max(height(y.left), height(y.right));
+        return y;
+    }
+
+    /**
+     * Links a new subtree in place of a node of the path.
+     */
+    private void replaceChild(int index, Node<K, V> oldChild, Node<K, V> newChild) {
+        if (index == 0) {
+            root = newChild;
+        } else {
+            Node<K, V> parent = path[index - 1];
+            if (parent.left == oldChild) {
+                parent.left = newChild;
+            } else {
+                parent.right = newChild;
+            }
+        }
+    }
+
+    /**
+     * Drops the references held by the path buffer so removed entries can be collected.
+     */
+    private void clearPath() {
+        Arrays.fill(path, 0, depth, null);
+        depth = 0;
+    }
+
+    /**
+     * Performs an action on every entry in key order.
+     * @param action The action to perform.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Node<K, V>[] stack = newPath();
+        int top = 0;
+        Node<K, V> node = root;
+        while (node != null || top > 0) {
+            while (node != null) {
+                stack[top++] = node;
+                node = node.left;
+            }
+            node = stack[--top];
+            action.accept(node.key, node.value);
+            node = node.right;
+        }
+    }
+
+    /**
+     * Gets the values in key order.
+     * @return A list of all values.
+     */
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        forEach((key, value) -> result.add(value));
+        return result;
+    }
+
+    /**
+     * Gets the keys in order.
+     * @return A list of all keys.
+     */
+    public List<K> keys() {
+        List<K> result = new ArrayList<>(size);
+        forEach((key, value) -> result.add(key));
+        return result;
+    }
+}
@@ -5,14 +5,20 @@ package src;
  * @param <T> The type of data stored in the node, must be comparable.
  */
 public class AVLNode<T extends Comparable<T>> {
-    private T data;
-    private AVLNode<T> left;
-    private AVLNode<T> right;
-    private int height;
+    // Package-private so the tree's hot loops can read and link nodes directly.
+    T data;
+    AVLNode<T> left;
+    AVLNode<T> right;
+    int height;
+    // Number of nodes in the subtree rooted here, for rank and select queries
+    int size;
+    // Per-column aggregates of the subtree when the tree has an AggregateSpec, null otherwise
+    double[] aggregates;
 
     public AVLNode(T data) {
         this.data = data;
         this.height = 1;
+        this.size = 1;
     }
 
     public T getData() {
@@ -46,4 +52,12 @@ public class AVLNode<T extends Comparable<T>> {
     public void setHeight(int height) {
         this.height = height;
     }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
 } 
\ No newline at end of file
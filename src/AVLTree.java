@@ -1,19 +1,105 @@
 package src;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implementation of an AVL tree data structure.
+ * The elements are ordered by their natural order, or by a comparator given at creation.
+ * Iterators, range views and spliterators walk the tree lazily and are fail-fast: they
+ * throw a ConcurrentModificationException if the tree changes while they are in use.
  * @param <T> The type of data stored in the tree, must be comparable.
  */
-public class AVLTree<T extends Comparable<T>> {
+public class AVLTree<T extends Comparable<T>> implements OrderedSet<T> {
+    /**
+     * Upper bound of the height of an AVL tree with at most Integer.MAX_VALUE nodes (about 1.44 log2 n).
+     */
+    private static final int MAX_HEIGHT = 64;
+
+    /**
+     * Combined size from which the halves of a set operation are forked as separate tasks.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private static final int UNION = 0;
+    private static final int DIFFERENCE = 1;
+    private static final int INTERSECTION = 2;
+
     private AVLNode<T> root;
     private int size;
 
+    /**
+     * Number of structural changes, checked by iterators to fail fast.
+     */
+    private int modCount;
+
+    /**
+     * Order of the elements, or null for their natural order.
+     */
+    private final Comparator<? super T> comparator;
+
+    /**
+     * Columns whose subtree aggregates every node keeps, or null when the tree keeps none.
+     */
+    private final ToDoubleFunction<? super T>[] columns;
+    private final List<String> columnNames;
+
+    /**
+     * Nodes visited by the current insert or remove, reused to keep updates allocation-free.
+     */
+    private final AVLNode<T>[] path = newPath();
+
+    /**
+     * Metrics recorded by insert, search, remove and the rotations, or null when disabled.
+     */
+    private TreeMetrics metrics;
+
     public AVLTree() {
+        this(null);
+    }
+
+    /**
+     * Creates a tree ordered by a comparator. Elements the comparator finds equal are
+     * duplicates, so it should break ties (for instance by id) when several elements share a key.
+     * @param comparator The order of the elements, or null for their natural order.
+     */
+    public AVLTree(Comparator<? super T> comparator) {
+        this(comparator, null);
+    }
+
+    /**
+     * Creates a tree whose nodes keep the aggregates of some numeric columns over their
+     * subtree, for range aggregates in O(log n) with {@link #aggregate}. Keeping them costs
+     * a small array per node and a little work on every update along the changed path.
+     * @param comparator The order of the elements, or null for their natural order.
+     * @param aggregates The columns to aggregate, or null for none.
+     */
+    public AVLTree(Comparator<? super T> comparator, AggregateSpec<T> aggregates) {
         this.root = null;
         this.size = 0;
+        this.comparator = comparator;
+        boolean aggregated = aggregates != null && aggregates.size() > 0;
+        this.columns = aggregated ? aggregates.toArray() : null;
+        this.columnNames = aggregated ? aggregates.getNames() : null;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T extends Comparable<T>> AVLNode<T>[] newPath() {
+        return (AVLNode<T>[]) new AVLNode[MAX_HEIGHT];
     }
 
     /**
@@ -32,13 +118,75 @@ public class AVLTree<T extends Comparable<T>> {
         return size == 0;
     }
 
+    /**
+     * Starts recording the comparisons, rotations, path lengths and latencies of this tree,
+     * and registers them as the MXBean {@code src:type=AVLTree,name=<name>}. Recording
+     * costs two {@link System#nanoTime()} calls and a few counter updates per operation.
+     * @param name The name of the bean, or null to record without registering a bean.
+     * @return The metrics, or null if metrics are turned off with -Davl.metrics=false.
+     * @throws IllegalStateException If the bean cannot be registered.
+     */
+    public TreeMetrics enableMetrics(String name) {
+        if (!TreeMetrics.ENABLED) {
+            return null;
+        }
+        if (metrics == null) {
+            metrics = new TreeMetrics(name, () -> height(root), this::size);
+        }
+        return metrics;
+    }
+
+    /**
+     * Gets the metrics of this tree.
+     * @return The metrics, or null if they were not enabled.
+     */
+    public TreeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Reads the clock at the start of an operation, if metrics are recorded.
+     * @return The current time in nanoseconds, or 0.
+     */
+    private long startTime() {
+        return TreeMetrics.ENABLED && metrics != null ? System.nanoTime() : 0;
+    }
+
     /**
      * Gets the height of a node.
      * @param node The node to get the height of.
      * @return The height of the node, or 0 if the node is null.
      */
     private int height(AVLNode<T> node) {
-        return node == null ? 0 : node.getHeight();
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Gets the comparator that orders the tree.
+     * @return The comparator, or null if the elements use their natural order.
+     */
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Compares two elements with the order of the tree.
+     * @param a The first element.
+     * @param b The second element.
+     * @return A negative number, zero or a positive number as a is less than, equal to or greater than b.
+     */
+    private int compare(T a, T b) {
+        return comparator == null ? a.compareTo(b) : comparator.compare(a, b);
+    }
+
+    /**
+     * Gets the number of nodes in the subtree of a node.
+     * @param node The root of the subtree.
+     * @return The subtree size, or 0 if the node is null.
+     */
+    private int size(AVLNode<T> node) {
+        return node == null ? 0 : node.size;
     }
 
     /**
@@ -47,16 +195,88 @@ public class AVLTree<T extends Comparable<T>> {
      * @return The balance factor of the node.
      */
     private int getBalanceFactor(AVLNode<T> node) {
-        return node == null ? 0 : height(node.getLeft()) - height(node.getRight());
+        return node == null ? 0 : height(node.left) - height(node.right);
     }
 
     /**
-     * Updates the height of a node.
-     * @param node The node to update the height of.
+     * Updates the height and the subtree size of a node from its children.
+     * @param node The node to update.
      */
-    private void updateHeight(AVLNode<T> node) {
+    private void updateHeightAndSize(AVLNode<T> node) {
         if (node != null) {
-            node.setHeight(1 + Math.max(height(node.getLeft()), height(node.getRight())));
+            node.height = 1 + Math.max(height(node.left), height(node.right));
+            node.size = 1 + size(node.left) + size(node.right);
+            if (columns != null) {
+                aggregate(node);
+            }
+        }
+    }
+
+    /**
+     * Creates a node for a new element.
+     * @param value The element.
+     * @return The node, with its aggregates when the tree keeps them.
+     */
+    private AVLNode<T> newNode(T value) {
+        AVLNode<T> node = new AVLNode<>(value);
+        if (columns != null) {
+            aggregate(node);
+        }
+        return node;
+    }
+
+    /**
+     * Adjusts the subtree sizes along a path after an insertion or a removal below it, and
+     * recomputes the aggregates bottom-up. This runs before any rotation, so the rotations
+     * only ever combine children that are already up to date.
+     * @param path The path from the root.
+     * @param depth The number of nodes of the path.
+     * @param delta 1 after an insertion, -1 after a removal.
+     */
+    private void updatePath(AVLNode<T>[] path, int depth, int delta) {
+        for (int i = depth - 1; i >= 0; i--) {
+            AVLNode<T> node = path[i];
+            node.size += delta;
+            if (columns != null) {
+                aggregate(node);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the aggregates of a node from its own element and those of its children.
+     * @param node The node to update.
+     */
+    private void aggregate(AVLNode<T> node) {
+        double[] aggregates = node.aggregates;
+        if (aggregates == null) {
+            aggregates = new double[columns.length * AggregateSpec.SLOTS];
+            node.aggregates = aggregates;
+        }
+        double[] left = node.left == null ? null : node.left.aggregates;
+        double[] right = node.right == null ? null : node.right.aggregates;
+        for (int c = 0, i = 0; c < columns.length; c++, i += AggregateSpec.SLOTS) {
+            double value = columns[c].applyAsDouble(node.data);
+            double sum = value;
+            double min = value;
+            double max = value;
+            double sumOfSquares = value * value;
+            if (left != null) {
+                sum += left[i + AggregateSpec.SUM];
+                min = Math.min(min, left[i + AggregateSpec.MIN]);
+                max = Math.max(max, left[i + AggregateSpec.MAX]);
+                sumOfSquares += left[i + AggregateSpec.SUM_OF_SQUARES];
+            }
+            if (right != null) {
+                sum += right[i + AggregateSpec.SUM];
+                min = Math.min(min, right[i + AggregateSpec.MIN]);
+                max = Math.max(max, right[i + AggregateSpec.MAX]);
+                sumOfSquares += right[i + AggregateSpec.SUM_OF_SQUARES];
+            }
+            aggregates[i + AggregateSpec.SUM] = sum;
+            aggregates[i + AggregateSpec.MIN] = min;
+            aggregates[i + AggregateSpec.MAX] = max;
+            aggregates[i + AggregateSpec.SUM_OF_SQUARES] = sumOfSquares;
         }
     }
 
@@ -66,16 +286,19 @@ public class AVLTree<T extends Comparable<T>> {
      * @return The new root of the rotated subtree.
      */
     private AVLNode<T> rightRotate(AVLNode<T> y) {
-        AVLNode<T> x = y.getLeft();
-        AVLNode<T> T2 = x.getRight();
+        if (TreeMetrics.ENABLED && metrics != null) {
+            metrics.recordRightRotation();
+        }
+        AVLNode<T> x = y.left;
+        AVLNode<T> T2 = x.right;
 
         // Perform rotation
-        x.setRight(y);
-        y.setLeft(T2);
+        x.right = y;
+        y.left = T2;
 
-        // Update heights
-        updateHeight(y);
-        updateHeight(x);
+        // Update heights and sizes
+        updateHeightAndSize(y);
+        updateHeightAndSize(x);
 
         // Return new root
         return x;
@@ -87,16 +310,19 @@ public class AVLTree<T extends Comparable<T>> {
      * @return The new root of the rotated subtree.
      */
     private AVLNode<T> leftRotate(AVLNode<T> x) {
-        AVLNode<T> y = x.getRight();
-        AVLNode<T> T2 = y.getLeft();
+        if (TreeMetrics.ENABLED && metrics != null) {
+            metrics.recordLeftRotation();
+        }
+        AVLNode<T> y = x.right;
+        AVLNode<T> T2 = y.left;
 
         // Perform rotation
-        y.setLeft(x);
-        x.setRight(T2);
+        y.left = x;
+        x.right = T2;
 
-        // Update heights
-        updateHeight(x);
-        updateHeight(y);
+        // Update heights and sizes
+        updateHeightAndSize(x);
+        updateHeightAndSize(y);
 
         // Return new root
         return y;
@@ -104,193 +330,1149 @@ public class AVLTree<T extends Comparable<T>> {
 
     /**
      * Inserts a value into the tree.
+     * Walks down once with one comparison per level, remembering the path, then
+     * retraces upwards only until a subtree keeps its height or a rotation fixes it.
+     * Subtree sizes are incremented along the whole path.
      * @param value The value to insert.
      */
     public void insert(T value) {
-        root = insert(root, value);
+        long startTime = startTime();
+        if (root == null) {
+            root = newNode(value);
+            size++;
+            modCount++;
+            recordInsert(0, startTime);
+            return;
+        }
+
+        AVLNode<T>[] path = this.path;
+        int depth = 0;
+        AVLNode<T> node = root;
+        int compareResult;
+        while (true) {
+            path[depth++] = node;
+            compareResult = compare(value, node.data);
+            if (compareResult == 0) {
+                // Duplicate values not allowed
+                clearPath(depth);
+                recordInsert(depth, startTime);
+                return;
+            }
+            AVLNode<T> next;
+            if (compareResult < 0) {
+                next = node.left;
+            } else {
+                next = node.right;
+            }
+            if (next == null) {
+                break;
+            }
+            node = next;
+        }
+
+        if (compareResult < 0) {
+            node.left = newNode(value);
+        } else {
+            node.right = newNode(value);
+        }
         size++;
+        modCount++;
+        // Every ancestor gains one node, also above the point where retracing stops
+        updatePath(path, depth, 1);
+
+        for (int i = depth - 1; i >= 0; i--) {
+            AVLNode<T> current = path[i];
+            int oldHeight = current.height;
+            int leftHeight = height(current.left);
+            int rightHeight = height(current.right);
+            int balance = leftHeight - rightHeight;
+            if (balance > 1 || balance < -1) {
+                // A single rebalance restores the height the subtree had before the insertion
+                replaceChild(path, i, current, rebalance(current, balance));
+                break;
+            }
+            current.height = 1 + Math.max(leftHeight, rightHeight);
+            if (current.height == oldHeight) {
+                break;
+            }
+        }
+        clearPath(depth);
+        recordInsert(depth, startTime);
+    }
+
+    private void recordInsert(int depth, long startTime) {
+        if (TreeMetrics.ENABLED && metrics != null) {
+            metrics.recordInsert(depth, depth, System.nanoTime() - startTime);
+        }
     }
 
     /**
-     * Helper method to insert a value into the tree.
-     * @param node The current node.
-     * @param value The value to insert.
-     * @return The new root of the modified subtree.
+     * Searches for a value in the tree.
+     * @param value The value to search for.
+     * @return true if the value is found, false otherwise.
+     */
+    public boolean search(T value) {
+        long startTime = startTime();
+        int depth = 0;
+        AVLNode<T> node = root;
+        while (node != null) {
+            depth++;
+            int compareResult = compare(value, node.data);
+            if (compareResult < 0) {
+                node = node.left;
+            } else if (compareResult > 0) {
+                node = node.right;
+            } else {
+                recordSearch(depth, startTime);
+                return true;
+            }
+        }
+        recordSearch(depth, startTime);
+        return false;
+    }
+
+    private void recordSearch(int depth, long startTime) {
+        if (TreeMetrics.ENABLED && metrics != null) {
+            metrics.recordSearch(depth, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Removes a value from the tree.
+     * A node with two children takes the data of its inorder successor, which is
+     * unlinked in the same descent; retracing stops once a subtree keeps its height.
+     * @param value The value to remove.
+     * @return true if the value was removed, false if it wasn't found.
      */
-    private AVLNode<T> insert(AVLNode<T> node, T value) {
-        // Perform standard BST insert
+    public boolean remove(T value) {
+        long startTime = startTime();
+        AVLNode<T>[] path = this.path;
+        int depth = 0;
+        AVLNode<T> node = root;
+        while (node != null) {
+            path[depth++] = node;
+            int compareResult = compare(value, node.data);
+            if (compareResult == 0) {
+                break;
+            }
+            if (compareResult < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
         if (node == null) {
-            return new AVLNode<>(value);
+            clearPath(depth);
+            recordRemove(depth, depth, startTime);
+            return false;
         }
+        int comparisons = depth;
 
-        int compareResult = value.compareTo(node.getData());
+        if (node.left != null && node.right != null) {
+            // Node with two children: continue down to the inorder successor (smallest in the right subtree)
+            AVLNode<T> successor = node.right;
+            path[depth++] = successor;
+            while (successor.left != null) {
+                successor = successor.left;
+                path[depth++] = successor;
+            }
+            node.data = successor.data;
+            node = successor;
+        }
 
-        if (compareResult < 0) {
-            node.setLeft(insert(node.getLeft(), value));
-        } else if (compareResult > 0) {
-            node.setRight(insert(node.getRight(), value));
-        } else {
-            // Duplicate values not allowed, decrement size
-            size--;
-            return node;
+        // The node to unlink has at most one child
+        int pathLength = depth;
+        replaceChild(path, depth - 1, node, node.left != null ? node.left : node.right);
+        path[--depth] = null;
+        size--;
+        modCount++;
+        updatePath(path, depth, -1);
+
+        for (int i = depth - 1; i >= 0; i--) {
+            AVLNode<T> current = path[i];
+            int oldHeight = current.height;
+            int leftHeight = height(current.left);
+            int rightHeight = height(current.right);
+            int balance = leftHeight - rightHeight;
+            if (balance > 1 || balance < -1) {
+                AVLNode<T> newRoot = rebalance(current, balance);
+                replaceChild(path, i, current, newRoot);
+                if (newRoot.height == oldHeight) {
+                    break;
+                }
+            } else {
+                current.height = 1 + Math.max(leftHeight, rightHeight);
+                if (current.height == oldHeight) {
+                    break;
+                }
+            }
+        }
+        clearPath(depth);
+        recordRemove(comparisons, pathLength, startTime);
+        return true;
+    }
+
+    private void recordRemove(int comparisons, int pathLength, long startTime) {
+        if (TreeMetrics.ENABLED && metrics != null) {
+            metrics.recordRemove(comparisons, pathLength, System.nanoTime() - startTime);
         }
+    }
 
-        // Update height of current node
-        updateHeight(node);
+    /**
+     * Gets the element at a position of the sorted order, in O(log n).
+     * @param k The position, from 0 for the smallest element to size() - 1.
+     * @return The element with exactly k smaller elements in the tree.
+     * @throws IndexOutOfBoundsException if k is negative or not less than size().
+     */
+    public T select(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("Index: " + k + ", Size: " + size);
+        }
+        AVLNode<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (k < leftSize) {
+                node = node.left;
+            } else if (k > leftSize) {
+                k -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.data;
+            }
+        }
+    }
 
-        // Get the balance factor to check if this node became unbalanced
-        int balance = getBalanceFactor(node);
+    /**
+     * Counts the elements smaller than a value, in O(log n). For an element of the tree
+     * this is its position in the sorted order, so select(rank(x)) returns x.
+     * @param value The value to rank; it does not need to be in the tree.
+     * @return The number of elements smaller than the value.
+     */
+    public int rank(T value) {
+        return countBelow(value, false);
+    }
 
-        // Left Left Case
-        if (balance > 1 && value.compareTo(node.getLeft().getData()) < 0) {
-            return rightRotate(node);
+    /**
+     * Counts the elements between two values, both included, in O(log n).
+     * @param low The lower bound.
+     * @param high The upper bound.
+     * @return The number of elements x with low &lt;= x &lt;= high, or 0 if low &gt; high.
+     */
+    public int countInRange(T low, T high) {
+        if (compare(low, high) > 0) {
+            return 0;
         }
+        return countBelow(high, true) - countBelow(low, false);
+    }
 
-        // Right Right Case
-        if (balance < -1 && value.compareTo(node.getRight().getData()) > 0) {
-            return leftRotate(node);
+    /**
+     * Counts the elements inside a range described by a position function, in O(log n).
+     * The function tells where an element lies relative to the range: negative below it,
+     * zero inside, positive above. It must agree with the order of the tree, which lets a
+     * range be expressed on a key (an exam score, say) instead of with boundary elements.
+     * @param position The position of an element relative to the range.
+     * @return The number of elements inside the range.
+     */
+    public int countInRange(ToIntFunction<? super T> position) {
+        int below = 0;
+        int above = 0;
+        for (AVLNode<T> node = root; node != null; ) {
+            if (position.applyAsInt(node.data) < 0) {
+                below += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
         }
+        for (AVLNode<T> node = root; node != null; ) {
+            if (position.applyAsInt(node.data) > 0) {
+                above += size(node.right) + 1;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return size - below - above;
+    }
 
-        // Left Right Case
-        if (balance > 1 && value.compareTo(node.getLeft().getData()) > 0) {
-            node.setLeft(leftRotate(node.getLeft()));
-            return rightRotate(node);
+    /**
+     * Visits the elements inside a range described by a position function, in sorted
+     * order, in O(log n + k) for k elements in the range. See {@link #countInRange(ToIntFunction)}.
+     * @param position The position of an element relative to the range.
+     * @param action The action to run on each element inside the range.
+     */
+    public void forEachInRange(ToIntFunction<? super T> position, Consumer<? super T> action) {
+        forEachInRange(root, position, action);
+    }
+
+    private void forEachInRange(AVLNode<T> node, ToIntFunction<? super T> position, Consumer<? super T> action) {
+        while (node != null) {
+            int where = position.applyAsInt(node.data);
+            if (where < 0) {
+                node = node.right;
+            } else if (where > 0) {
+                node = node.left;
+            } else {
+                forEachInRange(node.left, position, action);
+                action.accept(node.data);
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Aggregates the columns of the tree's {@link AggregateSpec} over the elements between
+     * two values, both included, in O(log n) however many elements are in the range.
+     * @param low The lower bound.
+     * @param high The upper bound.
+     * @return The aggregates, empty if low &gt; high.
+     * @throws IllegalStateException if the tree was created without aggregates.
+     */
+    public RangeAggregate aggregate(T low, T high) {
+        if (compare(low, high) > 0) {
+            return aggregate(value -> 1);
+        }
+        return aggregate(value -> compare(value, low) < 0 ? -1 : compare(value, high) > 0 ? 1 : 0);
+    }
+
+    /**
+     * Aggregates the columns of the tree's {@link AggregateSpec} over the elements inside a
+     * range described by a position function, as in {@link #countInRange(ToIntFunction)}.
+     * @param position The position of an element relative to the range.
+     * @return The aggregates.
+     * @throws IllegalStateException if the tree was created without aggregates.
+     */
+    public RangeAggregate aggregate(ToIntFunction<? super T> position) {
+        if (columns == null) {
+            throw new IllegalStateException("The tree keeps no aggregates");
+        }
+        RangeAggregate result = new RangeAggregate(columnNames);
+        double[] values = new double[columns.length];
+
+        // The highest node inside the range splits it between its two subtrees
+        AVLNode<T> split = root;
+        while (split != null) {
+            int where = position.applyAsInt(split.data);
+            if (where < 0) {
+                split = split.right;
+            } else if (where > 0) {
+                split = split.left;
+            } else {
+                break;
+            }
+        }
+        if (split == null) {
+            return result;
+        }
+        addElement(result, split, values);
+        // In the left subtree, everything after the lower bound
+        for (AVLNode<T> node = split.left; node != null; ) {
+            if (position.applyAsInt(node.data) < 0) {
+                node = node.right;
+            } else {
+                addElement(result, node, values);
+                addSubtree(result, node.right);
+                node = node.left;
+            }
+        }
+        // In the right subtree, everything before the upper bound
+        for (AVLNode<T> node = split.right; node != null; ) {
+            if (position.applyAsInt(node.data) > 0) {
+                node = node.left;
+            } else {
+                addElement(result, node, values);
+                addSubtree(result, node.left);
+                node = node.right;
+            }
+        }
+        return result;
+    }
+
+    private void addElement(RangeAggregate result, AVLNode<T> node, double[] values) {
+        for (int c = 0; c < columns.length; c++) {
+            values[c] = columns[c].applyAsDouble(node.data);
+        }
+        result.addValues(values);
+    }
+
+    private void addSubtree(RangeAggregate result, AVLNode<T> node) {
+        if (node != null) {
+            result.addSubtree(node.aggregates, node.size);
+        }
+    }
+
+    /**
+     * Gets the element of the tree equal to a value, for instance the stored record
+     * with the same id as a probe.
+     * @param value The value to look for.
+     * @return The element found, or null if there is none.
+     */
+    public T find(T value) {
+        AVLNode<T> node = root;
+        while (node != null) {
+            int compareResult = compare(value, node.data);
+            if (compareResult < 0) {
+                node = node.left;
+            } else if (compareResult > 0) {
+                node = node.right;
+            } else {
+                return node.data;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the element at a percentile of the sorted order, using the nearest-rank method.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The smallest element with at least that percentage of the elements at or below it.
+     * @throws IllegalArgumentException if the percentile is out of range.
+     * @throws NoSuchElementException if the tree is empty.
+     */
+    public T percentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
         }
+        if (size == 0) {
+            throw new NoSuchElementException("Empty tree");
+        }
+        int k = (int) Math.ceil(percentile / 100 * size) - 1;
+        return select(Math.max(0, k));
+    }
 
+    /**
+     * Counts the elements smaller than a value, or smaller than or equal to it.
+     * @param value The bound.
+     * @param inclusive Whether an element equal to the bound is counted.
+     * @return The number of elements below the bound.
+     */
+    private int countBelow(T value, boolean inclusive) {
+        int count = 0;
+        AVLNode<T> node = root;
+        while (node != null) {
+            int compareResult = compare(value, node.data);
+            if (compareResult < 0) {
+                node = node.left;
+            } else if (compareResult > 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return count + size(node.left) + (inclusive ? 1 : 0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Restores the balance of a node whose balance factor is 2 or -2.
+     * @param node The unbalanced node.
+     * @param balance The balance factor of the node.
+     * @return The new root of the rebalanced subtree.
+     */
+    private AVLNode<T> rebalance(AVLNode<T> node, int balance) {
+        if (balance > 1) {
+            // Left Right Case
+            if (getBalanceFactor(node.left) < 0) {
+                node.left = leftRotate(node.left);
+            }
+            // Left Left Case
+            return rightRotate(node);
+        }
         // Right Left Case
-        if (balance < -1 && value.compareTo(node.getRight().getData()) < 0) {
-            node.setRight(rightRotate(node.getRight()));
-            return leftRotate(node);
+        if (getBalanceFactor(node.right) > 0) {
+            node.right = rightRotate(node.right);
         }
+        // Right Right Case
+        return leftRotate(node);
+    }
 
-        // Return the unchanged node
-        return node;
+    /**
+     * Links a new subtree in place of a node of the path.
+     * @param path The path from the root.
+     * @param index The index of the replaced node in the path.
+     * @param oldChild The replaced node.
+     * @param newChild The new subtree, possibly null.
+     */
+    private void replaceChild(AVLNode<T>[] path, int index, AVLNode<T> oldChild, AVLNode<T> newChild) {
+        if (index == 0) {
+            root = newChild;
+        } else {
+            AVLNode<T> parent = path[index - 1];
+            if (parent.left == oldChild) {
+                parent.left = newChild;
+            } else {
+                parent.right = newChild;
+            }
+        }
     }
 
     /**
-     * Searches for a value in the tree.
-     * @param value The value to search for.
-     * @return true if the value is found, false otherwise.
+     * Drops the references held by the path buffer so removed data can be collected.
+     * @param depth The number of used entries.
      */
-    public boolean search(T value) {
-        return search(root, value);
+    private void clearPath(int depth) {
+        Arrays.fill(path, 0, depth, null);
     }
 
     /**
-     * Helper method to search for a value in the tree.
-     * @param node The current node.
-     * @param value The value to search for.
-     * @return true if the value is found, false otherwise.
+     * Adds every value of a collection, building a perfectly balanced tree in linear time
+     * once the input is sorted. Sorted input is detected in a single pass; otherwise it is
+     * sorted with a stable parallel sort. As with {@link #insert}, a value equal to one
+     * already in the tree, or to an earlier value of the input, is dropped.
+     * @param values The values to add.
      */
-    private boolean search(AVLNode<T> node, T value) {
-        if (node == null) {
-            return false;
+    public void bulkLoad(Collection<? extends T> values) {
+        bulkLoadArray(values.toArray());
+    }
+
+    /**
+     * Adds every value of a stream, as {@link #bulkLoad(Collection)} does.
+     * @param values The values to add.
+     */
+    public void bulkLoad(Stream<? extends T> values) {
+        bulkLoadArray(values.toArray());
+    }
+
+    /**
+     * Sorts, deduplicates and merges the values with the current content, then rebuilds the tree.
+     * @param values The values to add; the array is reordered in place.
+     */
+    private void bulkLoadArray(Object[] values) {
+        Comparator<Object> order = (a, b) -> compare(cast(a), cast(b));
+        int unique = sortUnique(values);
+
+        Object[] sorted = values;
+        if (root != null) {
+            // Merge with the current content, which wins over equal new values
+            Object[] current = inorderTraversal().toArray();
+            sorted = new Object[current.length + unique];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < current.length && j < unique) {
+                int compareResult = order.compare(current[i], values[j]);
+                if (compareResult <= 0) {
+                    if (compareResult == 0) {
+                        j++;
+                    }
+                    sorted[k++] = current[i++];
+                } else {
+                    sorted[k++] = values[j++];
+                }
+            }
+            while (i < current.length) {
+                sorted[k++] = current[i++];
+            }
+            while (j < unique) {
+                sorted[k++] = values[j++];
+            }
+            unique = k;
         }
 
-        int compareResult = value.compareTo(node.getData());
+        root = build(sorted, 0, unique - 1);
+        size = unique;
+        modCount++;
+    }
 
-        if (compareResult == 0) {
-            return true;
-        } else if (compareResult < 0) {
-            return search(node.getLeft(), value);
+    /**
+     * Sorts values in the order of the tree, unless they already are, and moves the first of
+     * each run of equal values to the front.
+     * @param values The values; the array is reordered in place.
+     * @return The number of distinct values, now at the start of the array.
+     */
+    private int sortUnique(Object[] values) {
+        Comparator<Object> order = (a, b) -> compare(cast(a), cast(b));
+
+        int count = values.length;
+        for (int i = 1; i < count; i++) {
+            if (order.compare(values[i - 1], values[i]) > 0) {
+                // Stable, so the first of several equal values stays first
+                Arrays.parallelSort(values, order);
+                break;
+            }
+        }
+
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || order.compare(values[unique - 1], values[i]) != 0) {
+                values[unique++] = values[i];
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Adds every value of a collection by building a balanced tree of the batch and merging
+     * it with a join-based union, in O(m log(n/m + 1)) for m values into n elements, with
+     * the independent halves of large merges run in parallel. As with {@link #insert}, a
+     * value equal to one already in the tree, or to an earlier value of the batch, is dropped.
+     * @param values The values to add.
+     * @return true if the tree changed.
+     */
+    public boolean insertAll(Collection<? extends T> values) {
+        return applyBatch(UNION, batch(values.toArray()));
+    }
+
+    /**
+     * Adds every element of another tree, as {@link #insertAll(Collection)} does. The other
+     * tree is not modified; when it has the same order its elements need no sorting.
+     * @param other The tree whose elements to add.
+     * @return true if the tree changed.
+     */
+    public boolean insertAll(AVLTree<T> other) {
+        return applyBatch(UNION, batch(other));
+    }
+
+    /**
+     * Removes every element equal to a value of a collection with a join-based difference,
+     * in O(m log(n/m + 1)) for m values and n elements.
+     * @param values The values to remove.
+     * @return true if the tree changed.
+     */
+    public boolean removeAll(Collection<? extends T> values) {
+        return applyBatch(DIFFERENCE, batch(values.toArray()));
+    }
+
+    /**
+     * Removes every element equal to an element of another tree, which is not modified.
+     * @param other The tree whose elements to remove.
+     * @return true if the tree changed.
+     */
+    public boolean removeAll(AVLTree<T> other) {
+        return applyBatch(DIFFERENCE, batch(other));
+    }
+
+    /**
+     * Keeps only the elements equal to a value of a collection with a join-based intersection,
+     * in O(m log(n/m + 1)) for m values and n elements. The kept elements are the ones of this tree.
+     * @param values The values to keep.
+     * @return true if the tree changed.
+     */
+    public boolean retainAll(Collection<? extends T> values) {
+        return applyBatch(INTERSECTION, batch(values.toArray()));
+    }
+
+    /**
+     * Keeps only the elements equal to an element of another tree, which is not modified.
+     * @param other The tree whose elements to keep.
+     * @return true if the tree changed.
+     */
+    public boolean retainAll(AVLTree<T> other) {
+        return applyBatch(INTERSECTION, batch(other));
+    }
+
+    /**
+     * Builds the nodes of a batch from arbitrary values.
+     */
+    private AVLNode<T> batch(Object[] values) {
+        return build(values, 0, sortUnique(values) - 1);
+    }
+
+    /**
+     * Builds the nodes of a batch from another tree, skipping the sort when both trees share
+     * their order. The other tree's own nodes are never linked into this one.
+     */
+    private AVLNode<T> batch(AVLTree<T> other) {
+        if (other.comparator != comparator) {
+            return batch(other.inorderTraversal().toArray());
+        }
+        Object[] values = new Object[other.size];
+        int count = 0;
+        for (T value : other) {
+            values[count++] = value;
+        }
+        return build(values, 0, count - 1);
+    }
+
+    /**
+     * Combines the tree with a batch, in parallel for large inputs.
+     * @return true if the size changed, which for these operations means the tree changed.
+     */
+    private boolean applyBatch(int operation, AVLNode<T> batch) {
+        int previousSize = size;
+        root = size(root) + size(batch) >= PARALLEL_THRESHOLD
+                ? ForkJoinPool.commonPool().invoke(new SetOperation(operation, root, batch))
+                : setOperation(operation, root, batch);
+        size = size(root);
+        modCount++;
+        return size != previousSize;
+    }
+
+    /**
+     * Merges two subtrees, consuming both, with the divide and conquer of the join-based set
+     * algorithms: split one tree around the root of the other, combine the matching halves
+     * (in parallel when they are large), then join the results around the root if it is kept.
+     * Equal elements of the first subtree win over those of the second.
+     * @param operation UNION, DIFFERENCE or INTERSECTION.
+     * @param a The subtree of this tree.
+     * @param b The subtree of the batch.
+     * @return The root of the result.
+     */
+    private AVLNode<T> setOperation(int operation, AVLNode<T> a, AVLNode<T> b) {
+        if (a == null || b == null) {
+            if (operation == UNION) {
+                return a == null ? b : a;
+            }
+            return operation == DIFFERENCE ? a : null;
+        }
+
+        AVLNode<T> aLeft;
+        AVLNode<T> aRight;
+        AVLNode<T> bLeft;
+        AVLNode<T> bRight;
+        AVLNode<T> kept;
+        if (operation == UNION) {
+            // Split the batch around this tree's root, so that equal batch elements are dropped
+            aLeft = a.left;
+            aRight = a.right;
+            Split parts = split(b, a.data);
+            bLeft = parts.left;
+            bRight = parts.right;
+            kept = a;
         } else {
-            return search(node.getRight(), value);
+            bLeft = b.left;
+            bRight = b.right;
+            Split parts = split(a, b.data);
+            aLeft = parts.left;
+            aRight = parts.right;
+            kept = operation == INTERSECTION ? parts.node : null;
         }
+
+        AVLNode<T> left;
+        AVLNode<T> right;
+        if (size(a) + size(b) >= PARALLEL_THRESHOLD) {
+            SetOperation leftTask = new SetOperation(operation, aLeft, bLeft);
+            leftTask.fork();
+            right = setOperation(operation, aRight, bRight);
+            left = leftTask.join();
+        } else {
+            left = setOperation(operation, aLeft, bLeft);
+            right = setOperation(operation, aRight, bRight);
+        }
+        return kept != null ? join(left, kept, right) : join(left, right);
     }
 
     /**
-     * Removes a value from the tree.
-     * @param value The value to remove.
-     * @return true if the value was removed, false if it wasn't found.
+     * One half of a set operation, run as a fork-join task.
      */
-    public boolean remove(T value) {
-        int originalSize = size;
-        root = remove(root, value);
-        return originalSize != size;
+    private final class SetOperation extends RecursiveTask<AVLNode<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int operation;
+        private final transient AVLNode<T> a;
+        private final transient AVLNode<T> b;
+
+        SetOperation(int operation, AVLNode<T> a, AVLNode<T> b) {
+            this.operation = operation;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        protected AVLNode<T> compute() {
+            return setOperation(operation, a, b);
+        }
     }
 
     /**
-     * Helper method to remove a value from the tree.
-     * @param node The current node.
-     * @param value The value to remove.
-     * @return The new root of the modified subtree.
+     * Result of splitting a subtree around a value.
+     */
+    private final class Split {
+        // The elements less than the value
+        final AVLNode<T> left;
+        // The node equal to the value, detached, or null
+        final AVLNode<T> node;
+        // The elements greater than the value
+        final AVLNode<T> right;
+
+        Split(AVLNode<T> left, AVLNode<T> node, AVLNode<T> right) {
+            this.left = left;
+            this.node = node;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Splits a subtree, consuming it, into the elements less than and greater than a value,
+     * in O(log n): the nodes along the search path are joined back onto the side they belong to.
+     * @param node The root of the subtree.
+     * @param value The value to split around.
+     * @return The two sides and the node equal to the value, if any.
      */
-    private AVLNode<T> remove(AVLNode<T> node, T value) {
+    private Split split(AVLNode<T> node, T value) {
         if (node == null) {
-            return null;
+            return new Split(null, null, null);
+        }
+        int compareResult = compare(value, node.data);
+        if (compareResult == 0) {
+            AVLNode<T> left = node.left;
+            AVLNode<T> right = node.right;
+            node.left = null;
+            node.right = null;
+            updateHeightAndSize(node);
+            return new Split(left, node, right);
+        }
+        if (compareResult < 0) {
+            AVLNode<T> right = node.right;
+            Split parts = split(node.left, value);
+            return new Split(parts.left, parts.node, join(parts.right, node, right));
         }
+        AVLNode<T> left = node.left;
+        Split parts = split(node.right, value);
+        return new Split(join(left, node, parts.left), parts.node, parts.right);
+    }
 
-        int compareResult = value.compareTo(node.getData());
+    /**
+     * Joins two subtrees and a middle node whose element lies between them, in
+     * O(|height(left) - height(right)| + 1): the shorter subtree is linked next to a node of
+     * the same height on the inner spine of the taller one, and the spine is rebalanced on
+     * the way back up.
+     * @param left The subtree of the smaller elements.
+     * @param middle The node of the middle element; its children are replaced.
+     * @param right The subtree of the greater elements.
+     * @return The root of the joined subtree.
+     */
+    private AVLNode<T> join(AVLNode<T> left, AVLNode<T> middle, AVLNode<T> right) {
+        if (height(left) > height(right) + 1) {
+            return joinRight(left, middle, right);
+        }
+        if (height(right) > height(left) + 1) {
+            return joinLeft(left, middle, right);
+        }
+        middle.left = left;
+        middle.right = right;
+        updateHeightAndSize(middle);
+        return middle;
+    }
 
-        if (compareResult < 0) {
-            node.setLeft(remove(node.getLeft(), value));
-        } else if (compareResult > 0) {
-            node.setRight(remove(node.getRight(), value));
+    private AVLNode<T> joinRight(AVLNode<T> left, AVLNode<T> middle, AVLNode<T> right) {
+        AVLNode<T> inner = left.right;
+        if (height(inner) <= height(right) + 1) {
+            middle.left = inner;
+            middle.right = right;
+            updateHeightAndSize(middle);
+            left.right = height(middle) <= height(left.left) + 1 ? middle : rightRotate(middle);
         } else {
-            // Node with the value found, remove it
-            size--;
+            left.right = joinRight(inner, middle, right);
+        }
+        updateHeightAndSize(left);
+        return height(left.right) <= height(left.left) + 1 ? left : leftRotate(left);
+    }
 
-            // Node with only one child or no child
-            if (node.getLeft() == null) {
-                return node.getRight();
-            } else if (node.getRight() == null) {
-                return node.getLeft();
-            }
+    private AVLNode<T> joinLeft(AVLNode<T> left, AVLNode<T> middle, AVLNode<T> right) {
+        AVLNode<T> inner = right.left;
+        if (height(inner) <= height(left) + 1) {
+            middle.left = left;
+            middle.right = inner;
+            updateHeightAndSize(middle);
+            right.left = height(middle) <= height(right.right) + 1 ? middle : leftRotate(middle);
+        } else {
+            right.left = joinLeft(left, middle, inner);
+        }
+        updateHeightAndSize(right);
+        return height(right.left) <= height(right.right) + 1 ? right : rightRotate(right);
+    }
 
-            // Node with two children
-            // Get the inorder successor (smallest in the right subtree)
-            AVLNode<T> successor = findMin(node.getRight());
-            node.setData(successor.getData());
-            node.setRight(remove(node.getRight(), successor.getData()));
-            size++; // Adjust for double decrement
+    /**
+     * Joins two subtrees without a middle element by using the last node of the left one.
+     */
+    private AVLNode<T> join(AVLNode<T> left, AVLNode<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
         }
+        Split parts = splitLast(left);
+        return join(parts.left, parts.node, right);
+    }
 
-        if (node == null) {
+    /**
+     * Detaches the greatest node of a subtree.
+     * @return The rest of the subtree as the left side, and the detached node.
+     */
+    private Split splitLast(AVLNode<T> node) {
+        if (node.right == null) {
+            AVLNode<T> left = node.left;
+            node.left = null;
+            updateHeightAndSize(node);
+            return new Split(left, node, null);
+        }
+        AVLNode<T> left = node.left;
+        Split parts = splitLast(node.right);
+        return new Split(join(left, node, parts.left), parts.node, null);
+    }
+
+    /**
+     * Builds a perfectly balanced subtree from a sorted range without duplicates.
+     * @param sorted The sorted values.
+     * @param low The first index of the range.
+     * @param high The last index of the range.
+     * @return The root of the subtree, or null if the range is empty.
+     */
+    private AVLNode<T> build(Object[] sorted, int low, int high) {
+        if (low > high) {
             return null;
         }
+        int mid = (low + high) >>> 1;
+        AVLNode<T> node = new AVLNode<>(cast(sorted[mid]));
+        node.left = build(sorted, low, mid - 1);
+        node.right = build(sorted, mid + 1, high);
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.size = high - low + 1;
+        if (columns != null) {
+            aggregate(node);
+        }
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object value) {
+        return (T) value;
+    }
+
+    /**
+     * Iterates over the elements in sorted order, lazily, with an explicit stack.
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new TreeIterator(root, null, null, modCount);
+    }
 
-        // Update height
-        updateHeight(node);
+    /**
+     * Gets a lazy view of the elements from a lower bound, included, to an upper bound,
+     * excluded. Starting an iteration seeks the first element in O(log n), so reading the
+     * first k elements of the view takes O(log n + k) time and no O(n) buffer.
+     * @param from The lower bound, included, or null for no lower bound.
+     * @param to The upper bound, excluded, or null for no upper bound.
+     * @return The view, which reflects the current content of the tree each time it is iterated.
+     */
+    public Iterable<T> range(T from, T to) {
+        return () -> new TreeIterator(root, from, to, modCount);
+    }
 
-        // Get the balance factor
-        int balance = getBalanceFactor(node);
+    /**
+     * Gets a lazy view of the elements smaller than a value, as {@link #range(Comparable, Comparable)}.
+     * @param to The upper bound, excluded.
+     * @return The view.
+     */
+    public Iterable<T> headSet(T to) {
+        return range(null, to);
+    }
 
-        // Left Left Case
-        if (balance > 1 && getBalanceFactor(node.getLeft()) >= 0) {
-            return rightRotate(node);
+    /**
+     * Gets a lazy view of the elements greater than or equal to a value, as {@link #range(Comparable, Comparable)}.
+     * @param from The lower bound, included.
+     * @return The view.
+     */
+    public Iterable<T> tailSet(T from) {
+        return range(from, null);
+    }
+
+    /**
+     * Gets the smallest elements greater than or equal to a value, seeking to it in O(log n).
+     * @param from The lower bound, inclusive.
+     * @param limit The maximum number of elements.
+     * @return Up to limit elements, in ascending order.
+     */
+    @Override
+    public List<T> scan(T from, int limit) {
+        List<T> result = new ArrayList<>(Math.min(limit, 16));
+        Iterator<T> iterator = tailSet(from).iterator();
+        while (result.size() < limit && iterator.hasNext()) {
+            result.add(iterator.next());
         }
+        return result;
+    }
 
-        // Left Right Case
-        if (balance > 1 && getBalanceFactor(node.getLeft()) < 0) {
-            node.setLeft(leftRotate(node.getLeft()));
-            return rightRotate(node);
+    /**
+     * Creates a spliterator over the elements that splits at subtree boundaries, so both
+     * halves of a split are known exactly and parallel streams divide the work evenly.
+     * @return The spliterator.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new TreeSpliterator(null, root, modCount);
+    }
+
+    /**
+     * Creates a sequential stream of the elements in sorted order; call parallel() on it
+     * to process subtrees in parallel.
+     * @return The stream.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Iterator over the elements between two optional bounds. The stack holds the nodes
+     * whose element and right subtree are still to be visited.
+     */
+    private class TreeIterator implements Iterator<T> {
+        private final AVLNode<T>[] stack = newPath();
+        private final T to;
+        private final int expectedModCount;
+        private int top;
+
+        /**
+         * Creates an iterator over a subtree.
+         * @param start The root of the subtree.
+         * @param from The lower bound, included, or null.
+         * @param to The upper bound, excluded, or null.
+         * @param expectedModCount The modification count the tree must keep.
+         */
+        TreeIterator(AVLNode<T> start, T from, T to, int expectedModCount) {
+            this.to = to;
+            this.expectedModCount = expectedModCount;
+            // Seek the first element not smaller than the lower bound
+            AVLNode<T> node = start;
+            while (node != null) {
+                if (from != null && compare(node.data, from) < 0) {
+                    node = node.right;
+                } else {
+                    stack[top++] = node;
+                    node = node.left;
+                }
+            }
+            dropIfPastEnd();
         }
 
-        // Right Right Case
-        if (balance < -1 && getBalanceFactor(node.getRight()) <= 0) {
-            return leftRotate(node);
+        @Override
+        public boolean hasNext() {
+            return top > 0;
         }
 
-        // Right Left Case
-        if (balance < -1 && getBalanceFactor(node.getRight()) > 0) {
-            node.setRight(rightRotate(node.getRight()));
-            return leftRotate(node);
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (top == 0) {
+                throw new NoSuchElementException();
+            }
+            AVLNode<T> node = stack[--top];
+            stack[top] = null;
+            for (AVLNode<T> child = node.right; child != null; child = child.left) {
+                stack[top++] = child;
+            }
+            dropIfPastEnd();
+            return node.data;
         }
 
-        return node;
+        /**
+         * Ends the iteration once the next element reaches the upper bound.
+         */
+        private void dropIfPastEnd() {
+            if (to != null && top > 0 && compare(stack[top - 1].data, to) >= 0) {
+                Arrays.fill(stack, 0, top, null);
+                top = 0;
+            }
+        }
     }
 
     /**
-     * Finds the minimum value node in a subtree.
-     * @param node The root of the subtree.
-     * @return The node with the minimum value.
+     * Spliterator over one optional leading node followed by a whole subtree. Splitting
+     * hands the leading node and the left subtree to the prefix and keeps the subtree root
+     * and its right subtree, so the sizes of both halves stay exact.
      */
-    private AVLNode<T> findMin(AVLNode<T> node) {
-        AVLNode<T> current = node;
-        while (current.getLeft() != null) {
-            current = current.getLeft();
+    private class TreeSpliterator implements Spliterator<T> {
+        private AVLNode<T> leading;
+        private AVLNode<T> subtree;
+        private final int expectedModCount;
+        // Created on the first tryAdvance, after which the spliterator no longer splits
+        private TreeIterator iterator;
+        private long remaining;
+
+        TreeSpliterator(AVLNode<T> leading, AVLNode<T> subtree, int expectedModCount) {
+            this.leading = leading;
+            this.subtree = subtree;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (iterator != null || subtree == null || subtree.left == null) {
+                return null;
+            }
+            checkForComodification();
+            TreeSpliterator prefix = new TreeSpliterator(leading, subtree.left, expectedModCount);
+            leading = subtree;
+            subtree = subtree.right;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            checkForComodification();
+            if (leading != null) {
+                T data = leading.data;
+                leading = null;
+                action.accept(data);
+                return true;
+            }
+            if (iterator == null) {
+                iterator = new TreeIterator(subtree, null, null, expectedModCount);
+                remaining = size(subtree);
+                subtree = null;
+            }
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            remaining--;
+            action.accept(iterator.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (iterator != null) {
+                while (tryAdvance(action)) {
+                    // Each call hands one element to the action
+                }
+                return;
+            }
+            checkForComodification();
+            if (leading != null) {
+                action.accept(leading.data);
+                leading = null;
+            }
+            forEach(subtree, action);
+            subtree = null;
+            checkForComodification();
+        }
+
+        private void forEach(AVLNode<T> node, Consumer<? super T> action) {
+            while (node != null) {
+                forEach(node.left, action);
+                action.accept(node.data);
+                node = node.right;
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            if (iterator != null) {
+                return remaining;
+            }
+            return (leading != null ? 1 : 0) + size(subtree);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SORTED | NONNULL | SIZED | SUBSIZED;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
         }
-        return current;
     }
 
     /**
@@ -310,9 +1492,9 @@ public class AVLTree<T extends Comparable<T>> {
      */
     private void inorderTraversal(AVLNode<T> node, List<T> resultList) {
         if (node != null) {
-            inorderTraversal(node.getLeft(), resultList);
-            resultList.add(node.getData());
-            inorderTraversal(node.getRight(), resultList);
+            inorderTraversal(node.left, resultList);
+            resultList.add(node.data);
+            inorderTraversal(node.right, resultList);
         }
     }
 
@@ -0,0 +1,1708 @@
+package src;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark suite for the AVL tree operations, run with {@link BenchmarkRunner}.
+ *
+ * Usage: {@code java -cp bin src.AVLTreeBenchmark [-wi 5] [-i 5] [-r 500] [-f 2]
+ * [-d data/dataset.csv] [-s 100000,1000000] [-t 1,2,4,8] [-b regex] [--footprint N] [--stress S]}
+ * where -wi/-i are warmup/measurement iterations, -r the iteration time in milliseconds,
+ * -f the number of forks (0 runs in this JVM), -s the sizes of the synthetic data sets,
+ * -t the thread counts of the concurrent benchmarks and -b a filter on the benchmark names.
+ * The wal.* benchmarks write to the temporary directory; run them with a java.io.tmpdir on
+ * the disk of interest, since their scores are set by its fsync latency.
+ * --footprint measures the heap bytes per record of N students in each representation and
+ * --stress hammers a {@link ConcurrentAVLTree} for S seconds and checks its invariants, then
+ * makes the log of a {@link DurableStudentTree} fail and checks what its recovery replays,
+ * instead of running the benchmarks.
+ */
+public class AVLTreeBenchmark {
+    private static final long SEED = 42L;
+    private static final int LOOKUPS = 5000;
+    private static final int REMOVALS = 1000;
+    private static final int RANGE_QUERIES = 20;
+    private static final int FIRST_K = 10;
+    private static final int CONCURRENT_OPERATIONS = 20000;
+    private static final int WRITE_PERCENT = 10;
+    private static final int LOGGED_MUTATIONS = 2000;
+    private static final int DELTA_PERCENT = 10;
+    private static final int WAL_FAILURE_ROUNDS = 20;
+
+    private static volatile long sink;
+
+    /**
+     * The ordered set engines compared by the engine.* benchmarks.
+     */
+    private static final Map<String, Supplier<OrderedSet<Student>>> ENGINES = new LinkedHashMap<>();
+
+    static {
+        ENGINES.put("avl", AVLTree::new);
+        ENGINES.put("bplus" + BPlusTree.DEFAULT_FANOUT, BPlusTree::new);
+        ENGINES.put("bplus16", () -> new BPlusTree<>(16));
+        ENGINES.put("redBlack", JdkOrderedSet::redBlack);
+        ENGINES.put("skipList", JdkOrderedSet::skipList);
+        // The AVL tree in the order of the ids as Strings, as students were compared before
+        // their ids were parsed into numeric keys
+        ENGINES.put("avlStringId", () -> new AVLTree<Student>(Comparator.comparing(Student::getStudentId)));
+        // The AVL tree recording its metrics, to measure what recording costs
+        ENGINES.put("avlMetrics", () -> {
+            AVLTree<Student> tree = new AVLTree<>();
+            tree.enableMetrics(null);
+            return tree;
+        });
+    }
+
+    /**
+     * The sets compared by the ycsb.* benchmarks, by the number of records: the AVL tree alone
+     * and behind a search cache holding 1% of the records with each eviction policy.
+     */
+    private static final Map<String, IntFunction<OrderedSet<Student>>> YCSB_ENGINES = new LinkedHashMap<>();
+
+    static {
+        YCSB_ENGINES.put("avl", count -> new AVLTree<>());
+        YCSB_ENGINES.put("cachedLru", count -> cachedTree(LookupCache.Policy.LRU, count));
+        YCSB_ENGINES.put("cachedClock", count -> cachedTree(LookupCache.Policy.CLOCK, count));
+        YCSB_ENGINES.put("cachedTinyLfu", count -> cachedTree(LookupCache.Policy.W_TINY_LFU, count));
+    }
+
+    private static OrderedSet<Student> cachedTree(LookupCache.Policy policy, int count) {
+        return new CachedOrderedSet<Student>(new AVLTree<>(), Student::getStudentId, policy, Math.max(1, count / 100));
+    }
+
+    /**
+     * Lazily loaded list of students, so the parent of forked runs never loads any data.
+     */
+    private static class DataSet implements Supplier<List<Student>> {
+        private final String name;
+        private final Supplier<List<Student>> loader;
+        private List<Student> students;
+
+        DataSet(String name, Supplier<List<Student>> loader) {
+            this.name = name;
+            this.loader = loader;
+        }
+
+        @Override
+        public List<Student> get() {
+            if (students == null) {
+                students = loader.get();
+            }
+            return students;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int warmupIterations = 5;
+        int measurementIterations = 5;
+        long iterationMillis = 500;
+        int forks = 2;
+        String datasetPath = "data/dataset.csv";
+        String sizes = "100000,1000000";
+        String threads = "1,2,4," + Runtime.getRuntime().availableProcessors();
+        Pattern filter = null;
+        String forkChild = null;
+        int footprintRecords = 0;
+        int stressSeconds = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi":
+                    warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    measurementIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-r":
+                    iterationMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-f":
+                    forks = Integer.parseInt(args[++i]);
+                    break;
+                case "-d":
+                    datasetPath = args[++i];
+                    break;
+                case "-s":
+                    sizes = args[++i];
+                    break;
+                case "-t":
+                    threads = args[++i];
+                    break;
+                case "-b":
+                    filter = Pattern.compile(args[++i]);
+                    break;
+                case "--fork-child":
+                    forkChild = args[++i];
+                    break;
+                case "--footprint":
+                    footprintRecords = Integer.parseInt(args[++i]);
+                    break;
+                case "--stress":
+                    stressSeconds = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (footprintRecords > 0) {
+            printFootprint(new CSVReader(datasetPath).readStudents(), footprintRecords);
+            return;
+        }
+        if (stressSeconds > 0) {
+            stressConcurrentTree(stressSeconds, Runtime.getRuntime().availableProcessors() + 2);
+            stressWalFailures(WAL_FAILURE_ROUNDS, 4);
+            return;
+        }
+
+        List<BenchmarkRunner.BenchmarkCase> cases = createCases(datasetPath, sizes, threads);
+        BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, measurementIterations, iterationMillis,
+                forkChild == null ? forks : 0);
+
+        if (forkChild != null) {
+            for (BenchmarkRunner.BenchmarkCase benchmark : cases) {
+                if (benchmark.getName().equals(forkChild)) {
+                    BenchmarkRunner.reportForParent(runner.runInProcess(benchmark));
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("Unknown benchmark: " + forkChild);
+        }
+
+        List<BenchmarkRunner.Result> results = new ArrayList<>();
+        boolean snapshotReady = false;
+        for (BenchmarkRunner.BenchmarkCase benchmark : cases) {
+            if (filter != null && !filter.matcher(benchmark.getName()).find()) {
+                continue;
+            }
+            if (benchmark.getName().startsWith("coldStart.snapshot") && !snapshotReady) {
+                // Written here so the forks that load it start with nothing warmed up
+                writeSnapshot(datasetPath);
+                snapshotReady = true;
+            }
+            System.out.println("# Benchmark: " + benchmark.getName());
+            System.out.flush();
+            results.add(runner.getForks() == 0
+                    ? runner.runInProcess(benchmark)
+                    : runner.runForked(AVLTreeBenchmark.class, args, benchmark.getName()));
+        }
+        System.out.println();
+        BenchmarkRunner.printResults(results);
+    }
+
+    /**
+     * Creates every benchmark over the dataset file and the synthetic data sets.
+     */
+    private static List<BenchmarkRunner.BenchmarkCase> createCases(String datasetPath, String sizes,
+                                                                   String threads) {
+        List<DataSet> dataSets = new ArrayList<>();
+        dataSets.add(new DataSet("dataset", () -> {
+            try {
+                return new CSVReader(datasetPath).readStudents();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        for (String size : sizes.split(",")) {
+            if (!size.isEmpty()) {
+                int count = Integer.parseInt(size.trim());
+                dataSets.add(new DataSet("synthetic-" + count, () -> syntheticStudents(count, SEED)));
+            }
+        }
+
+        List<BenchmarkRunner.BenchmarkCase> cases = new ArrayList<>();
+        cases.add(readCsv(datasetPath, false));
+        cases.add(readCsv(datasetPath, true));
+        cases.add(streamCsv(datasetPath));
+        cases.add(coldStart(datasetPath, false));
+        cases.add(coldStart(datasetPath, true));
+        for (String count : threads.split(",")) {
+            if (!count.isEmpty()) {
+                for (DurableStudentTree.Durability durability : DurableStudentTree.Durability.values()) {
+                    cases.add(durableMutations(durability, Integer.parseInt(count.trim())));
+                }
+            }
+        }
+        for (DataSet dataSet : dataSets) {
+            cases.add(insert(dataSet));
+            cases.add(bulkLoad(dataSet));
+            cases.add(search(dataSet));
+            cases.add(mapGet(dataSet));
+            cases.add(mapPutIfAbsent(dataSet, true));
+            cases.add(mapPutIfAbsent(dataSet, false));
+            cases.add(remove(dataSet));
+            cases.add(removeAll(dataSet));
+            cases.add(applyDelta(dataSet, false));
+            cases.add(applyDelta(dataSet, true));
+            cases.add(inorderTraversal(dataSet));
+            cases.add(iterate(dataSet, false));
+            cases.add(iterate(dataSet, true));
+            cases.add(firstInRange(dataSet));
+            cases.add(select(dataSet));
+            cases.add(rank(dataSet));
+            cases.add(countInRange(dataSet));
+            cases.add(insertAggregated(dataSet));
+            cases.add(idRangeAggregate(dataSet, true));
+            cases.add(idRangeAggregate(dataSet, false));
+            cases.add(examScoreRange(dataSet, true));
+            cases.add(examScoreRange(dataSet, false));
+            cases.add(persistentInsert(dataSet));
+            cases.add(persistentSnapshotScan(dataSet));
+            cases.add(longTreeInsert(dataSet));
+            cases.add(longTreeSearch(dataSet));
+            cases.add(longTreeRemove(dataSet));
+            for (Map.Entry<String, Supplier<OrderedSet<Student>>> engine : ENGINES.entrySet()) {
+                cases.add(engineInsert(dataSet, engine.getKey(), engine.getValue()));
+                cases.add(engineSearch(dataSet, engine.getKey(), engine.getValue()));
+                cases.add(engineIterate(dataSet, engine.getKey(), engine.getValue()));
+                cases.add(engineRemove(dataSet, engine.getKey(), engine.getValue()));
+            }
+            for (String count : threads.split(",")) {
+                if (!count.isEmpty()) {
+                    cases.add(concurrentMixed(dataSet, Integer.parseInt(count.trim()), 0));
+                    cases.add(concurrentMixed(dataSet, Integer.parseInt(count.trim()), WRITE_PERCENT));
+                }
+            }
+        }
+        for (String size : sizes.split(",")) {
+            if (!size.isEmpty()) {
+                for (char letter = 'A'; letter <= 'F'; letter++) {
+                    for (Map.Entry<String, IntFunction<OrderedSet<Student>>> engine : YCSB_ENGINES.entrySet()) {
+                        cases.add(ycsb(Workload.ycsb(letter), engine.getKey(), engine.getValue(),
+                                Integer.parseInt(size.trim())));
+                    }
+                }
+            }
+        }
+        return cases;
+    }
+
+    private static BenchmarkRunner.BenchmarkCase readCsv(String datasetPath, boolean parallel) {
+        return new BenchmarkRunner.BenchmarkCase((parallel ? "readStudentsParallel" : "readStudents") + "[dataset]") {
+            private final CSVReader reader = new CSVReader(datasetPath);
+
+            @Override
+            public long invoke() {
+                try {
+                    return parallel ? reader.readStudentsParallel().size() : reader.readStudents().size();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return 1;
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase streamCsv(String datasetPath) {
+        return new BenchmarkRunner.BenchmarkCase("streamStudentsIntoTree[dataset]") {
+            private final CSVReader reader = new CSVReader(datasetPath);
+
+            @Override
+            public long invoke() {
+                AVLTree<Student> tree = new AVLTree<>();
+                try (Stream<Student> students = reader.streamStudents()) {
+                    students.forEach(tree::insert);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return tree.size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return 1;
+            }
+        };
+    }
+
+    /**
+     * Builds the tree of the dataset from the CSV file or from its binary snapshot. Meant to
+     * be run as a single shot per fresh JVM, e.g. {@code -wi 0 -i 1 -r 1 -f 10 -b coldStart},
+     * so each fork measures a cold start.
+     */
+    private static BenchmarkRunner.BenchmarkCase coldStart(String datasetPath, boolean snapshot) {
+        return new BenchmarkRunner.BenchmarkCase("coldStart." + (snapshot ? "snapshot" : "csv") + "[dataset]") {
+            @Override
+            public long invoke() {
+                try {
+                    if (snapshot) {
+                        return StudentSnapshot.load(snapshotPath(datasetPath)).size();
+                    }
+                    AVLTree<Student> tree = new AVLTree<>();
+                    new CSVReader(datasetPath).readIntoTree(tree);
+                    return tree.size();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return 1;
+            }
+        };
+    }
+
+    private static String snapshotPath(String datasetPath) {
+        return Paths.get(System.getProperty("java.io.tmpdir"),
+                "avltree-benchmark-" + Paths.get(datasetPath).getFileName() + ".snapshot").toString();
+    }
+
+    /**
+     * Writes the snapshot of the dataset used by coldStart.snapshot and prints the bytes on
+     * disk of both formats.
+     */
+    private static void writeSnapshot(String datasetPath) throws IOException {
+        AVLTree<Student> tree = new AVLTree<>();
+        new CSVReader(datasetPath).readIntoTree(tree);
+        String snapshotPath = snapshotPath(datasetPath);
+        StudentSnapshot.write(tree, snapshotPath);
+        long csvBytes = Files.size(Paths.get(datasetPath));
+        long snapshotBytes = Files.size(Paths.get(snapshotPath));
+        System.out.printf("# Bytes on disk: CSV %d (%.1f B/record), snapshot %d (%.1f B/record)%n",
+                csvBytes, (double) csvBytes / tree.size(), snapshotBytes, (double) snapshotBytes / tree.size());
+    }
+
+    private static BenchmarkRunner.BenchmarkCase insert(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("insert[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+
+            @Override
+            public void setupInvocation() {
+                tree = new AVLTree<>();
+            }
+
+            @Override
+            public long invoke() {
+                for (Student student : dataSet.get()) {
+                    tree.insert(student);
+                }
+                return tree.size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return dataSet.get().size();
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase bulkLoad(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("bulkLoad[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+
+            @Override
+            public void setupInvocation() {
+                tree = new AVLTree<>();
+            }
+
+            @Override
+            public long invoke() {
+                tree.bulkLoad(dataSet.get());
+                return tree.size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return dataSet.get().size();
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase search(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("search[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+            private Student[] probes;
+
+            @Override
+            public void setupTrial() {
+                tree = buildTree(dataSet.get());
+                probes = sample(dataSet.get(), LOOKUPS, false);
+            }
+
+            @Override
+            public long invoke() {
+                long found = 0;
+                for (Student probe : probes) {
+                    if (tree.search(probe)) {
+                        found++;
+                    }
+                }
+                return found;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return probes.length;
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase remove(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("remove[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+            private Student[] victims;
+
+            @Override
+            public void setupTrial() {
+                victims = sample(dataSet.get(), Math.min(REMOVALS, dataSet.get().size()), true);
+            }
+
+            @Override
+            public void setupInvocation() {
+                tree = buildTree(dataSet.get());
+            }
+
+            @Override
+            public long invoke() {
+                long removed = 0;
+                for (Student victim : victims) {
+                    if (tree.remove(victim)) {
+                        removed++;
+                    }
+                }
+                return removed;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return victims.length;
+            }
+        };
+    }
+
+    /**
+     * Looks up the students of search[...] in an {@link AVLMap} by id alone, getting the records back.
+     */
+    private static BenchmarkRunner.BenchmarkCase mapGet(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("avlMap.get[" + dataSet.name + "]") {
+            private AVLMap<String, Student> map;
+            private String[] ids;
+
+            @Override
+            public void setupTrial() {
+                map = new AVLMap<>();
+                for (Student student : dataSet.get()) {
+                    map.put(student.getStudentId(), student);
+                }
+                Student[] probes = sample(dataSet.get(), LOOKUPS, false);
+                ids = new String[probes.length];
+                for (int i = 0; i < probes.length; i++) {
+                    ids[i] = probes[i].getStudentId();
+                }
+            }
+
+            @Override
+            public long invoke() {
+                long ages = 0;
+                for (String id : ids) {
+                    ages += map.get(id).getAge();
+                }
+                return ages;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return ids.length;
+            }
+        };
+    }
+
+    /**
+     * Adds every student by id, half of them twice, with putIfAbsent in a single descent or
+     * with the containsKey-then-put pattern of two descents.
+     */
+    private static BenchmarkRunner.BenchmarkCase mapPutIfAbsent(DataSet dataSet, boolean singleDescent) {
+        String operation = singleDescent ? "avlMap.putIfAbsent" : "avlMap.containsThenPut";
+        return new BenchmarkRunner.BenchmarkCase(operation + "[" + dataSet.name + "]") {
+            private List<Student> students;
+            private AVLMap<String, Student> map;
+
+            @Override
+            public void setupTrial() {
+                students = new ArrayList<>(dataSet.get());
+                students.addAll(dataSet.get().subList(0, dataSet.get().size() / 2));
+            }
+
+            @Override
+            public void setupInvocation() {
+                map = new AVLMap<>();
+            }
+
+            @Override
+            public long invoke() {
+                for (Student student : students) {
+                    if (singleDescent) {
+                        map.putIfAbsent(student.getStudentId(), student);
+                    } else if (!map.containsKey(student.getStudentId())) {
+                        map.put(student.getStudentId(), student);
+                    }
+                }
+                return map.size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return students.size();
+            }
+        };
+    }
+
+    /**
+     * Removes the same students as remove[...], as one join-based batch.
+     */
+    private static BenchmarkRunner.BenchmarkCase removeAll(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("removeAll[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+            private List<Student> victims;
+
+            @Override
+            public void setupTrial() {
+                victims = Arrays.asList(sample(dataSet.get(), Math.min(REMOVALS, dataSet.get().size()), true));
+            }
+
+            @Override
+            public void setupInvocation() {
+                tree = buildTree(dataSet.get());
+            }
+
+            @Override
+            public long invoke() {
+                tree.removeAll(victims);
+                return tree.size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return victims.size();
+            }
+        };
+    }
+
+    /**
+     * Applies a delta of new students, DELTA_PERCENT of the data set, to a tree holding the
+     * data set: one insertion at a time, or as one join-based insertAll.
+     */
+    private static BenchmarkRunner.BenchmarkCase applyDelta(DataSet dataSet, boolean joined) {
+        String operation = (joined ? "insertAll" : "insert") + ".delta" + DELTA_PERCENT;
+        return new BenchmarkRunner.BenchmarkCase(operation + "[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+            private List<Student> delta;
+
+            @Override
+            public void setupTrial() {
+                List<Student> students = dataSet.get();
+                int count = Math.max(1, students.size() * DELTA_PERCENT / 100);
+                delta = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    // Ids past the data set's, so the delta interleaves with the existing keys
+                    delta.add(withId(students.get(i), 1000 + students.size() + i));
+                }
+                Collections.shuffle(delta, new Random(SEED));
+            }
+
+            @Override
+            public void setupInvocation() {
+                tree = buildTree(dataSet.get());
+            }
+
+            @Override
+            public long invoke() {
+                if (joined) {
+                    tree.insertAll(delta);
+                } else {
+                    for (Student student : delta) {
+                        tree.insert(student);
+                    }
+                }
+                return tree.size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return delta.size();
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase inorderTraversal(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("inorderTraversal[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+
+            @Override
+            public void setupTrial() {
+                tree = buildTree(dataSet.get());
+            }
+
+            @Override
+            public long invoke() {
+                return tree.inorderTraversal().size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return 1;
+            }
+        };
+    }
+
+    /**
+     * Sums a column over every element, with the lazy iterator or a parallel stream.
+     */
+    private static BenchmarkRunner.BenchmarkCase iterate(DataSet dataSet, boolean parallel) {
+        return new BenchmarkRunner.BenchmarkCase((parallel ? "parallelStream" : "iterator") + "[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+
+            @Override
+            public void setupTrial() {
+                tree = buildTree(dataSet.get());
+            }
+
+            @Override
+            public long invoke() {
+                if (parallel) {
+                    return tree.stream().parallel().mapToLong(Student::getAge).sum();
+                }
+                long ages = 0;
+                for (Student student : tree) {
+                    ages += student.getAge();
+                }
+                return ages;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return 1;
+            }
+        };
+    }
+
+    /**
+     * Reads the first FIRST_K elements from a random starting point with tailSet.
+     */
+    private static BenchmarkRunner.BenchmarkCase firstInRange(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("tailSet.first" + FIRST_K + "[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+            private Student[] starts;
+
+            @Override
+            public void setupTrial() {
+                tree = buildTree(dataSet.get());
+                starts = sample(dataSet.get(), LOOKUPS, false);
+            }
+
+            @Override
+            public long invoke() {
+                long ages = 0;
+                for (Student start : starts) {
+                    int read = 0;
+                    for (Iterator<Student> it = tree.tailSet(start).iterator(); it.hasNext() && read < FIRST_K; read++) {
+                        ages += it.next().getAge();
+                    }
+                }
+                return ages;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return starts.length;
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase select(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("select[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+            private int[] positions;
+
+            @Override
+            public void setupTrial() {
+                tree = buildTree(dataSet.get());
+                Random random = new Random(SEED);
+                positions = new int[LOOKUPS];
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = random.nextInt(tree.size());
+                }
+            }
+
+            @Override
+            public long invoke() {
+                long ages = 0;
+                for (int position : positions) {
+                    ages += tree.select(position).getAge();
+                }
+                return ages;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return positions.length;
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase rank(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("rank[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+            private Student[] probes;
+
+            @Override
+            public void setupTrial() {
+                tree = buildTree(dataSet.get());
+                probes = sample(dataSet.get(), LOOKUPS, false);
+            }
+
+            @Override
+            public long invoke() {
+                long ranks = 0;
+                for (Student probe : probes) {
+                    ranks += tree.rank(probe);
+                }
+                return ranks;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return probes.length;
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase countInRange(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("countInRange[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+            private Student[] bounds;
+
+            @Override
+            public void setupTrial() {
+                tree = buildTree(dataSet.get());
+                bounds = sample(dataSet.get(), LOOKUPS * 2, false);
+            }
+
+            @Override
+            public long invoke() {
+                long count = 0;
+                for (int i = 0; i < bounds.length; i += 2) {
+                    count += tree.countInRange(bounds[i], bounds[i + 1]);
+                }
+                return count;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return bounds.length / 2;
+            }
+        };
+    }
+
+    private static AggregateSpec<Student> studentAggregates() {
+        return new AggregateSpec<Student>()
+                .column("examScore", Student::getExamScore)
+                .column("studyHoursPerDay", Student::getStudyHoursPerDay);
+    }
+
+    /**
+     * Inserts into a tree that keeps aggregates of two columns, to compare with insert.
+     */
+    private static BenchmarkRunner.BenchmarkCase insertAggregated(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("insert.aggregated[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+
+            @Override
+            public void setupInvocation() {
+                tree = new AVLTree<>(null, studentAggregates());
+            }
+
+            @Override
+            public long invoke() {
+                for (Student student : dataSet.get()) {
+                    tree.insert(student);
+                }
+                return tree.size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return dataSet.get().size();
+            }
+        };
+    }
+
+    /**
+     * Averages the exam score over random id ranges, either from the aggregates kept in the
+     * nodes or by iterating over the range.
+     */
+    private static BenchmarkRunner.BenchmarkCase idRangeAggregate(DataSet dataSet, boolean augmented) {
+        String operation = augmented ? "aggregate" : "scan.aggregate";
+        return new BenchmarkRunner.BenchmarkCase(operation + "[" + dataSet.name + "]") {
+            private AVLTree<Student> tree;
+            private Student[] bounds;
+
+            @Override
+            public void setupTrial() {
+                tree = new AVLTree<>(null, augmented ? studentAggregates() : null);
+                tree.bulkLoad(dataSet.get());
+                bounds = sample(dataSet.get(), RANGE_QUERIES * 2, false);
+                for (int i = 0; i < bounds.length; i += 2) {
+                    if (bounds[i].compareTo(bounds[i + 1]) > 0) {
+                        Student swap = bounds[i];
+                        bounds[i] = bounds[i + 1];
+                        bounds[i + 1] = swap;
+                    }
+                }
+            }
+
+            @Override
+            public long invoke() {
+                double means = 0;
+                for (int i = 0; i < bounds.length; i += 2) {
+                    if (augmented) {
+                        means += tree.aggregate(bounds[i], bounds[i + 1]).getMean("examScore");
+                    } else {
+                        double sum = 0;
+                        long count = 0;
+                        for (Student student : tree.range(bounds[i], bounds[i + 1])) {
+                            sum += student.getExamScore();
+                            count++;
+                        }
+                        means += count == 0 ? 0 : sum / count;
+                    }
+                }
+                return (long) means;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return bounds.length / 2;
+            }
+        };
+    }
+
+    /**
+     * Finds the students with an exam score in a one-point window, either with a seek in
+     * the exam score index of a {@link StudentIndex} or with a scan of every student.
+     */
+    private static BenchmarkRunner.BenchmarkCase examScoreRange(DataSet dataSet, boolean indexed) {
+        String operation = indexed ? "studentIndex.rangeQuery" : "scan.rangeQuery";
+        return new BenchmarkRunner.BenchmarkCase(operation + "[" + dataSet.name + "]") {
+            private StudentIndex index;
+            private List<Student> students;
+            private double[] lows;
+
+            @Override
+            public void setupTrial() {
+                students = dataSet.get();
+                if (indexed) {
+                    index = new StudentIndex();
+                    index.bulkLoad(students);
+                }
+                Random random = new Random(SEED);
+                lows = new double[RANGE_QUERIES];
+                for (int i = 0; i < lows.length; i++) {
+                    lows[i] = random.nextInt(100);
+                }
+            }
+
+            @Override
+            public long invoke() {
+                long found = 0;
+                for (double low : lows) {
+                    if (indexed) {
+                        found += index.rangeQuery(StudentIndex.EXAM_SCORE, low, low + 1).size();
+                    } else {
+                        List<Student> result = new ArrayList<>();
+                        for (Student student : students) {
+                            if (student.getExamScore() >= low && student.getExamScore() <= low + 1) {
+                                result.add(student);
+                            }
+                        }
+                        found += result.size();
+                    }
+                }
+                return found;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return lows.length;
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase persistentInsert(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("persistent.insert[" + dataSet.name + "]") {
+            private PersistentAVLTree<Student> tree;
+
+            @Override
+            public void setupInvocation() {
+                tree = new PersistentAVLTree<>();
+            }
+
+            @Override
+            public long invoke() {
+                for (Student student : dataSet.get()) {
+                    tree.insert(student);
+                }
+                return tree.size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return dataSet.get().size();
+            }
+        };
+    }
+
+    /**
+     * Takes a snapshot and iterates over it, the persistent counterpart of inorderTraversal.
+     */
+    private static BenchmarkRunner.BenchmarkCase persistentSnapshotScan(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("persistent.snapshotScan[" + dataSet.name + "]") {
+            private PersistentAVLTree<Student> tree;
+
+            @Override
+            public void setupTrial() {
+                tree = new PersistentAVLTree<>();
+                tree.bulkLoad(dataSet.get());
+            }
+
+            @Override
+            public long invoke() {
+                long count = 0;
+                for (Student student : tree.snapshot()) {
+                    count += student.getAge();
+                }
+                return count;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return 1;
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase longTreeInsert(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("longTree.insert[" + dataSet.name + "]") {
+            private long[] keys;
+            private LongAVLTree tree;
+
+            @Override
+            public void setupTrial() {
+                keys = idKeys(dataSet.get().toArray(new Student[0]));
+            }
+
+            @Override
+            public void setupInvocation() {
+                tree = new LongAVLTree();
+            }
+
+            @Override
+            public long invoke() {
+                for (long key : keys) {
+                    tree.insert(key);
+                }
+                return tree.size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return keys.length;
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase longTreeSearch(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("longTree.search[" + dataSet.name + "]") {
+            private long[] probes;
+            private LongAVLTree tree;
+
+            @Override
+            public void setupTrial() {
+                tree = buildLongTree(dataSet.get());
+                probes = idKeys(sample(dataSet.get(), LOOKUPS, false));
+            }
+
+            @Override
+            public long invoke() {
+                long found = 0;
+                for (long probe : probes) {
+                    if (tree.search(probe)) {
+                        found++;
+                    }
+                }
+                return found;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return probes.length;
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase longTreeRemove(DataSet dataSet) {
+        return new BenchmarkRunner.BenchmarkCase("longTree.remove[" + dataSet.name + "]") {
+            private long[] victims;
+            private LongAVLTree tree;
+
+            @Override
+            public void setupTrial() {
+                victims = idKeys(sample(dataSet.get(), Math.min(REMOVALS, dataSet.get().size()), true));
+            }
+
+            @Override
+            public void setupInvocation() {
+                tree = buildLongTree(dataSet.get());
+            }
+
+            @Override
+            public long invoke() {
+                long removed = 0;
+                for (long victim : victims) {
+                    if (tree.remove(victim)) {
+                        removed++;
+                    }
+                }
+                return removed;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return victims.length;
+            }
+        };
+    }
+
+    private static OrderedSet<Student> fill(Supplier<OrderedSet<Student>> engine, List<Student> students) {
+        OrderedSet<Student> set = engine.get();
+        for (Student student : students) {
+            set.insert(student);
+        }
+        return set;
+    }
+
+    private static BenchmarkRunner.BenchmarkCase engineInsert(DataSet dataSet, String engineName,
+                                                              Supplier<OrderedSet<Student>> engine) {
+        return new BenchmarkRunner.BenchmarkCase("engine.insert[" + engineName + "," + dataSet.name + "]") {
+            @Override
+            public long invoke() {
+                return fill(engine, dataSet.get()).size();
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return dataSet.get().size();
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase engineSearch(DataSet dataSet, String engineName,
+                                                              Supplier<OrderedSet<Student>> engine) {
+        return new BenchmarkRunner.BenchmarkCase("engine.search[" + engineName + "," + dataSet.name + "]") {
+            private OrderedSet<Student> set;
+            private Student[] probes;
+
+            @Override
+            public void setupTrial() {
+                set = fill(engine, dataSet.get());
+                probes = sample(dataSet.get(), LOOKUPS, false);
+            }
+
+            @Override
+            public long invoke() {
+                long found = 0;
+                for (Student probe : probes) {
+                    if (set.search(probe)) {
+                        found++;
+                    }
+                }
+                return found;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return probes.length;
+            }
+        };
+    }
+
+    /**
+     * Runs a YCSB workload on a set of synthetic records. Inserts accumulate over the
+     * invocations of a trial, as they do over the run of a YCSB workload.
+     */
+    private static BenchmarkRunner.BenchmarkCase ycsb(Workload workload, String engineName,
+                                                      IntFunction<OrderedSet<Student>> engine, int count) {
+        return new BenchmarkRunner.BenchmarkCase("ycsb." + workload.getName() + "[" + engineName + ",synthetic-" + count + "]") {
+            private final WorkloadGenerator generator = new WorkloadGenerator(SEED);
+            private OrderedSet<Student> set;
+            private Workload.Client client;
+
+            @Override
+            public void setupTrial() {
+                set = engine.apply(count);
+                set.bulkLoad(generator.students(count).collect(Collectors.toList()));
+                client = workload.newClient(generator, new AtomicLong(count), SEED);
+            }
+
+            @Override
+            public long invoke() {
+                long records = 0;
+                for (int i = 0; i < LOOKUPS; i++) {
+                    records += client.execute(set, client.nextOperation());
+                }
+                return records;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return LOOKUPS;
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase engineIterate(DataSet dataSet, String engineName,
+                                                               Supplier<OrderedSet<Student>> engine) {
+        return new BenchmarkRunner.BenchmarkCase("engine.iterate[" + engineName + "," + dataSet.name + "]") {
+            private OrderedSet<Student> set;
+
+            @Override
+            public void setupTrial() {
+                set = fill(engine, dataSet.get());
+            }
+
+            @Override
+            public long invoke() {
+                long ages = 0;
+                for (Student student : set) {
+                    ages += student.getAge();
+                }
+                return ages;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return set.size();
+            }
+        };
+    }
+
+    private static BenchmarkRunner.BenchmarkCase engineRemove(DataSet dataSet, String engineName,
+                                                              Supplier<OrderedSet<Student>> engine) {
+        return new BenchmarkRunner.BenchmarkCase("engine.remove[" + engineName + "," + dataSet.name + "]") {
+            private OrderedSet<Student> set;
+            private Student[] victims;
+
+            @Override
+            public void setupTrial() {
+                victims = sample(dataSet.get(), Math.min(REMOVALS, dataSet.get().size()), true);
+            }
+
+            @Override
+            public void setupInvocation() {
+                set = fill(engine, dataSet.get());
+            }
+
+            @Override
+            public long invoke() {
+                long removed = 0;
+                for (Student victim : victims) {
+                    if (set.remove(victim)) {
+                        removed++;
+                    }
+                }
+                return removed;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return victims.length;
+            }
+        };
+    }
+
+    /**
+     * Shares a {@link DurableStudentTree} in a temporary directory between a number of threads
+     * that each insert fresh students and remove them again, so the tree stays small and the
+     * score is dominated by the log. The score is wall-clock time per logged mutation over all
+     * threads; only group commit should get faster as threads are added.
+     */
+    private static BenchmarkRunner.BenchmarkCase durableMutations(DurableStudentTree.Durability durability,
+                                                                  int threadCount) {
+        return new BenchmarkRunner.BenchmarkCase("wal." + durability + "[" + threadCount + "t]") {
+            private final AtomicLong nextId = new AtomicLong();
+            private DurableStudentTree tree;
+            private Student template;
+            private ExecutorService executor;
+
+            @Override
+            public void setupTrial() {
+                try {
+                    Path directory = Files.createTempDirectory("avltree-wal-");
+                    tree = new DurableStudentTree(directory, durability,
+                            DurableStudentTree.DEFAULT_CHECKPOINT_INTERVAL,
+                            DurableStudentTree.DEFAULT_FLUSH_INTERVAL_MILLIS);
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteDirectory(tree, directory)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                template = syntheticStudents(1, SEED).get(0);
+                executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+                    Thread thread = new Thread(runnable, "benchmark-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+
+            @Override
+            public long invoke() {
+                List<Future<Long>> futures = new ArrayList<>(threadCount);
+                for (int t = 0; t < threadCount; t++) {
+                    futures.add(executor.submit(() -> {
+                        long changed = 0;
+                        for (int i = LOGGED_MUTATIONS / threadCount / 2; i > 0; i--) {
+                            Student student = withId(template, (int) nextId.incrementAndGet());
+                            if (tree.insert(student) && tree.remove(student)) {
+                                changed += 2;
+                            }
+                        }
+                        return changed;
+                    }));
+                }
+                long changed = 0;
+                for (Future<Long> future : futures) {
+                    try {
+                        changed += future.get();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return changed;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return LOGGED_MUTATIONS / threadCount / 2 * threadCount * 2;
+            }
+        };
+    }
+
+    private static void deleteDirectory(DurableStudentTree tree, Path directory) {
+        try {
+            tree.close();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shares a {@link ConcurrentAVLTree} between a number of threads that each run a share of
+     * the operations: searches, plus the given percentage of writes that remove a random
+     * student and insert it back. The score is wall-clock time per operation over all threads,
+     * so it drops as throughput scales with the thread count.
+     */
+    private static BenchmarkRunner.BenchmarkCase concurrentMixed(DataSet dataSet, int threadCount,
+                                                                 int writePercent) {
+        String operation = writePercent == 0 ? "concurrent.search" : "concurrent.mixed" + writePercent;
+        return new BenchmarkRunner.BenchmarkCase(operation + "[" + dataSet.name + "," + threadCount + "t]") {
+            private ConcurrentAVLTree<Student> tree;
+            private Student[] probes;
+            private ExecutorService executor;
+
+            @Override
+            public void setupTrial() {
+                tree = new ConcurrentAVLTree<>();
+                tree.bulkLoad(dataSet.get());
+                probes = sample(dataSet.get(), LOOKUPS, false);
+                executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+                    Thread thread = new Thread(runnable, "benchmark-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+
+            @Override
+            public long invoke() {
+                List<Future<Long>> futures = new ArrayList<>(threadCount);
+                for (int t = 0; t < threadCount; t++) {
+                    futures.add(executor.submit(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        long found = 0;
+                        for (int i = CONCURRENT_OPERATIONS / threadCount; i > 0; i--) {
+                            Student probe = probes[random.nextInt(probes.length)];
+                            if (random.nextInt(100) < writePercent) {
+                                if (tree.remove(probe)) {
+                                    tree.insert(probe);
+                                }
+                            } else if (tree.search(probe)) {
+                                found++;
+                            }
+                        }
+                        return found;
+                    }));
+                }
+                long found = 0;
+                for (Future<Long> future : futures) {
+                    try {
+                        found += future.get();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return found;
+            }
+
+            @Override
+            public int operationsPerInvocation() {
+                return CONCURRENT_OPERATIONS / threadCount * threadCount;
+            }
+        };
+    }
+
+    /**
+     * Runs readers and writers against one {@link ConcurrentAVLTree} and checks that
+     * readers always find the students that are never removed, never find the ones that
+     * are never inserted, see a size within bounds, and that the final contents and size
+     * match what the writers did.
+     */
+    private static void stressConcurrentTree(int seconds, int threadCount) {
+        int writers = Math.max(1, threadCount / 2);
+        int readers = Math.max(1, threadCount - writers);
+        int stableCount = 50000;
+        int stripeSize = 5000;
+        List<Student> students = syntheticStudents(stableCount + writers * stripeSize + 1000, SEED);
+        List<Student> stable = students.subList(0, stableCount);
+        List<Student> absent = students.subList(stableCount + writers * stripeSize, students.size());
+
+        ConcurrentAVLTree<Student> tree = new ConcurrentAVLTree<>();
+        tree.bulkLoad(stable);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        long[] present = new long[writers];
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            List<Student> stripe = students.subList(stableCount + w * stripeSize, stableCount + (w + 1) * stripeSize);
+            threads.add(new Thread(() -> {
+                // Each writer owns its stripe, so it knows exactly which of its students are in the tree
+                boolean[] inserted = new boolean[stripe.size()];
+                Random random = new Random(SEED + writer);
+                long count = 0;
+                long operations = 0;
+                while (running.get()) {
+                    int i = random.nextInt(stripe.size());
+                    if (inserted[i]) {
+                        check(tree.remove(stripe.get(i)), "remove missed an inserted student");
+                        count--;
+                    } else {
+                        tree.insert(stripe.get(i));
+                        count++;
+                    }
+                    inserted[i] = !inserted[i];
+                    operations++;
+                }
+                present[writer] = count;
+                writes.addAndGet(operations);
+            }, "stress-writer-" + w));
+        }
+        for (int r = 0; r < readers; r++) {
+            int reader = r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(SEED * 31 + reader);
+                long operations = 0;
+                while (running.get()) {
+                    check(tree.search(stable.get(random.nextInt(stable.size()))), "search missed a stable student");
+                    check(!tree.search(absent.get(random.nextInt(absent.size()))), "search found an absent student");
+                    int size = tree.size();
+                    check(size >= stableCount && size <= stableCount + writers * stripeSize, "size out of bounds: " + size);
+                    operations += 3;
+                }
+                reads.addAndGet(operations);
+            }, "stress-reader-" + r));
+        }
+
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                failures.add(e);
+                running.set(false);
+            });
+            thread.start();
+        }
+        try {
+            Thread.sleep(seconds * 1000L);
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Stress test failed", failures.get(0));
+        }
+
+        long expected = stableCount;
+        for (long count : present) {
+            expected += count;
+        }
+        List<Student> contents = tree.inorderTraversal();
+        check(tree.size() == expected && contents.size() == expected,
+                "final size " + tree.size() + " != expected " + expected);
+        for (int i = 1; i < contents.size(); i++) {
+            check(contents.get(i - 1).compareTo(contents.get(i)) < 0, "inorder traversal out of order");
+        }
+        System.out.printf("Stress OK: %d readers, %d writers, %d reads, %d writes, final size %d%n",
+                readers, writers, reads.get(), writes.get(), expected);
+    }
+
+    /**
+     * Makes the log of a {@link DurableStudentTree} fail with a torn write at a random point
+     * while writers insert and remove students, then reopens the directory and checks that
+     * recovery replays exactly the acknowledged mutations. The one mutation of each writer
+     * that failed may or may not have reached the disk, and every mutation after the failure
+     * must throw. Only the modes that acknowledge after an fsync are checked.
+     */
+    private static void stressWalFailures(int rounds, int writers) throws IOException {
+        int stripeSize = 200;
+        List<Student> students = syntheticStudents(writers * stripeSize + 1, SEED);
+        Student outsider = students.get(students.size() - 1);
+        DurableStudentTree.Durability[] modes = {
+                DurableStudentTree.Durability.SYNC_PER_OP, DurableStudentTree.Durability.GROUP_COMMIT
+        };
+        long mutations = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (DurableStudentTree.Durability durability : modes) {
+                Path directory = Files.createTempDirectory("avltree-wal-faults-");
+                DurableStudentTree tree = new DurableStudentTree(directory, durability, 64,
+                        DurableStudentTree.DEFAULT_FLUSH_INTERVAL_MILLIS);
+                tree.failLogWritesAfter(new Random(SEED + round).nextInt(40_000));
+
+                boolean[][] present = new boolean[writers][stripeSize];
+                int[] failed = new int[writers];
+                long[] acknowledged = new long[writers];
+                List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+                List<Thread> threads = new ArrayList<>();
+                for (int w = 0; w < writers; w++) {
+                    int writer = w;
+                    List<Student> stripe = students.subList(w * stripeSize, (w + 1) * stripeSize);
+                    threads.add(new Thread(() -> {
+                        Random random = new Random(SEED * 31 + writer);
+                        failed[writer] = -1;
+                        try {
+                            while (true) {
+                                int i = random.nextInt(stripeSize);
+                                try {
+                                    boolean changed = present[writer][i] ? tree.remove(stripe.get(i))
+                                            : tree.insert(stripe.get(i));
+                                    check(changed, "a mutation of a writer's own stripe changed nothing");
+                                } catch (IOException e) {
+                                    failed[writer] = i;
+                                    break;
+                                }
+                                present[writer][i] = !present[writer][i];
+                                acknowledged[writer]++;
+                            }
+                            try {
+                                tree.insert(outsider);
+                                throw new IllegalStateException("a mutation succeeded after the log failed");
+                            } catch (IOException e) {
+                                // Expected: the failure is permanent
+                            }
+                        } catch (Throwable t) {
+                            failures.add(t);
+                        }
+                    }, "wal-faults-writer-" + w));
+                }
+                for (Thread thread : threads) {
+                    thread.start();
+                }
+                for (Thread thread : threads) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (!failures.isEmpty()) {
+                    throw new IllegalStateException("WAL failure check failed", failures.get(0));
+                }
+                try {
+                    tree.close();
+                } catch (IOException e) {
+                    // Expected: close cannot flush a failed log
+                }
+
+                DurableStudentTree recovered = new DurableStudentTree(directory, durability, 0,
+                        DurableStudentTree.DEFAULT_FLUSH_INTERVAL_MILLIS);
+                int expectedSize = 0;
+                for (int w = 0; w < writers; w++) {
+                    for (int i = 0; i < stripeSize; i++) {
+                        boolean found = recovered.search(students.get(w * stripeSize + i));
+                        check(found == present[w][i] || i == failed[w], durability + " round " + round
+                                + ": recovery " + (found ? "resurrected " : "lost ") + students.get(w * stripeSize + i));
+                        expectedSize += found ? 1 : 0;
+                    }
+                    mutations += acknowledged[w];
+                }
+                check(!recovered.search(outsider), "recovery replayed a mutation made after the log failed");
+                check(recovered.size() == expectedSize, "recovered size " + recovered.size() + " != " + expectedSize);
+                deleteDirectory(recovered, directory);
+            }
+        }
+        System.out.printf("WAL failure injection OK: %d rounds of %s, %d acknowledged mutations recovered%n",
+                rounds, Arrays.toString(modes), mutations);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static LongAVLTree buildLongTree(List<Student> students) {
+        LongAVLTree tree = new LongAVLTree(students.size());
+        for (long key : idKeys(students.toArray(new Student[0]))) {
+            tree.insert(key);
+        }
+        return tree;
+    }
+
+    /**
+     * Extracts the numeric part of ids of the form "S&lt;digits&gt;".
+     */
+    private static long[] idKeys(Student[] students) {
+        long[] keys = new long[students.length];
+        for (int i = 0; i < students.length; i++) {
+            keys[i] = students[i].getIdKey();
+        }
+        return keys;
+    }
+
+    /**
+     * Prints the retained heap bytes per record of each student representation, for
+     * records cycled from the dataset with distinct ids.
+     */
+    private static void printFootprint(List<Student> dataset, int count) {
+        System.out.printf("%-46s %12s%n", "Representation", "B/record");
+        System.out.printf("%-46s %12.1f%n", "Student, per-row String copies (String.split)",
+                bytesPerRecord(count, i -> {
+                    Student s = dataset.get(i % dataset.size());
+                    return new Student("S" + (1000 + i), s.getAge(), new String(s.getGender()),
+                            s.getStudyHoursPerDay(), s.getSocialMediaHours(), s.getNetflixHours(), s.isPartTimeJob(),
+                            s.getAttendancePercentage(), s.getSleepHours(), new String(s.getDietQuality()),
+                            s.getExerciseFrequency(), new String(s.getParentalEducationLevel()),
+                            new String(s.getInternetQuality()), s.getMentalHealthRating(),
+                            s.isExtracurricularParticipation(), s.getExamScore());
+                }));
+        System.out.printf("%-46s %12.1f%n", "Student, shared categorical Strings",
+                bytesPerRecord(count, i -> withId(dataset.get(i % dataset.size()), 1000 + i)));
+        System.out.printf("%-46s %12.1f%n", "CompactStudent",
+                bytesPerRecord(count, i -> CompactStudent.of(withId(dataset.get(i % dataset.size()), 1000 + i))));
+    }
+
+    private static Student withId(Student s, int id) {
+        return new Student("S" + id, s.getAge(), s.getGender(), s.getStudyHoursPerDay(), s.getSocialMediaHours(),
+                s.getNetflixHours(), s.isPartTimeJob(), s.getAttendancePercentage(), s.getSleepHours(),
+                s.getDietQuality(), s.getExerciseFrequency(), s.getParentalEducationLevel(), s.getInternetQuality(),
+                s.getMentalHealthRating(), s.isExtracurricularParticipation(), s.getExamScore());
+    }
+
+    /**
+     * Measures the heap retained by count records, excluding the array that holds them.
+     */
+    private static double bytesPerRecord(int count, IntFunction<Object> factory) {
+        Object[] records = new Object[count];
+        long before = usedHeapAfterGc();
+        for (int i = 0; i < count; i++) {
+            records[i] = factory.apply(i);
+        }
+        long after = usedHeapAfterGc();
+        // Keeps the records reachable until after the measurement
+        sink += System.identityHashCode(records[count - 1]);
+        return (double) (after - before) / count;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static AVLTree<Student> buildTree(List<Student> students) {
+        AVLTree<Student> tree = new AVLTree<>();
+        for (Student student : students) {
+            tree.insert(student);
+        }
+        return tree;
+    }
+
+    /**
+     * Picks random students with a fixed seed, optionally without repetition.
+     */
+    private static Student[] sample(List<Student> students, int count, boolean distinct) {
+        Random random = new Random(SEED);
+        Student[] result = new Student[count];
+        if (distinct) {
+            List<Student> shuffled = new ArrayList<>(students);
+            Collections.shuffle(shuffled, random);
+            return shuffled.subList(0, count).toArray(result);
+        }
+        for (int i = 0; i < count; i++) {
+            result[i] = students.get(random.nextInt(students.size()));
+        }
+        return result;
+    }
+
+    /**
+     * Generates students with ids S1000 .. S(1000 + count - 1) in random order.
+     */
+    private static List<Student> syntheticStudents(int count, long seed) {
+        return new WorkloadGenerator(seed).shuffledStudents(count);
+    }
+}
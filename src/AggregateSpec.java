@@ -0,0 +1,77 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Numeric columns whose aggregates an {@link AVLTree} keeps in every node: sum, minimum,
+ * maximum and sum of squares over the subtree (the count is the subtree size). With them
+ * the tree answers range aggregates in O(log n) however many elements fall in the range.
+ * Columns are added before the spec is given to a tree.
+ * @param <T> The type of the elements.
+ */
+public class AggregateSpec<T> {
+    /**
+     * Values kept per column in a node: sum, min, max and sum of squares.
+     */
+    static final int SLOTS = 4;
+    static final int SUM = 0;
+    static final int MIN = 1;
+    static final int MAX = 2;
+    static final int SUM_OF_SQUARES = 3;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<ToDoubleFunction<? super T>> columns = new ArrayList<>();
+
+    /**
+     * Adds a column.
+     * @param name The name of the column, used to read the aggregates.
+     * @param column The function that reads the column from an element.
+     * @return This spec, to chain calls.
+     * @throws IllegalArgumentException if a column with that name already exists.
+     */
+    public AggregateSpec<T> column(String name, ToDoubleFunction<? super T> column) {
+        if (names.contains(name)) {
+            throw new IllegalArgumentException("Column already exists: " + name);
+        }
+        names.add(name);
+        columns.add(column);
+        return this;
+    }
+
+    /**
+     * Gets the number of columns.
+     * @return The number of columns.
+     */
+    public int size() {
+        return columns.size();
+    }
+
+    /**
+     * Gets the position of a column.
+     * @param name The name of the column.
+     * @return The position of the column, from 0.
+     * @throws IllegalArgumentException if there is no column with that name.
+     */
+    public int indexOf(String name) {
+        int index = names.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown column: " + name);
+        }
+        return index;
+    }
+
+    /**
+     * Gets the names of the columns, in order.
+     * @return The names.
+     */
+    public List<String> getNames() {
+        return new ArrayList<>(names);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ToDoubleFunction<? super T>[] toArray() {
+        return columns.toArray(new ToDoubleFunction[0]);
+    }
+}
@@ -3,7 +3,9 @@
 
 package src;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 
 /**
@@ -12,23 +14,80 @@ import java.util.List;
 public class App {
     /**
      * O ponto de entrada principal para a aplicação.
-     * @param args Argumentos de linha de comando (não utilizados).
+     * Uso: {@code java -cp bin src.App [--warmup 5] [--iterations 10] [--seed 42] [--json arquivo]
+     * [--csv arquivo] [--baseline arquivo] [--threshold 10] [--metrics]}, onde --warmup/--iterations são as
+     * iterações de aquecimento/medição dos ensaios repetidos, --json/--csv gravam o resultado dos
+     * ensaios e --baseline compara o resultado com o de uma execução anterior (JSON ou CSV),
+     * terminando com código 1 se alguma fase ficar mais lenta que --threshold por cento e com
+     * código 2 se a análise falhar, e
+     * --metrics imprime as métricas da árvore AVL, coletadas depois das fases cronometradas.
+     * @param args Argumentos de linha de comando.
      */
     public static void main(String[] args) {
+        int warmupIterations = 5;
+        int measurementIterations = 10;
+        long seed = PerformanceAnalyzer.DEFAULT_SEED;
+        String jsonPath = null;
+        String csvPath = null;
+        String baselinePath = null;
+        double thresholdPercent = 10;
+        boolean metrics = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--warmup":
+                    warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--iterations":
+                    measurementIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--json":
+                    jsonPath = args[++i];
+                    break;
+                case "--csv":
+                    csvPath = args[++i];
+                    break;
+                case "--baseline":
+                    baselinePath = args[++i];
+                    break;
+                case "--threshold":
+                    thresholdPercent = Double.parseDouble(args[++i]);
+                    break;
+                case "--metrics":
+                    metrics = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+            }
+        }
+
+        boolean regression = false;
+        boolean failed = false;
         try {
             System.out.println("Iniciando Análise de Desempenho da Árvore AVL");
             System.out.println("============================================");
             
-            // Carrega o conjunto de dados
+            // Carrega o conjunto de dados, do snapshot binário quando ele existe e está atualizado
             String datasetPath = "data/dataset.csv";
-            CSVReader csvReader = new CSVReader(datasetPath);
-            List<Student> students = csvReader.readStudents();
+            String snapshotPath = "data/dataset.snapshot";
+            File snapshotFile = new File(snapshotPath);
+            List<Student> students;
+            if (snapshotFile.isFile() && snapshotFile.lastModified() >= new File(datasetPath).lastModified()) {
+                students = StudentSnapshot.read(snapshotPath);
+                datasetPath = snapshotPath;
+            } else {
+                CSVReader csvReader = new CSVReader(datasetPath);
+                students = csvReader.readStudents();
+            }
             
             System.out.println("Carregados " + students.size() + " estudantes de " + datasetPath);
             System.out.println("Exemplo de estudante: " + students.get(0));
             
             // Cria e executa o analisador de desempenho
-            PerformanceAnalyzer analyzer = new PerformanceAnalyzer(students);
+            PerformanceAnalyzer analyzer = new PerformanceAnalyzer(students, "AVL", AVLTree::new, seed);
+            analyzer.setRecordMetrics(metrics);
             
             // Buscar 5000 estudantes aleatórios e remover 1000
             int numberOfSearches = 5000;
@@ -40,15 +99,45 @@ public class App {
             System.out.println("- Número de remoções: " + numberOfRemovals);
             
             analyzer.runCompleteAnalysis(numberOfSearches, numberOfRemovals);
+
+            // Compara a árvore AVL com as outras estruturas sob a mesma carga
+            analyzer.runEngineComparison(numberOfSearches, numberOfRemovals, PerformanceAnalyzer.ENGINES);
+
+            // Repete a mesma carga com aquecimento para obter médias, intervalos de confiança e percentis
+            PerformanceReport report = analyzer.runTrials(numberOfSearches, numberOfRemovals,
+                    warmupIterations, measurementIterations);
+            PerformanceAnalyzer.printReport(report);
+            if (jsonPath != null) {
+                report.writeJson(Paths.get(jsonPath));
+                System.out.println("Resultado gravado em " + jsonPath);
+            }
+            if (csvPath != null) {
+                report.writeCsv(Paths.get(csvPath));
+                System.out.println("Resultado gravado em " + csvPath);
+            }
+            if (baselinePath != null) {
+                PerformanceReport baseline = PerformanceReport.read(Paths.get(baselinePath));
+                regression = PerformanceAnalyzer.printComparison(report.compareTo(baseline, thresholdPercent),
+                        thresholdPercent);
+            }
             
             System.out.println("Análise de desempenho concluída com sucesso!");
             
         } catch (IOException e) {
-            System.err.println("Erro ao ler o conjunto de dados: " + e.getMessage());
+            System.err.println("Erro de leitura ou gravação: " + e.getMessage());
             e.printStackTrace();
+            failed = true;
         } catch (Exception e) {
             System.err.println("Erro inesperado: " + e.getMessage());
             e.printStackTrace();
+            failed = true;
+        }
+        // Um erro não pode passar como ausência de regressão na verificação de desempenho
+        if (failed) {
+            System.exit(2);
+        }
+        if (regression) {
+            System.exit(1);
         }
     }
 } 
\ No newline at end of file
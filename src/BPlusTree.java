@@ -0,0 +1,515 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * B+tree ordered by the natural order of its elements.
+ * Each node holds up to a configurable number of elements (the fanout) in a contiguous array,
+ * so a search touches about log_fanout(n) nodes and binary searches inside each one instead
+ * of chasing a pointer per comparison as a binary tree does. All elements live in the leaves,
+ * which are linked in order, so iteration is a scan along the leaf chain.
+ * @param <T> The type of data stored in the tree, must be comparable.
+ */
+public class BPlusTree<T extends Comparable<T>> implements OrderedSet<T> {
+    public static final int DEFAULT_FANOUT = 64;
+
+    /**
+     * A node with its keys sorted in keys[0..count). The arrays have one spare slot so that a
+     * node can overflow by one element before it is split.
+     */
+    private abstract static class Node {
+        Object[] keys;
+        int count;
+    }
+
+    private static final class Leaf extends Node {
+        Leaf next;
+
+        Leaf(int fanout) {
+            keys = new Object[fanout + 1];
+        }
+    }
+
+    /**
+     * An inner node: children[i] holds the elements less than keys[i] and not less than keys[i - 1].
+     */
+    private static final class Inner extends Node {
+        Node[] children;
+
+        Inner(int fanout) {
+            keys = new Object[fanout];
+            children = new Node[fanout + 1];
+        }
+    }
+
+    private final int fanout;
+    private final int minLeafKeys;
+    private final int minInnerKeys;
+    private Node root;
+    private int size;
+    private int modCount;
+
+    // Results of the last recursive insertion or removal
+    private Object splitKey;
+    private boolean changed;
+
+    public BPlusTree() {
+        this(DEFAULT_FANOUT);
+    }
+
+    /**
+     * Creates an empty tree.
+     * @param fanout The maximum number of elements of a leaf and of children of an inner node.
+     * @throws IllegalArgumentException if the fanout is less than 3.
+     */
+    public BPlusTree(int fanout) {
+        if (fanout < 3) {
+            throw new IllegalArgumentException("Fanout must be at least 3: " + fanout);
+        }
+        this.fanout = fanout;
+        this.minLeafKeys = fanout / 2;
+        this.minInnerKeys = (fanout - 1) / 2;
+    }
+
+    public int getFanout() {
+        return fanout;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object value) {
+        return (T) value;
+    }
+
+    /**
+     * Binary search in the keys of a node.
+     * @return The index of the key equal to the value, or -(insertion point) - 1.
+     */
+    private int indexOf(Node node, T value) {
+        int low = 0;
+        int high = node.count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compareResult = value.compareTo(cast(node.keys[mid]));
+            if (compareResult > 0) {
+                low = mid + 1;
+            } else if (compareResult < 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Gets the child of an inner node whose range contains a value.
+     */
+    private int childIndex(Inner node, T value) {
+        int index = indexOf(node, value);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    @Override
+    public boolean search(T value) {
+        Node node = root;
+        if (node == null) {
+            return false;
+        }
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[childIndex(inner, value)];
+        }
+        return indexOf(node, value) >= 0;
+    }
+
+    @Override
+    public void insert(T value) {
+        if (root == null) {
+            root = new Leaf(fanout);
+        }
+        changed = false;
+        Node sibling = insert(root, value);
+        if (sibling != null) {
+            Inner newRoot = new Inner(fanout);
+            newRoot.keys[0] = splitKey;
+            newRoot.children[0] = root;
+            newRoot.children[1] = sibling;
+            newRoot.count = 1;
+            root = newRoot;
+        }
+        splitKey = null;
+        if (changed) {
+            size++;
+            modCount++;
+        }
+    }
+
+    /**
+     * Inserts into a subtree.
+     * @return The new right sibling if the node was split, with its separator in splitKey, or null.
+     */
+    private Node insert(Node node, T value) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int index = indexOf(leaf, value);
+            if (index >= 0) {
+                return null;
+            }
+            index = -index - 1;
+            System.arraycopy(leaf.keys, index, leaf.keys, index + 1, leaf.count - index);
+            leaf.keys[index] = value;
+            leaf.count++;
+            changed = true;
+            return leaf.count > fanout ? splitLeaf(leaf) : null;
+        }
+
+        Inner inner = (Inner) node;
+        int index = childIndex(inner, value);
+        Node sibling = insert(inner.children[index], value);
+        if (sibling == null) {
+            return null;
+        }
+        System.arraycopy(inner.keys, index, inner.keys, index + 1, inner.count - index);
+        System.arraycopy(inner.children, index + 1, inner.children, index + 2, inner.count - index);
+        inner.keys[index] = splitKey;
+        inner.children[index + 1] = sibling;
+        inner.count++;
+        return inner.count >= fanout ? splitInner(inner) : null;
+    }
+
+    private Leaf splitLeaf(Leaf leaf) {
+        int mid = leaf.count / 2;
+        Leaf right = new Leaf(fanout);
+        right.count = leaf.count - mid;
+        System.arraycopy(leaf.keys, mid, right.keys, 0, right.count);
+        Arrays.fill(leaf.keys, mid, leaf.count, null);
+        leaf.count = mid;
+        right.next = leaf.next;
+        leaf.next = right;
+        splitKey = right.keys[0];
+        return right;
+    }
+
+    private Inner splitInner(Inner inner) {
+        int mid = inner.count / 2;
+        Inner right = new Inner(fanout);
+        right.count = inner.count - mid - 1;
+        System.arraycopy(inner.keys, mid + 1, right.keys, 0, right.count);
+        System.arraycopy(inner.children, mid + 1, right.children, 0, right.count + 1);
+        // The middle key moves up to the parent
+        splitKey = inner.keys[mid];
+        Arrays.fill(inner.keys, mid, inner.count, null);
+        Arrays.fill(inner.children, mid + 1, inner.count + 1, null);
+        inner.count = mid;
+        return right;
+    }
+
+    @Override
+    public boolean remove(T value) {
+        if (root == null) {
+            return false;
+        }
+        changed = false;
+        remove(root, value);
+        if (!changed) {
+            return false;
+        }
+        size--;
+        modCount++;
+        if (root instanceof Inner && root.count == 0) {
+            root = ((Inner) root).children[0];
+        } else if (size == 0) {
+            root = null;
+        }
+        return true;
+    }
+
+    /**
+     * Removes from a subtree, leaving the node possibly underfull for its parent to fix.
+     */
+    private void remove(Node node, T value) {
+        if (node instanceof Leaf) {
+            int index = indexOf(node, value);
+            if (index >= 0) {
+                System.arraycopy(node.keys, index + 1, node.keys, index, node.count - index - 1);
+                node.keys[--node.count] = null;
+                changed = true;
+            }
+            return;
+        }
+
+        Inner inner = (Inner) node;
+        int index = childIndex(inner, value);
+        Node child = inner.children[index];
+        remove(child, value);
+        if (changed && child.count < (child instanceof Leaf ? minLeafKeys : minInnerKeys)) {
+            fixUnderflow(inner, index);
+        }
+    }
+
+    /**
+     * Refills an underfull child by borrowing from a sibling that can spare an element, or
+     * merges it with a sibling otherwise.
+     */
+    private void fixUnderflow(Inner parent, int index) {
+        Node child = parent.children[index];
+        int minKeys = child instanceof Leaf ? minLeafKeys : minInnerKeys;
+        if (index > 0 && parent.children[index - 1].count > minKeys) {
+            borrowFromLeft(parent, index);
+        } else if (index < parent.count && parent.children[index + 1].count > minKeys) {
+            borrowFromRight(parent, index);
+        } else if (index > 0) {
+            merge(parent, index - 1);
+        } else {
+            merge(parent, index);
+        }
+    }
+
+    private void borrowFromLeft(Inner parent, int index) {
+        Node child = parent.children[index];
+        Node left = parent.children[index - 1];
+        System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+        if (child instanceof Leaf) {
+            child.keys[0] = left.keys[left.count - 1];
+            parent.keys[index - 1] = child.keys[0];
+        } else {
+            Inner innerChild = (Inner) child;
+            Inner innerLeft = (Inner) left;
+            System.arraycopy(innerChild.children, 0, innerChild.children, 1, child.count + 1);
+            child.keys[0] = parent.keys[index - 1];
+            innerChild.children[0] = innerLeft.children[left.count];
+            innerLeft.children[left.count] = null;
+            parent.keys[index - 1] = left.keys[left.count - 1];
+        }
+        child.count++;
+        left.keys[--left.count] = null;
+    }
+
+    private void borrowFromRight(Inner parent, int index) {
+        Node child = parent.children[index];
+        Node right = parent.children[index + 1];
+        if (child instanceof Leaf) {
+            child.keys[child.count] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+            parent.keys[index] = right.keys[0];
+        } else {
+            Inner innerChild = (Inner) child;
+            Inner innerRight = (Inner) right;
+            child.keys[child.count] = parent.keys[index];
+            innerChild.children[child.count + 1] = innerRight.children[0];
+            parent.keys[index] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+            System.arraycopy(innerRight.children, 1, innerRight.children, 0, right.count);
+            innerRight.children[right.count] = null;
+        }
+        child.count++;
+        right.keys[--right.count] = null;
+    }
+
+    /**
+     * Merges children[index + 1] into children[index] and drops their separator from the parent.
+     */
+    private void merge(Inner parent, int index) {
+        Node left = parent.children[index];
+        Node right = parent.children[index + 1];
+        if (left instanceof Leaf) {
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            left.count += right.count;
+            ((Leaf) left).next = ((Leaf) right).next;
+        } else {
+            // The separator comes down between the two halves
+            left.keys[left.count] = parent.keys[index];
+            System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+            System.arraycopy(((Inner) right).children, 0, ((Inner) left).children, left.count + 1, right.count + 1);
+            left.count += right.count + 1;
+        }
+        System.arraycopy(parent.keys, index + 1, parent.keys, index, parent.count - index - 1);
+        System.arraycopy(parent.children, index + 2, parent.children, index + 1, parent.count - index - 1);
+        parent.count--;
+        parent.keys[parent.count] = null;
+        parent.children[parent.count + 1] = null;
+    }
+
+    /**
+     * Adds every value of a collection. An empty tree is built bottom-up from the sorted values,
+     * with full leaves, in linear time once the input is sorted; otherwise each value is inserted.
+     * @param values The values to add.
+     */
+    @Override
+    public void bulkLoad(Collection<? extends T> values) {
+        if (root != null) {
+            for (T value : values) {
+                insert(value);
+            }
+            return;
+        }
+
+        Object[] sorted = values.toArray();
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (unique == 0 || cast(sorted[unique - 1]).compareTo(cast(sorted[i])) != 0) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        if (unique == 0) {
+            return;
+        }
+
+        // Leaves, with the elements spread evenly so that none is underfull
+        int nodeCount = (unique + fanout - 1) / fanout;
+        Node[] level = new Node[nodeCount];
+        Object[] firstKeys = new Object[nodeCount];
+        Leaf previous = null;
+        for (int i = 0, start = 0; i < nodeCount; i++) {
+            int end = (int) ((long) unique * (i + 1) / nodeCount);
+            Leaf leaf = new Leaf(fanout);
+            System.arraycopy(sorted, start, leaf.keys, 0, end - start);
+            leaf.count = end - start;
+            if (previous != null) {
+                previous.next = leaf;
+            }
+            previous = leaf;
+            level[i] = leaf;
+            firstKeys[i] = sorted[start];
+            start = end;
+        }
+
+        // Inner levels, each child separated from the previous one by its first element
+        while (level.length > 1) {
+            int parentCount = (level.length + fanout - 1) / fanout;
+            Node[] parents = new Node[parentCount];
+            Object[] parentFirstKeys = new Object[parentCount];
+            for (int i = 0, start = 0; i < parentCount; i++) {
+                int end = (int) ((long) level.length * (i + 1) / parentCount);
+                Inner inner = new Inner(fanout);
+                System.arraycopy(level, start, inner.children, 0, end - start);
+                System.arraycopy(firstKeys, start + 1, inner.keys, 0, end - start - 1);
+                inner.count = end - start - 1;
+                parents[i] = inner;
+                parentFirstKeys[i] = firstKeys[start];
+                start = end;
+            }
+            level = parents;
+            firstKeys = parentFirstKeys;
+        }
+
+        root = level[0];
+        size = unique;
+        modCount++;
+    }
+
+    private Leaf firstLeaf() {
+        Node node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[0];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Iterates over the elements in sorted order along the leaf chain.
+     * The iterator is fail-fast, as the ones of {@link AVLTree}.
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final int expectedModCount = modCount;
+            private Leaf leaf = firstLeaf();
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                while (leaf != null && index >= leaf.count) {
+                    leaf = leaf.next;
+                    index = 0;
+                }
+                return leaf != null;
+            }
+
+            @Override
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return cast(leaf.keys[index++]);
+            }
+        };
+    }
+
+    /**
+     * Gets the smallest elements greater than or equal to a value: one descent to the leaf of
+     * the value, then along the leaf chain.
+     * @param from The lower bound, inclusive.
+     * @param limit The maximum number of elements.
+     * @return Up to limit elements, in ascending order.
+     */
+    @Override
+    public List<T> scan(T from, int limit) {
+        List<T> result = new ArrayList<>(Math.min(limit, 16));
+        Node node = root;
+        if (node == null) {
+            return result;
+        }
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[childIndex(inner, from)];
+        }
+        int index = indexOf(node, from);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        for (Leaf leaf = (Leaf) node; leaf != null && result.size() < limit; leaf = leaf.next, index = 0) {
+            for (int i = index; i < leaf.count && result.size() < limit; i++) {
+                result.add(cast(leaf.keys[i]));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<T> inorderTraversal() {
+        List<T> result = new ArrayList<>(size);
+        for (Leaf leaf = firstLeaf(); leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.count; i++) {
+                result.add(cast(leaf.keys[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of levels of the tree.
+     * @return The height, or 0 if the tree is empty.
+     */
+    public int height() {
+        int height = 0;
+        for (Node node = root; node != null; node = node instanceof Inner ? ((Inner) node).children[0] : null) {
+            height++;
+        }
+        return height;
+    }
+}
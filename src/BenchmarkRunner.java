@@ -0,0 +1,328 @@
+package src;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal JMH-style benchmark harness built only on the JDK.
+ * Each benchmark runs warmup and measurement iterations, optionally in forked JVMs,
+ * and reports the average time per operation with a 99.9% confidence interval,
+ * together with the allocation rate measured from the per-thread allocation counters.
+ */
+public class BenchmarkRunner {
+    private static final String RESULT_PREFIX = "@iteration";
+    private static final double CONFIDENCE = 0.999;
+
+    /**
+     * Consumes benchmark return values so the JIT cannot eliminate the measured work.
+     */
+    private static volatile long sink;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final int forks;
+
+    /**
+     * A single benchmark. Only {@link #invoke()} is timed.
+     */
+    public abstract static class BenchmarkCase {
+        private final String name;
+
+        protected BenchmarkCase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Prepares state shared by every invocation; called once per fork.
+         */
+        public void setupTrial() {
+        }
+
+        /**
+         * Prepares state for the next invocation; not timed.
+         */
+        public void setupInvocation() {
+        }
+
+        /**
+         * Performs the measured work.
+         * @return A value derived from the work, consumed by the harness.
+         */
+        public abstract long invoke();
+
+        /**
+         * Gets the number of operations performed by a single invocation.
+         * @return The number of operations.
+         */
+        public abstract int operationsPerInvocation();
+    }
+
+    /**
+     * Measurements of one iteration.
+     */
+    public static class Iteration {
+        private final double nanosPerOp;
+        private final double allocBytesPerOp;
+        private final double allocMegabytesPerSecond;
+        private final long gcCount;
+
+        public Iteration(double nanosPerOp, double allocBytesPerOp, double allocMegabytesPerSecond, long gcCount) {
+            this.nanosPerOp = nanosPerOp;
+            this.allocBytesPerOp = allocBytesPerOp;
+            this.allocMegabytesPerSecond = allocMegabytesPerSecond;
+            this.gcCount = gcCount;
+        }
+
+        public double getNanosPerOp() {
+            return nanosPerOp;
+        }
+
+        public double getAllocBytesPerOp() {
+            return allocBytesPerOp;
+        }
+
+        public double getAllocMegabytesPerSecond() {
+            return allocMegabytesPerSecond;
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+    }
+
+    /**
+     * Aggregated result of a benchmark over every measured iteration of every fork.
+     */
+    public static class Result {
+        private final String name;
+        private final List<Iteration> iterations;
+
+        public Result(String name, List<Iteration> iterations) {
+            this.name = name;
+            this.iterations = iterations;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Iteration> getIterations() {
+            return iterations;
+        }
+
+        public double[] nanosPerOp() {
+            return iterations.stream().mapToDouble(Iteration::getNanosPerOp).toArray();
+        }
+
+        public double getScore() {
+            return Statistics.mean(nanosPerOp());
+        }
+
+        public double getError() {
+            return Statistics.confidenceHalfWidth(nanosPerOp(), CONFIDENCE);
+        }
+
+        public double getAllocBytesPerOp() {
+            return Statistics.mean(iterations.stream().mapToDouble(Iteration::getAllocBytesPerOp).toArray());
+        }
+
+        public double getAllocMegabytesPerSecond() {
+            return Statistics.mean(iterations.stream().mapToDouble(Iteration::getAllocMegabytesPerSecond).toArray());
+        }
+
+        public long getGcCount() {
+            return iterations.stream().mapToLong(Iteration::getGcCount).sum();
+        }
+    }
+
+    /**
+     * Creates a new runner.
+     * @param warmupIterations The number of unrecorded iterations per fork.
+     * @param measurementIterations The number of recorded iterations per fork.
+     * @param iterationMillis The minimum duration of each iteration.
+     * @param forks The number of forked JVMs per benchmark, or 0 to run in this JVM.
+     */
+    public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis, int forks) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.forks = forks;
+    }
+
+    public int getForks() {
+        return forks;
+    }
+
+    /**
+     * Runs a benchmark in the current JVM.
+     * @param benchmark The benchmark to run.
+     * @return The measured iterations.
+     */
+    public Result runInProcess(BenchmarkCase benchmark) {
+        benchmark.setupTrial();
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(benchmark);
+        }
+        List<Iteration> iterations = new ArrayList<>(measurementIterations);
+        for (int i = 0; i < measurementIterations; i++) {
+            iterations.add(runIteration(benchmark));
+        }
+        return new Result(benchmark.getName(), iterations);
+    }
+
+    /**
+     * Runs a benchmark in {@link #getForks()} fresh JVMs, each started as
+     * {@code java mainClass args... --fork-child name}, and merges their iterations.
+     * The child is expected to call {@link #reportForParent(Result)}.
+     * @param mainClass The class whose main method knows how to run the benchmark.
+     * @param args The arguments of the parent, forwarded to every child.
+     * @param name The name of the benchmark.
+     * @return The measured iterations of all forks.
+     * @throws IOException If a child cannot be started or fails.
+     */
+    public Result runForked(Class<?> mainClass, String[] args, String name) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Iteration> iterations = new ArrayList<>();
+        for (int fork = 0; fork < forks; fork++) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(mainClass.getName());
+            command.addAll(Arrays.asList(args));
+            command.add("--fork-child");
+            command.add(name);
+
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    if (line.startsWith(RESULT_PREFIX)) {
+                        String[] values = line.split(" ");
+                        iterations.add(new Iteration(Double.parseDouble(values[1]), Double.parseDouble(values[2]),
+                                Double.parseDouble(values[3]), Long.parseLong(values[4])));
+                    } else {
+                        System.out.println("  [fork " + (fork + 1) + "] " + line);
+                    }
+                }
+            }
+            try {
+                if (process.waitFor() != 0) {
+                    throw new IOException("Fork " + (fork + 1) + " of " + name + " exited with " + process.exitValue());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for fork of " + name, e);
+            }
+        }
+        return new Result(name, iterations);
+    }
+
+    /**
+     * Prints the iterations of a result in the format read by {@link #runForked}.
+     * @param result The result measured by a child JVM.
+     */
+    public static void reportForParent(Result result) {
+        for (Iteration iteration : result.getIterations()) {
+            System.out.println(String.format(Locale.ROOT, "%s %.6f %.6f %.6f %d", RESULT_PREFIX,
+                    iteration.getNanosPerOp(), iteration.getAllocBytesPerOp(),
+                    iteration.getAllocMegabytesPerSecond(), iteration.getGcCount()));
+        }
+        System.out.flush();
+    }
+
+    /**
+     * Prints the results as a table similar to the one produced by JMH with the GC profiler.
+     * @param results The results to print.
+     */
+    public static void printResults(List<Result> results) {
+        int width = "Benchmark".length();
+        for (Result result : results) {
+            width = Math.max(width, result.getName().length() + ":gc.alloc.rate.norm".length());
+        }
+        String format = "%-" + width + "s  %5s  %14s  %12s  %s%n";
+        System.out.printf(Locale.ROOT, format, "Benchmark", "Cnt", "Score", "Error", "Units");
+        for (Result result : results) {
+            int count = result.getIterations().size();
+            System.out.printf(Locale.ROOT, format, result.getName(), count,
+                    String.format(Locale.ROOT, "%.3f", result.getScore()),
+                    formatError(result.getError()), "ns/op");
+            System.out.printf(Locale.ROOT, format, result.getName() + ":gc.alloc.rate", count,
+                    String.format(Locale.ROOT, "%.3f", result.getAllocMegabytesPerSecond()), "", "MB/sec");
+            System.out.printf(Locale.ROOT, format, result.getName() + ":gc.alloc.rate.norm", count,
+                    String.format(Locale.ROOT, "%.3f", result.getAllocBytesPerOp()), "", "B/op");
+            System.out.printf(Locale.ROOT, format, result.getName() + ":gc.count", count,
+                    String.valueOf(result.getGcCount()), "", "counts");
+        }
+        System.out.flush();
+    }
+
+    private static String formatError(double error) {
+        return Double.isNaN(error) ? "" : String.format(Locale.ROOT, "± %.3f", error);
+    }
+
+    /**
+     * Runs invocations until the iteration time has been spent in the measured code.
+     */
+    private Iteration runIteration(BenchmarkCase benchmark) {
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        long threadId = Thread.currentThread().getId();
+        long measuredNanos = 0;
+        long allocatedBytes = 0;
+        long operations = 0;
+        long collections = 0;
+        long result = 0;
+
+        while (measuredNanos < iterationNanos) {
+            benchmark.setupInvocation();
+            long gcBefore = gcCount();
+            long allocatedBefore = threads == null ? 0 : threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            result += benchmark.invoke();
+            measuredNanos += System.nanoTime() - start;
+            if (threads != null) {
+                allocatedBytes += threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            }
+            collections += gcCount() - gcBefore;
+            operations += benchmark.operationsPerInvocation();
+        }
+        sink += result;
+
+        double seconds = measuredNanos / 1e9;
+        return new Iteration((double) measuredNanos / operations, (double) allocatedBytes / operations,
+                allocatedBytes / 1048576.0 / seconds, collections);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+}
@@ -1,17 +1,46 @@
 package src;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Utility class for reading and parsing CSV data.
+ * The file is memory-mapped and parsed directly from its bytes by {@link StudentLineParser}.
  */
 public class CSVReader {
+    /**
+     * Largest region mapped at once; files beyond it are read in several line-aligned windows.
+     */
+    static final int MAX_WINDOW = 1 << 30;
+
+    /**
+     * Smallest byte range parsed by a single fork-join task.
+     */
+    private static final int MIN_CHUNK = 1 << 20;
+
     private String filePath;
 
+    /**
+     * Receives each mapped window of the file.
+     */
+    private interface WindowHandler {
+        void handle(MappedByteBuffer buffer, int end, boolean firstWindow);
+    }
+
     /**
      * Creates a new CSVReader for the specified file.
      * @param filePath The path to the CSV file.
@@ -22,101 +51,223 @@ public class CSVReader {
 
     /**
      * Reads the CSV file and parses it into Student objects.
+     * The first line is a header and is skipped. Invalid lines are reported on
+     * standard error and skipped.
      * @return A list of Student objects.
      * @throws IOException If an I/O error occurs.
      */
     public List<Student> readStudents() throws IOException {
         List<Student> students = new ArrayList<>();
-        
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            // Skip the header line
-            String line = br.readLine();
-            
-            while ((line = br.readLine()) != null) {
-                Student student = parseStudent(line);
-                if (student != null) {
-                    students.add(student);
+        StudentLineParser parser = new StudentLineParser(Charset.defaultCharset());
+        // Skip the header line
+        forEachWindow((buffer, end, firstWindow) -> parser.parseLines(buffer, 0, end, firstWindow, students::add));
+        return students;
+    }
+
+    /**
+     * Streams the students of the CSV file as its lines are parsed, without building a list.
+     * The stream is ordered and can be made parallel, in which case it is split at line
+     * boundaries. Invalid lines are reported on standard error as they are reached.
+     * The stream holds the file open and should be closed, e.g. with try-with-resources.
+     * @return A stream of Student objects, in file order.
+     * @throws IOException If the file cannot be opened.
+     */
+    public Stream<Student> streamStudents() throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            StudentSpliterator spliterator = new StudentSpliterator(channel, filePath, 0, channel.size(),
+                    true, Charset.defaultCharset());
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the CSV file into compact records, streaming the rows so the full-size
+     * Student objects are never all in memory at once.
+     * @return A list of CompactStudent objects, in file order.
+     * @throws IOException If an I/O error occurs.
+     */
+    public List<CompactStudent> readCompactStudents() throws IOException {
+        try (Stream<Student> students = streamStudents()) {
+            return students.map(CompactStudent::of).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Reads the CSV file like {@link #readStudents()}, parsing line-aligned chunks of it
+     * in parallel on the common fork-join pool. Students are returned in file order and
+     * invalid lines are reported in file order once parsing is done.
+     * @return A list of Student objects.
+     * @throws IOException If an I/O error occurs.
+     */
+    public List<Student> readStudentsParallel() throws IOException {
+        return readStudentsParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads the CSV file in parallel on the given pool, like {@link #readStudentsParallel()}.
+     * @param pool The pool that parses the chunks.
+     * @return A list of Student objects.
+     * @throws IOException If an I/O error occurs.
+     */
+    public List<Student> readStudentsParallel(ForkJoinPool pool) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        Charset charset = Charset.defaultCharset();
+        forEachWindow((buffer, end, firstWindow) -> {
+            int chunkSize = Math.max(MIN_CHUNK, end / (pool.getParallelism() * 8));
+            chunks.addAll(pool.invoke(new ParseTask(buffer, 0, end, firstWindow, chunkSize, charset)));
+        });
+
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.students.size();
+        }
+        List<Student> students = new ArrayList<>(total);
+        for (Chunk chunk : chunks) {
+            students.addAll(chunk.students);
+            if (chunk.errors.size() > 0) {
+                System.err.print(chunk.errors.toString(charset));
             }
         }
-        
+        System.err.flush();
         return students;
     }
-    
+
     /**
-     * Parses a CSV line into a Student object.
-     * @param line The CSV line to parse.
-     * @return A Student object, or null if the line couldn't be parsed.
+     * Reads the CSV file in parallel and adds every student to a tree with a single
+     * bulk load, instead of inserting them one by one.
+     * @param tree The tree that receives the students.
+     * @throws IOException If an I/O error occurs.
      */
-    private Student parseStudent(String line) {
-        try {
-            String[] values = line.split(",");
-            
-            if (values.length < 16) {
-                System.err.println("Invalid line: " + line);
-                return null;
+    public void readIntoTree(AVLTree<Student> tree) throws IOException {
+        tree.bulkLoad(readStudentsParallel());
+    }
+
+    /**
+     * Maps the file in line-aligned windows and passes each one to the handler.
+     */
+    private void forEachWindow(WindowHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long position = 0;
+            while (position < fileSize) {
+                int length = (int) Math.min(MAX_WINDOW, fileSize - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = position + length == fileSize ? length : lastLineEnd(buffer, length, filePath);
+                handler.handle(buffer, end, position == 0);
+                position += end;
             }
-            
-            String studentId = values[0];
-            int age = parseInt(values[1]);
-            String gender = values[2];
-            double studyHoursPerDay = parseDouble(values[3]);
-            double socialMediaHours = parseDouble(values[4]);
-            double netflixHours = parseDouble(values[5]);
-            boolean partTimeJob = parseBoolean(values[6]);
-            double attendancePercentage = parseDouble(values[7]);
-            double sleepHours = parseDouble(values[8]);
-            String dietQuality = values[9];
-            int exerciseFrequency = parseInt(values[10]);
-            String parentalEducationLevel = values[11];
-            String internetQuality = values[12];
-            int mentalHealthRating = parseInt(values[13]);
-            boolean extracurricularParticipation = parseBoolean(values[14]);
-            double examScore = parseDouble(values[15]);
-            
-            return new Student(
-                    studentId, age, gender, studyHoursPerDay, socialMediaHours,
-                    netflixHours, partTimeJob, attendancePercentage, sleepHours,
-                    dietQuality, exerciseFrequency, parentalEducationLevel, internetQuality,
-                    mentalHealthRating, extracurricularParticipation, examScore
-            );
-        } catch (Exception e) {
-            System.err.println("Error parsing line: " + line);
-            System.err.println("Error: " + e.getMessage());
-            return null;
         }
     }
-    
+
     /**
-     * Parses a string into an integer, handling null or empty values.
-     * @param value The string to parse.
-     * @return The parsed integer, or 0 if the string is null or "null".
+     * Finds where the last complete line of a window ends.
+     * @param buffer The mapped window.
+     * @param length The length of the window.
+     * @param filePath The path of the file, for the error message.
+     * @return The index after the last line terminator that cannot be followed by "\n" in the next window.
+     * @throws IOException If the window holds no line terminator.
      */
-    private int parseInt(String value) {
-        if (value == null || value.trim().isEmpty() || value.trim().equalsIgnoreCase("null")) {
-            return 0;
+    static int lastLineEnd(MappedByteBuffer buffer, int length, String filePath) throws IOException {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        // Old Mac line endings: a "\r" is complete only if it is not the last byte of the window
+        for (int i = length - 2; i >= 0; i--) {
+            if (buffer.get(i) == '\r') {
+                return i + 1;
+            }
         }
-        return Integer.parseInt(value.trim());
+        throw new IOException("Line longer than " + MAX_WINDOW + " bytes in " + filePath);
     }
-    
+
     /**
-     * Parses a string into a double, handling null or empty values.
-     * @param value The string to parse.
-     * @return The parsed double, or 0.0 if the string is null or "null".
+     * Finds the first line start at or after a position.
+     * @param buffer The buffer holding the CSV text.
+     * @param from The position to start looking from.
+     * @param end The end of the range.
+     * @return The index after the first complete line terminator, or end if there is none.
      */
-    private double parseDouble(String value) {
-        if (value == null || value.trim().isEmpty() || value.trim().equalsIgnoreCase("null")) {
-            return 0.0;
+    private static int nextLineStart(MappedByteBuffer buffer, int from, int end) {
+        for (int i = from; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                return i + 1;
+            }
+            if (b == '\r') {
+                if (i + 1 < end && buffer.get(i + 1) == '\n') {
+                    return i + 2;
+                }
+                return i + 1;
+            }
         }
-        return Double.parseDouble(value.trim());
+        return end;
+    }
+
+    /**
+     * Students and error messages of one parsed byte range.
+     */
+    private static class Chunk {
+        private final List<Student> students = new ArrayList<>();
+        private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
     }
-    
+
     /**
-     * Parses a string into a boolean, where "Yes" is true and "No" is false.
-     * @param value The string to parse.
-     * @return true if the string is "Yes", false otherwise.
+     * Splits a byte range in halves at line boundaries until it is small enough to parse,
+     * returning the parsed chunks in file order.
      */
-    private boolean parseBoolean(String value) {
-        return "Yes".equalsIgnoreCase(value.trim());
+    private static class ParseTask extends RecursiveTask<List<Chunk>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient MappedByteBuffer buffer;
+        private final int start;
+        private final int end;
+        private final boolean header;
+        private final int chunkSize;
+        private final transient Charset charset;
+
+        ParseTask(MappedByteBuffer buffer, int start, int end, boolean header, int chunkSize, Charset charset) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.header = header;
+            this.chunkSize = chunkSize;
+            this.charset = charset;
+        }
+
+        @Override
+        protected List<Chunk> compute() {
+            if (end - start > chunkSize) {
+                int middle = nextLineStart(buffer, start + (end - start) / 2, end);
+                if (middle < end) {
+                    ParseTask left = new ParseTask(buffer, start, middle, header, chunkSize, charset);
+                    ParseTask right = new ParseTask(buffer, middle, end, false, chunkSize, charset);
+                    left.fork();
+                    List<Chunk> chunks = right.compute();
+                    List<Chunk> result = left.join();
+                    result.addAll(chunks);
+                    return result;
+                }
+            }
+
+            Chunk chunk = new Chunk();
+            PrintStream errors = new PrintStream(chunk.errors, false, charset);
+            new StudentLineParser(charset, errors).parseLines(buffer, start, end, header, chunk.students::add);
+            errors.flush();
+            List<Chunk> result = new ArrayList<>();
+            result.add(chunk);
+            return result;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,152 @@
+package src;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * {@link OrderedSet} with a read-through {@link LookupCache} of search results in front of
+ * another set, typically an {@link AVLTree}. When lookups are skewed, as under a Zipfian
+ * workload, the hot keys are answered by one hash lookup instead of a walk of the tree.
+ *
+ * The cache maps the key of a value to whether the set holds it, so repeated searches for
+ * absent values are cached too. Every insert and remove through this set invalidates the
+ * key of its value, bulk operations invalidate the key of each value, and removals through
+ * the iterator invalidate the removed value: the cache is only stale if the wrapped set is
+ * modified directly. Not thread-safe, like {@link AVLTree}.
+ * @param <T> The type of the elements, must be comparable.
+ */
+public class CachedOrderedSet<T extends Comparable<T>> implements OrderedSet<T> {
+    private final OrderedSet<T> set;
+    private final Function<? super T, ?> key;
+    private final LookupCache<Object, Boolean> cache;
+
+    /**
+     * Wraps a set with a cache.
+     * @param set The set, which must only be modified through this wrapper from now on.
+     * @param key Gets the cache key of a value: two values the set considers equal must have
+     *            equal keys, and values it considers different must have different keys. For
+     *            students, {@code Student::getStudentId}.
+     * @param policy The eviction policy of the cache.
+     * @param capacity The maximum number of cached keys.
+     */
+    public CachedOrderedSet(OrderedSet<T> set, Function<? super T, ?> key, LookupCache.Policy policy,
+                            int capacity) {
+        this.set = set;
+        this.key = key;
+        this.cache = LookupCache.create(policy, capacity);
+    }
+
+    /**
+     * Gets the cache, with its hit, miss and eviction counts.
+     * @return The cache.
+     */
+    public LookupCache<Object, Boolean> getCache() {
+        return cache;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return set.comparator();
+    }
+
+    @Override
+    public void insert(T value) {
+        set.insert(value);
+        cache.invalidate(key.apply(value));
+    }
+
+    @Override
+    public boolean search(T value) {
+        Object cacheKey = key.apply(value);
+        Boolean found = cache.get(cacheKey);
+        if (found == null) {
+            found = set.search(value);
+            cache.put(cacheKey, found);
+        }
+        return found;
+    }
+
+    @Override
+    public boolean remove(T value) {
+        cache.invalidate(key.apply(value));
+        return set.remove(value);
+    }
+
+    @Override
+    public int size() {
+        return set.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return set.isEmpty();
+    }
+
+    @Override
+    public void bulkLoad(Collection<? extends T> values) {
+        set.bulkLoad(values);
+        invalidateAll(values);
+    }
+
+    @Override
+    public boolean insertAll(Collection<? extends T> values) {
+        boolean changed = set.insertAll(values);
+        invalidateAll(values);
+        return changed;
+    }
+
+    @Override
+    public boolean removeAll(Collection<? extends T> values) {
+        invalidateAll(values);
+        return set.removeAll(values);
+    }
+
+    private void invalidateAll(Collection<? extends T> values) {
+        if (values.size() >= set.size()) {
+            // Cheaper than one invalidation per value, and the cache is refilled by the next lookups
+            cache.clear();
+            return;
+        }
+        for (T value : values) {
+            cache.invalidate(key.apply(value));
+        }
+    }
+
+    @Override
+    public List<T> scan(T from, int limit) {
+        return set.scan(from, limit);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<T> iterator = set.iterator();
+        return new Iterator<T>() {
+            private T last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                cache.invalidate(key.apply(last));
+            }
+        };
+    }
+
+    @Override
+    public List<T> inorderTraversal() {
+        return set.inorderTraversal();
+    }
+}
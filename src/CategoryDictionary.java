@@ -0,0 +1,69 @@
+package src;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the few distinct values of a categorical column to one-byte codes.
+ * Codes are assigned on first sight and never change; the dictionary holds at most
+ * 255 values. It is safe to use from several threads.
+ */
+public class CategoryDictionary {
+    /**
+     * Returned by {@link #encode(String)} when a value cannot be given a code.
+     */
+    public static final int NO_CODE = -1;
+
+    private static final int MAX_VALUES = 255;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[0];
+
+    /**
+     * Gets the code of a value, assigning a new one if the value is new.
+     * @param value The value to encode.
+     * @return The code, between 0 and 254, or {@link #NO_CODE} if the value is null
+     *         or the dictionary is full.
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            String[] current = values;
+            if (current.length == MAX_VALUES) {
+                return NO_CODE;
+            }
+            String[] extended = Arrays.copyOf(current, current.length + 1);
+            extended[current.length] = value;
+            values = extended;
+            codes.put(value, current.length);
+            return current.length;
+        }
+    }
+
+    /**
+     * Gets the value of a code.
+     * @param code A code returned by {@link #encode(String)}.
+     * @return The value.
+     */
+    public String decode(int code) {
+        return values[code];
+    }
+
+    /**
+     * Gets the number of distinct values seen so far.
+     * @return The number of values.
+     */
+    public int size() {
+        return values.length;
+    }
+}
@@ -0,0 +1,242 @@
+package src;
+
+/**
+ * Compact representation of a student record, with the same getters as {@link Student}.
+ * The id "S&lt;digits&gt;" is kept as a long, the categorical columns as one-byte dictionary
+ * codes, the small integers as bytes, the flags as bits and the scores as tenths in shorts.
+ * A record whose values do not fit that layout (an id in another format, a score with more
+ * than one decimal, ...) keeps a reference to the original Student instead.
+ */
+public class CompactStudent implements Comparable<CompactStudent> {
+    private static final CategoryDictionary GENDERS = new CategoryDictionary();
+    private static final CategoryDictionary DIETS = new CategoryDictionary();
+    private static final CategoryDictionary EDUCATION_LEVELS = new CategoryDictionary();
+    private static final CategoryDictionary INTERNET_QUALITIES = new CategoryDictionary();
+
+    private static final int PART_TIME_JOB = 1;
+    private static final int EXTRACURRICULAR = 2;
+
+    private final long idNumber;
+    private final Student exact;
+    private final short studyHoursPerDay;
+    private final short socialMediaHours;
+    private final short netflixHours;
+    private final short attendancePercentage;
+    private final short sleepHours;
+    private final short examScore;
+    private final byte age;
+    private final byte exerciseFrequency;
+    private final byte mentalHealthRating;
+    private final byte gender;
+    private final byte dietQuality;
+    private final byte parentalEducationLevel;
+    private final byte internetQuality;
+    private final byte flags;
+
+    private CompactStudent(Student exact) {
+        this.idNumber = -1;
+        this.exact = exact;
+        this.studyHoursPerDay = 0;
+        this.socialMediaHours = 0;
+        this.netflixHours = 0;
+        this.attendancePercentage = 0;
+        this.sleepHours = 0;
+        this.examScore = 0;
+        this.age = 0;
+        this.exerciseFrequency = 0;
+        this.mentalHealthRating = 0;
+        this.gender = 0;
+        this.dietQuality = 0;
+        this.parentalEducationLevel = 0;
+        this.internetQuality = 0;
+        this.flags = 0;
+    }
+
+    private CompactStudent(long idNumber, int[] codes, int[] tenths, int age, int exerciseFrequency,
+                           int mentalHealthRating, int flags) {
+        this.idNumber = idNumber;
+        this.exact = null;
+        this.gender = (byte) codes[0];
+        this.dietQuality = (byte) codes[1];
+        this.parentalEducationLevel = (byte) codes[2];
+        this.internetQuality = (byte) codes[3];
+        this.studyHoursPerDay = (short) tenths[0];
+        this.socialMediaHours = (short) tenths[1];
+        this.netflixHours = (short) tenths[2];
+        this.attendancePercentage = (short) tenths[3];
+        this.sleepHours = (short) tenths[4];
+        this.examScore = (short) tenths[5];
+        this.age = (byte) age;
+        this.exerciseFrequency = (byte) exerciseFrequency;
+        this.mentalHealthRating = (byte) mentalHealthRating;
+        this.flags = (byte) flags;
+    }
+
+    /**
+     * Creates the compact form of a student.
+     * @param student The student to encode.
+     * @return The compact student, equal in every getter to the original.
+     */
+    public static CompactStudent of(Student student) {
+        long idNumber = Student.parseId(student.getStudentId());
+        int[] codes = {
+                GENDERS.encode(student.getGender()),
+                DIETS.encode(student.getDietQuality()),
+                EDUCATION_LEVELS.encode(student.getParentalEducationLevel()),
+                INTERNET_QUALITIES.encode(student.getInternetQuality())
+        };
+        int[] tenths = {
+                toTenths(student.getStudyHoursPerDay()),
+                toTenths(student.getSocialMediaHours()),
+                toTenths(student.getNetflixHours()),
+                toTenths(student.getAttendancePercentage()),
+                toTenths(student.getSleepHours()),
+                toTenths(student.getExamScore())
+        };
+
+        boolean packable = idNumber >= 0
+                && fitsInByte(student.getAge())
+                && fitsInByte(student.getExerciseFrequency())
+                && fitsInByte(student.getMentalHealthRating());
+        for (int code : codes) {
+            packable &= code != CategoryDictionary.NO_CODE;
+        }
+        for (int value : tenths) {
+            packable &= value != Integer.MIN_VALUE;
+        }
+        if (!packable) {
+            return new CompactStudent(student);
+        }
+
+        int flags = (student.isPartTimeJob() ? PART_TIME_JOB : 0)
+                | (student.isExtracurricularParticipation() ? EXTRACURRICULAR : 0);
+        return new CompactStudent(idNumber, codes, tenths, student.getAge(), student.getExerciseFrequency(),
+                student.getMentalHealthRating(), flags);
+    }
+
+    /**
+     * Creates a regular Student with the same values.
+     * @return The student.
+     */
+    public Student toStudent() {
+        if (exact != null) {
+            return exact;
+        }
+        return new Student(getStudentId(), getAge(), getGender(), getStudyHoursPerDay(), getSocialMediaHours(),
+                getNetflixHours(), isPartTimeJob(), getAttendancePercentage(), getSleepHours(), getDietQuality(),
+                getExerciseFrequency(), getParentalEducationLevel(), getInternetQuality(), getMentalHealthRating(),
+                isExtracurricularParticipation(), getExamScore());
+    }
+
+    /**
+     * Converts a value with at most one decimal to tenths.
+     * @return The tenths, or Integer.MIN_VALUE if the value does not round-trip through a short.
+     */
+    static int toTenths(double value) {
+        long tenths = Math.round(value * 10);
+        if (tenths < Short.MIN_VALUE || tenths > Short.MAX_VALUE
+                || Double.doubleToRawLongBits(tenths / 10.0) != Double.doubleToRawLongBits(value)) {
+            return Integer.MIN_VALUE;
+        }
+        return (int) tenths;
+    }
+
+    private static boolean fitsInByte(int value) {
+        return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+    }
+
+    /**
+     * Checks whether the record uses the packed layout rather than a reference to a Student.
+     * @return true if the record is packed.
+     */
+    public boolean isPacked() {
+        return exact == null;
+    }
+
+    /**
+     * Gets the id. Packed records build the String on every call.
+     * @return The student id.
+     */
+    public String getStudentId() {
+        return exact != null ? exact.getStudentId() : "S" + idNumber;
+    }
+
+    public int getAge() {
+        return exact != null ? exact.getAge() : age;
+    }
+
+    public String getGender() {
+        return exact != null ? exact.getGender() : GENDERS.decode(gender & 0xFF);
+    }
+
+    public double getStudyHoursPerDay() {
+        return exact != null ? exact.getStudyHoursPerDay() : studyHoursPerDay / 10.0;
+    }
+
+    public double getSocialMediaHours() {
+        return exact != null ? exact.getSocialMediaHours() : socialMediaHours / 10.0;
+    }
+
+    public double getNetflixHours() {
+        return exact != null ? exact.getNetflixHours() : netflixHours / 10.0;
+    }
+
+    public boolean isPartTimeJob() {
+        return exact != null ? exact.isPartTimeJob() : (flags & PART_TIME_JOB) != 0;
+    }
+
+    public double getAttendancePercentage() {
+        return exact != null ? exact.getAttendancePercentage() : attendancePercentage / 10.0;
+    }
+
+    public double getSleepHours() {
+        return exact != null ? exact.getSleepHours() : sleepHours / 10.0;
+    }
+
+    public String getDietQuality() {
+        return exact != null ? exact.getDietQuality() : DIETS.decode(dietQuality & 0xFF);
+    }
+
+    public int getExerciseFrequency() {
+        return exact != null ? exact.getExerciseFrequency() : exerciseFrequency;
+    }
+
+    public String getParentalEducationLevel() {
+        return exact != null ? exact.getParentalEducationLevel()
+                : EDUCATION_LEVELS.decode(parentalEducationLevel & 0xFF);
+    }
+
+    public String getInternetQuality() {
+        return exact != null ? exact.getInternetQuality() : INTERNET_QUALITIES.decode(internetQuality & 0xFF);
+    }
+
+    public int getMentalHealthRating() {
+        return exact != null ? exact.getMentalHealthRating() : mentalHealthRating;
+    }
+
+    public boolean isExtracurricularParticipation() {
+        return exact != null ? exact.isExtracurricularParticipation() : (flags & EXTRACURRICULAR) != 0;
+    }
+
+    public double getExamScore() {
+        return exact != null ? exact.getExamScore() : examScore / 10.0;
+    }
+
+    @Override
+    public int compareTo(CompactStudent other) {
+        // Same order as Student: numeric ids as numbers, then the others as Strings
+        if (exact != null || other.exact != null) {
+            return Student.compareIds(getStudentId(), other.getStudentId());
+        }
+        return Long.compare(idNumber, other.idNumber);
+    }
+
+    @Override
+    public String toString() {
+        return "Student{" +
+                "studentId='" + getStudentId() + '\'' +
+                ", age=" + getAge() +
+                ", examScore=" + getExamScore() +
+                '}';
+    }
+}
@@ -0,0 +1,322 @@
+package src;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe AVL tree with the same API as {@link AVLTree}.
+ * Writers are serialized by the write mode of a {@link StampedLock}. Readers first walk
+ * the tree optimistically, without locking, and only keep the answer if no writer ran
+ * in the meantime; otherwise they retry under the read lock. Readers therefore never
+ * block writers unless a write actually overlapped their walk. As an {@link OrderedSet} it can
+ * be shared by the clients of a {@link LoadDriver}.
+ * @param <T> The type of data stored in the tree, must be comparable.
+ */
+public class ConcurrentAVLTree<T extends Comparable<T>> implements OrderedSet<T> {
+    /**
+     * Longest walk accepted during an optimistic read. A concurrent rotation can briefly
+     * make the links inconsistent, so the walk is bounded and then retried under the lock.
+     */
+    private static final int MAX_OPTIMISTIC_STEPS = 128;
+
+    private final AVLTree<T> tree;
+    private final StampedLock lock = new StampedLock();
+
+    public ConcurrentAVLTree() {
+        this(null);
+    }
+
+    /**
+     * Creates a tree ordered by a comparator, as {@link AVLTree#AVLTree(Comparator)}.
+     * Searches call the comparator, or compareTo, on nodes that a concurrent writer may be
+     * changing, before checking that no write happened: it must be free of side effects.
+     * @param comparator The order of the elements, or null for their natural order.
+     */
+    public ConcurrentAVLTree(Comparator<? super T> comparator) {
+        this.tree = new AVLTree<T>(comparator);
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return tree.comparator();
+    }
+
+    /**
+     * Gets the size of the tree.
+     * @return The number of nodes in the tree.
+     */
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = tree.size();
+        if (lock.validate(stamp)) {
+            return size;
+        }
+        stamp = lock.readLock();
+        try {
+            return tree.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Checks if the tree is empty.
+     * @return true if the tree is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Starts recording metrics, as {@link AVLTree#enableMetrics(String)}. Searches answered
+     * by the optimistic walk are recorded too.
+     * @param name The name of the MXBean, or null to record without registering one.
+     * @return The metrics, or null if metrics are turned off with -Davl.metrics=false.
+     */
+    public TreeMetrics enableMetrics(String name) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.enableMetrics(name);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gets the metrics of this tree.
+     * @return The metrics, or null if they were not enabled.
+     */
+    public TreeMetrics getMetrics() {
+        return tree.getMetrics();
+    }
+
+    /**
+     * Inserts a value into the tree.
+     * @param value The value to insert.
+     */
+    public void insert(T value) {
+        long stamp = lock.writeLock();
+        try {
+            tree.insert(value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds every value of a collection with a single bulk load, as {@link AVLTree#bulkLoad(Collection)}.
+     * @param values The values to add.
+     */
+    public void bulkLoad(Collection<? extends T> values) {
+        long stamp = lock.writeLock();
+        try {
+            tree.bulkLoad(values);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds every value of a collection, as {@link AVLTree#insertAll(Collection)}.
+     * @param values The values to add.
+     * @return true if the tree changed.
+     */
+    public boolean insertAll(Collection<? extends T> values) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.insertAll(values);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes every element equal to a value of a collection, as {@link AVLTree#removeAll(Collection)}.
+     * @param values The values to remove.
+     * @return true if the tree changed.
+     */
+    public boolean removeAll(Collection<? extends T> values) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.removeAll(values);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Keeps only the elements equal to a value of a collection, as {@link AVLTree#retainAll(Collection)}.
+     * @param values The values to keep.
+     * @return true if the tree changed.
+     */
+    public boolean retainAll(Collection<? extends T> values) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.retainAll(values);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Searches for a value in the tree.
+     * @param value The value to search for.
+     * @return true if the value is found, false otherwise.
+     */
+    public boolean search(T value) {
+        TreeMetrics metrics = TreeMetrics.ENABLED ? tree.getMetrics() : null;
+        long startTime = metrics != null ? System.nanoTime() : 0;
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int result;
+            try {
+                result = optimisticSearch(value);
+            } catch (RuntimeException e) {
+                // A racing writer left the walk on a half-built node, e.g. with null data
+                result = -1;
+            }
+            if (result >= 0 && lock.validate(stamp)) {
+                if (metrics != null) {
+                    metrics.recordSearch(result >>> 1, System.nanoTime() - startTime);
+                }
+                return (result & 1) == 1;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return tree.search(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Removes a value from the tree.
+     * @param value The value to remove.
+     * @return true if the value was removed, false if it wasn't found.
+     */
+    public boolean remove(T value) {
+        long stamp = lock.writeLock();
+        try {
+            return tree.remove(value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gets the element at a position of the sorted order, as {@link AVLTree#select(int)}.
+     * @param k The position, from 0 for the smallest element.
+     * @return The element with exactly k smaller elements in the tree.
+     */
+    public T select(int k) {
+        long stamp = lock.readLock();
+        try {
+            return tree.select(k);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the elements smaller than a value, as {@link AVLTree#rank(Comparable)}.
+     * @param value The value to rank.
+     * @return The number of elements smaller than the value.
+     */
+    public int rank(T value) {
+        long stamp = lock.readLock();
+        try {
+            return tree.rank(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the elements between two values, both included, as {@link AVLTree#countInRange}.
+     * @param low The lower bound.
+     * @param high The upper bound.
+     * @return The number of elements in the range.
+     */
+    public int countInRange(T low, T high) {
+        long stamp = lock.readLock();
+        try {
+            return tree.countInRange(low, high);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Performs an inorder traversal of the tree under the read lock.
+     * @return A list of all elements in sorted order.
+     */
+    public List<T> inorderTraversal() {
+        long stamp = lock.readLock();
+        try {
+            return tree.inorderTraversal();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the smallest elements greater than or equal to a value under the read lock, as
+     * {@link AVLTree#scan(Comparable, int)}.
+     * @param from The lower bound, inclusive.
+     * @param limit The maximum number of elements.
+     * @return Up to limit elements, in ascending order.
+     */
+    @Override
+    public List<T> scan(T from, int limit) {
+        long stamp = lock.readLock();
+        try {
+            return tree.scan(from, limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Iterates over a copy of the elements taken under the read lock, so the iteration is
+     * never disturbed by concurrent writers and never holds the lock.
+     * @return An iterator over the elements in ascending order at the time of the call.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return inorderTraversal().iterator();
+    }
+
+    /**
+     * Walks the tree without locking. The answer is only meaningful if the stamp
+     * taken before the walk is still valid afterwards. The fields of the nodes are read
+     * without any happens-before edge to the writers, so the walk may see inconsistent
+     * nodes and the comparison may throw; the caller then retries under the read lock.
+     * @return Twice the number of comparisons, plus 1 if the value was found, or -1 if the
+     *         walk was too long to trust.
+     */
+    private int optimisticSearch(T value) {
+        Comparator<? super T> comparator = tree.comparator();
+        AVLNode<T> node = tree.getRoot();
+        int steps = 0;
+        while (node != null) {
+            if (steps == MAX_OPTIMISTIC_STEPS) {
+                return -1;
+            }
+            T data = node.data;
+            int compareResult = comparator == null ? value.compareTo(data) : comparator.compare(value, data);
+            if (compareResult < 0) {
+                node = node.left;
+            } else if (compareResult > 0) {
+                node = node.right;
+            } else {
+                return (steps + 1) << 1 | 1;
+            }
+            steps++;
+        }
+        return steps << 1;
+    }
+}
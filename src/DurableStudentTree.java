@@ -0,0 +1,650 @@
+package src;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Set of students that survives a crash: every insertion and removal is appended to a
+ * write-ahead log before it is acknowledged, the whole set is periodically checkpointed to
+ * a {@link StudentSnapshot}, and opening the directory again replays the latest checkpoint
+ * plus the log written after it.
+ *
+ * The directory holds {@code checkpoint-<n>.snapshot} files, each covering every log up to
+ * generation n, and {@code wal-<n>.log} files. A log is a sequence of records of the form
+ * length, CRC-32, operation and student; replay stops at the first torn or corrupt record,
+ * which can only be the tail of the last log written before a crash.
+ *
+ * Writers are serialized, so the log order is the order in which the mutations were applied.
+ * A mutation is visible to readers as soon as it is applied, before it is durable.
+ *
+ * A failure to write or force the log is permanent: the records that were not forced stay
+ * pending, and every later mutation, flush and checkpoint throws, so no record is ever
+ * appended after a hole in the log. The set in memory may then hold mutations that were
+ * never acknowledged; reopening the directory recovers exactly what reached the disk.
+ */
+public class DurableStudentTree implements Closeable {
+    /**
+     * When a mutation is acknowledged relative to the fsync of its log record.
+     */
+    public enum Durability {
+        /** Every mutation writes and fsyncs its own record before returning. */
+        SYNC_PER_OP,
+        /**
+         * Every mutation waits for an fsync covering its record, but concurrent writers share
+         * one: the first waiter flushes everything appended so far while the others queue up
+         * behind it for the next batch.
+         */
+        GROUP_COMMIT,
+        /**
+         * Mutations return as soon as they are buffered, and a background thread flushes the
+         * buffer periodically, so a crash loses at most the last flush interval.
+         */
+        ASYNC
+    }
+
+    private static final byte INSERT = 1;
+    private static final byte REMOVE = 2;
+    private static final int RECORD_HEADER = 8;
+
+    private static final String LOG_PREFIX = "wal-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String CHECKPOINT_PREFIX = "checkpoint-";
+    private static final String CHECKPOINT_SUFFIX = ".snapshot";
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100_000;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+
+    private final Path directory;
+    private final Durability durability;
+    private final int checkpointInterval;
+    private final ConcurrentAVLTree<Student> tree = new ConcurrentAVLTree<>();
+
+    // Guards the tree mutations, the pending buffer and the log sequence numbers
+    private final Object appendLock = new Object();
+    private final PendingBuffer pending = new PendingBuffer();
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+    private long appendedLsn;
+    private int mutationsSinceCheckpoint;
+
+    // Held while the pending buffer is written and forced; the holder is the group commit leader
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile long durableLsn;
+    private long generation;
+    private FileChannel log;
+
+    // Bytes the log may still take before writes fail, lowered only by fault-injection checks
+    private long logWriteBudget = Long.MAX_VALUE;
+
+    private final ScheduledExecutorService flusher;
+    private volatile IOException logFailure;
+    private volatile Exception checkpointFailure;
+    private boolean closed;
+
+    /**
+     * Opens the set stored in a directory with group commit and the default intervals.
+     * @param directory The directory of the checkpoints and logs, created if missing.
+     * @throws IOException If an I/O error occurs, or a checkpoint is corrupt.
+     */
+    public DurableStudentTree(Path directory) throws IOException {
+        this(directory, Durability.GROUP_COMMIT, DEFAULT_CHECKPOINT_INTERVAL, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens the set stored in a directory, replaying its latest checkpoint and the logs after it.
+     * @param directory The directory of the checkpoints and logs, created if missing.
+     * @param durability When mutations are acknowledged.
+     * @param checkpointInterval The number of logged mutations after which a checkpoint is taken,
+     *                           or 0 to checkpoint only on {@link #checkpoint()}.
+     * @param flushIntervalMillis The period of the background flush in {@link Durability#ASYNC} mode.
+     * @throws IOException If an I/O error occurs, or a checkpoint is corrupt.
+     */
+    public DurableStudentTree(Path directory, Durability durability, int checkpointInterval,
+                              long flushIntervalMillis) throws IOException {
+        if (checkpointInterval < 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid interval");
+        }
+        this.directory = directory;
+        this.durability = durability;
+        this.checkpointInterval = checkpointInterval;
+        Files.createDirectories(directory);
+        recover();
+
+        if (durability == Durability.ASYNC) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(() -> {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    // Recorded in logFailure by writePending, and reported to the next writer
+                }
+            }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Gets the number of students.
+     * @return The number of students in the set.
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * Checks if the set is empty.
+     * @return true if the set is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    /**
+     * Searches for a student by id.
+     * @param student The student to search for; only its id is used.
+     * @return true if a student with that id is in the set.
+     */
+    public boolean search(Student student) {
+        return tree.search(student);
+    }
+
+    /**
+     * Gets the students ordered by id.
+     * @return A list of all students in id order.
+     */
+    public List<Student> inorderTraversal() {
+        return tree.inorderTraversal();
+    }
+
+    /**
+     * Adds a student and logs it. A student whose id is already present is ignored and not logged.
+     * @param student The student to add.
+     * @return true if the student was added.
+     * @throws IOException If the log cannot be written.
+     */
+    public boolean insert(Student student) throws IOException {
+        return mutate(INSERT, student);
+    }
+
+    /**
+     * Removes the student with the same id and logs it. Nothing is logged if the id isn't found.
+     * @param student The student to remove; only its id is used.
+     * @return true if a student was removed.
+     * @throws IOException If the log cannot be written.
+     */
+    public boolean remove(Student student) throws IOException {
+        return mutate(REMOVE, student);
+    }
+
+    /**
+     * Writes every pending record to the log and forces it to disk.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void flush() throws IOException {
+        long lsn;
+        synchronized (appendLock) {
+            lsn = appendedLsn;
+        }
+        awaitDurable(lsn);
+    }
+
+    /**
+     * Dumps the whole set to a new checkpoint and starts a new log generation, then deletes
+     * the checkpoints and logs it supersedes. Writers are blocked while the checkpoint is written.
+     * @throws IOException If an I/O error occurs; the previous checkpoint and logs are then kept.
+     */
+    public void checkpoint() throws IOException {
+        flushLock.lock();
+        try {
+            synchronized (appendLock) {
+                ensureOpen();
+                writePending();
+                takeCheckpoint();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the checkpoint; called with both locks held and nothing pending.
+     */
+    private void takeCheckpoint() throws IOException {
+        long covered = generation;
+        Path temporary = directory.resolve(CHECKPOINT_PREFIX + covered + CHECKPOINT_SUFFIX + ".tmp");
+        try {
+            StudentSnapshot.write(tree.inorderTraversal(), temporary.toString());
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, checkpointPath(covered), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+        syncDirectory();
+
+        startLog(covered + 1);
+        mutationsSinceCheckpoint = 0;
+        deleteBefore(covered);
+    }
+
+    /**
+     * Flushes the pending records and closes the log. Further mutations throw IllegalStateException.
+     * @throws IOException If an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flushLock.lock();
+        try {
+            synchronized (appendLock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    writePending();
+                } finally {
+                    log.close();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Tree is closed");
+        }
+        checkLog();
+    }
+
+    /**
+     * Throws if a write or force of the log has failed.
+     */
+    private void checkLog() throws IOException {
+        IOException failure = logFailure;
+        if (failure != null) {
+            throw new IOException("The log failed earlier; reopen the tree to recover", failure);
+        }
+    }
+
+    /**
+     * Applies and logs a mutation, then acknowledges it according to the durability mode.
+     * Lock order is always the flush lock before the append lock.
+     */
+    private boolean mutate(byte operation, Student student) throws IOException {
+        if (durability == Durability.SYNC_PER_OP) {
+            // The writer holds the flush lock throughout, so each fsync covers exactly one record
+            flushLock.lock();
+            try {
+                synchronized (appendLock) {
+                    if (!apply(operation, student)) {
+                        return false;
+                    }
+                    writePending();
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        } else {
+            long lsn;
+            synchronized (appendLock) {
+                if (!apply(operation, student)) {
+                    return false;
+                }
+                lsn = appendedLsn;
+            }
+            if (durability == Durability.GROUP_COMMIT) {
+                awaitDurable(lsn);
+            }
+        }
+        if (checkpointInterval > 0 && mutationsSinceCheckpoint >= checkpointInterval) {
+            autoCheckpoint();
+        }
+        return true;
+    }
+
+    /**
+     * Takes the checkpoint due after a mutation. The mutation is already logged, so a failure
+     * is kept for {@link #getCheckpointFailure()} instead of being thrown, and the checkpoint is
+     * retried after another interval; the log keeps every mutation until one succeeds.
+     */
+    private void autoCheckpoint() {
+        flushLock.lock();
+        try {
+            synchronized (appendLock) {
+                if (!closed && mutationsSinceCheckpoint >= checkpointInterval) {
+                    try {
+                        writePending();
+                        takeCheckpoint();
+                        checkpointFailure = null;
+                    } catch (IOException | RuntimeException e) {
+                        checkpointFailure = e;
+                        mutationsSinceCheckpoint = 0;
+                    }
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Gets why the last automatic checkpoint failed. A failure of the log itself is also
+     * thrown by the next mutation.
+     * @return The exception, or null if the last automatic checkpoint succeeded or none was taken.
+     */
+    public Exception getCheckpointFailure() {
+        return checkpointFailure;
+    }
+
+    /**
+     * Applies a mutation to the tree and appends its record; called with the append lock held.
+     * @return false if the mutation changed nothing, in which case nothing is logged.
+     */
+    private boolean apply(byte operation, Student student) throws IOException {
+        ensureOpen();
+        if (operation == INSERT) {
+            if (tree.search(student)) {
+                return false;
+            }
+            tree.insert(student);
+        } else if (!tree.remove(student)) {
+            return false;
+        }
+        append(operation, student);
+        return true;
+    }
+
+    /**
+     * Encodes a record into the pending buffer; called with the append lock held.
+     */
+    private void append(byte operation, Student student) throws IOException {
+        record.reset();
+        recordOut.writeByte(operation);
+        writeStudent(recordOut, student);
+        crc.reset();
+        crc.update(record.toByteArray());
+        pendingOut.writeInt(record.size());
+        pendingOut.writeInt((int) crc.getValue());
+        record.writeTo(pendingOut);
+        mutationsSinceCheckpoint++;
+        appendedLsn++;
+    }
+
+    /**
+     * Waits until the log is durable up to a sequence number. The first writer to get the flush
+     * lock becomes the leader and forces everything appended so far with one fsync; writers that
+     * queued behind it usually find their record already covered when they get the lock.
+     */
+    private void awaitDurable(long lsn) throws IOException {
+        while (durableLsn < lsn) {
+            checkLog();
+            flushLock.lock();
+            try {
+                if (durableLsn < lsn) {
+                    writePending();
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending buffer and forces the log; called with the flush lock held.
+     * The append lock is released during the fsync so that other writers can fill the next batch.
+     * The batch leaves the buffer only once it is forced; if the write or the force fails,
+     * the failure is kept in logFailure and the log is never written again.
+     */
+    private void writePending() throws IOException {
+        byte[] batch;
+        long batchLsn;
+        FileChannel channel;
+        synchronized (appendLock) {
+            checkLog();
+            if (pending.size() == 0) {
+                return;
+            }
+            batch = pending.toByteArray();
+            batchLsn = appendedLsn;
+            channel = log;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            if (batch.length > logWriteBudget) {
+                // Injected failure: a torn write, as if the process died halfway through the batch
+                buffer.limit((int) logWriteBudget);
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (buffer.limit() < batch.length) {
+                throw new IOException("Injected log write failure");
+            }
+            logWriteBudget -= batch.length;
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            logFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+            throw e;
+        }
+        synchronized (appendLock) {
+            // Records appended during the fsync stay pending for the next batch
+            pending.discard(batch.length);
+        }
+        durableLsn = batchLsn;
+    }
+
+    /**
+     * Makes the writes to the log fail, for checks of the recovery after a failure: once the
+     * given number of bytes is written, the batch being written is torn and the write throws.
+     * @param bytes The number of bytes that can still be written.
+     */
+    void failLogWritesAfter(long bytes) {
+        flushLock.lock();
+        try {
+            logWriteBudget = bytes;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Buffer of the records appended but not yet forced, from which a forced batch is removed
+     * while the records appended after it are kept.
+     */
+    private static final class PendingBuffer extends ByteArrayOutputStream {
+        PendingBuffer() {
+            super(1 << 16);
+        }
+
+        void discard(int length) {
+            System.arraycopy(buf, length, buf, 0, count - length);
+            count -= length;
+        }
+    }
+
+    private void recover() throws IOException {
+        TreeMap<Long, Path> checkpoints = list(CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX);
+        TreeMap<Long, Path> logs = list(LOG_PREFIX, LOG_SUFFIX);
+
+        long covered = -1;
+        if (!checkpoints.isEmpty()) {
+            covered = checkpoints.lastKey();
+            tree.bulkLoad(StudentSnapshot.read(checkpoints.lastEntry().getValue().toString()));
+        }
+        for (Path path : logs.tailMap(covered, false).values()) {
+            replay(path);
+        }
+
+        // Never append after a possibly torn tail: every run starts a new generation
+        long last = Math.max(covered, logs.isEmpty() ? -1 : logs.lastKey());
+        startLog(last + 1);
+    }
+
+    private void replay(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CRC32 check = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            check.reset();
+            check.update(bytes, buffer.position(), length);
+            if ((int) check.getValue() != checksum) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(bytes, buffer.position(), length));
+            byte operation = in.readByte();
+            Student student = readStudent(in);
+            if (operation == INSERT) {
+                if (!tree.search(student)) {
+                    tree.insert(student);
+                }
+            } else if (operation == REMOVE) {
+                tree.remove(student);
+            } else {
+                throw new IOException("Unknown log operation " + operation + " in " + path);
+            }
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    private void startLog(long newGeneration) throws IOException {
+        FileChannel channel = FileChannel.open(logPath(newGeneration), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        syncDirectory();
+        if (log != null) {
+            log.close();
+        }
+        log = channel;
+        generation = newGeneration;
+    }
+
+    private void deleteBefore(long covered) throws IOException {
+        for (Path path : list(CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX).headMap(covered, false).values()) {
+            Files.deleteIfExists(path);
+        }
+        for (Path path : list(LOG_PREFIX, LOG_SUFFIX).headMap(covered, true).values()) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private TreeMap<Long, Path> list(String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), path);
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return files;
+    }
+
+    private Path logPath(long logGeneration) {
+        return directory.resolve(LOG_PREFIX + logGeneration + LOG_SUFFIX);
+    }
+
+    private Path checkpointPath(long covered) {
+        return directory.resolve(CHECKPOINT_PREFIX + covered + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Makes the creation and renaming of files durable. Not every platform can open a directory.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+
+    private static void writeStudent(DataOutputStream out, Student student) throws IOException {
+        out.writeUTF(student.getStudentId());
+        out.writeInt(student.getAge());
+        writeNullableString(out, student.getGender());
+        out.writeDouble(student.getStudyHoursPerDay());
+        out.writeDouble(student.getSocialMediaHours());
+        out.writeDouble(student.getNetflixHours());
+        out.writeBoolean(student.isPartTimeJob());
+        out.writeDouble(student.getAttendancePercentage());
+        out.writeDouble(student.getSleepHours());
+        writeNullableString(out, student.getDietQuality());
+        out.writeInt(student.getExerciseFrequency());
+        writeNullableString(out, student.getParentalEducationLevel());
+        writeNullableString(out, student.getInternetQuality());
+        out.writeInt(student.getMentalHealthRating());
+        out.writeBoolean(student.isExtracurricularParticipation());
+        out.writeDouble(student.getExamScore());
+    }
+
+    private static Student readStudent(DataInputStream in) throws IOException {
+        try {
+            return new Student(in.readUTF(), in.readInt(), readNullableString(in), in.readDouble(),
+                    in.readDouble(), in.readDouble(), in.readBoolean(), in.readDouble(), in.readDouble(),
+                    readNullableString(in), in.readInt(), readNullableString(in), readNullableString(in),
+                    in.readInt(), in.readBoolean(), in.readDouble());
+        } catch (EOFException e) {
+            throw new IOException("Truncated log record", e);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
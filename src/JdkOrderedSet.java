@@ -0,0 +1,103 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * {@link OrderedSet} backed by a sorted set of the JDK, so that the trees of this project
+ * can be compared against the standard engines under the same workload.
+ * @param <T> The type of the elements, must be comparable.
+ */
+public class JdkOrderedSet<T extends Comparable<T>> implements OrderedSet<T> {
+    private final NavigableSet<T> set;
+
+    /**
+     * Wraps a sorted set.
+     * @param set The set, used and modified in place.
+     */
+    public JdkOrderedSet(NavigableSet<T> set) {
+        this.set = set;
+    }
+
+    /**
+     * Creates a set backed by a {@link TreeSet}, a red-black tree.
+     * @return The empty set.
+     */
+    public static <T extends Comparable<T>> JdkOrderedSet<T> redBlack() {
+        return new JdkOrderedSet<T>(new TreeSet<T>());
+    }
+
+    /**
+     * Creates a set backed by a {@link ConcurrentSkipListSet}, a lock-free skip list.
+     * @return The empty set.
+     */
+    public static <T extends Comparable<T>> JdkOrderedSet<T> skipList() {
+        return new JdkOrderedSet<T>(new ConcurrentSkipListSet<T>());
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return set.comparator();
+    }
+
+    @Override
+    public void insert(T value) {
+        set.add(value);
+    }
+
+    @Override
+    public boolean search(T value) {
+        return set.contains(value);
+    }
+
+    @Override
+    public boolean remove(T value) {
+        return set.remove(value);
+    }
+
+    @Override
+    public int size() {
+        return set.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return set.isEmpty();
+    }
+
+    @Override
+    public void bulkLoad(Collection<? extends T> values) {
+        set.addAll(values);
+    }
+
+    @Override
+    public boolean insertAll(Collection<? extends T> values) {
+        return set.addAll(values);
+    }
+
+    @Override
+    public List<T> scan(T from, int limit) {
+        List<T> result = new ArrayList<>(Math.min(limit, 16));
+        Iterator<T> iterator = set.tailSet(from, true).iterator();
+        while (result.size() < limit && iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return set.iterator();
+    }
+
+    @Override
+    public List<T> inorderTraversal() {
+        return new ArrayList<>(set);
+    }
+}
@@ -0,0 +1,145 @@
+package src;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How a {@link Workload} picks the records it reads and updates, as the request
+ * distributions of YCSB. Keys are indexes of records in [0, itemCount), where itemCount is
+ * the number of records inserted so far, so LATEST follows the inserts of a running workload.
+ */
+public enum KeyDistribution {
+    /**
+     * Every record is equally likely.
+     */
+    UNIFORM,
+    /**
+     * A few records are hot: the record of rank r is picked with a probability proportional
+     * to 1 / r^0.99. The ranks are scattered over the key space by a hash, so that hot records
+     * are not neighbours in the tree.
+     */
+    ZIPFIAN,
+    /**
+     * Zipfian over recency: the most recently inserted records are the hottest.
+     */
+    LATEST,
+    /**
+     * Every record in turn, in id order, then again from the first.
+     */
+    SEQUENTIAL;
+
+    /**
+     * Skew of the Zipfian distributions, the default of YCSB.
+     */
+    public static final double ZIPFIAN_CONSTANT = 0.99;
+
+    /**
+     * Sums of 1 / i^theta for i = 1 .. n, by n, shared by the choosers so that clients
+     * starting on the same number of records compute the sum only once.
+     */
+    private static final ConcurrentHashMap<Long, Double> ZETA = new ConcurrentHashMap<>();
+
+    /**
+     * Picks keys. A chooser is not thread-safe: every client thread uses its own.
+     */
+    public interface Chooser {
+        /**
+         * Picks the next key.
+         * @param itemCount The number of records, at least 1.
+         * @return The index of a record, in [0, itemCount).
+         */
+        long next(long itemCount);
+    }
+
+    /**
+     * Creates a chooser of this distribution.
+     * @param seed The seed of the random choices.
+     * @return The chooser.
+     */
+    public Chooser newChooser(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        switch (this) {
+            case UNIFORM:
+                return random::nextLong;
+            case ZIPFIAN: {
+                Zipfian zipfian = new Zipfian(random);
+                // Like the scrambled Zipfian of YCSB, hashed so the hot ranks are spread out
+                return itemCount -> Math.floorMod(WorkloadGenerator.mix64(zipfian.next(itemCount)), itemCount);
+            }
+            case LATEST: {
+                Zipfian zipfian = new Zipfian(random);
+                return itemCount -> itemCount - 1 - zipfian.next(itemCount);
+            }
+            case SEQUENTIAL:
+                return new Chooser() {
+                    private long next;
+
+                    @Override
+                    public long next(long itemCount) {
+                        if (next >= itemCount) {
+                            next = 0;
+                        }
+                        return next++;
+                    }
+                };
+            default:
+                throw new AssertionError(this);
+        }
+    }
+
+    /**
+     * Zipfian ranks, by the method of Gray et al., "Quickly Generating Billion-Record Synthetic
+     * Databases" (SIGMOD 1994), as in YCSB: a draw costs one pow call once the normalization
+     * constant zeta(n) is known. When the number of items grows, zeta is extended by the new
+     * terms only.
+     */
+    private static final class Zipfian {
+        private final SplittableRandom random;
+        private final double theta = ZIPFIAN_CONSTANT;
+        private final double alpha = 1 / (1 - theta);
+        private final double zeta2 = zeta(0, 2, 0);
+        private long countForZeta;
+        private double zetaN;
+        private double eta;
+
+        Zipfian(SplittableRandom random) {
+            this.random = random;
+        }
+
+        /**
+         * Draws a rank.
+         * @return A rank in [0, itemCount), 0 being the most likely.
+         */
+        long next(long itemCount) {
+            if (itemCount != countForZeta) {
+                if (itemCount > countForZeta && countForZeta > 0) {
+                    zetaN = zeta(countForZeta, itemCount, zetaN);
+                } else {
+                    zetaN = ZETA.computeIfAbsent(itemCount, n -> zeta(0, n, 0));
+                }
+                countForZeta = itemCount;
+                eta = (1 - Math.pow(2.0 / itemCount, 1 - theta)) / (1 - zeta2 / zetaN);
+            }
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return Math.min(1, itemCount - 1);
+            }
+            long rank = (long) (itemCount * Math.pow(eta * u - eta + 1, alpha));
+            return Math.min(rank, itemCount - 1);
+        }
+
+        /**
+         * Adds the terms 1 / i^theta for i = from + 1 .. to to a partial sum.
+         */
+        private static double zeta(long from, long to, double sum) {
+            for (long i = from + 1; i <= to; i++) {
+                sum += 1 / Math.pow(i, ZIPFIAN_CONSTANT);
+            }
+            return sum;
+        }
+    }
+}
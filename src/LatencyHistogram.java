@@ -0,0 +1,161 @@
+package src;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds that several threads can record into at once.
+ * Values below 32 have a bucket each; above, every power of two is split into 16 buckets of
+ * equal width, so a percentile is known within about 6% whatever its magnitude, with a fixed
+ * array of 960 buckets. Every bucket is a {@link LongAdder}, so threads recording at the
+ * same time do not contend on a single counter.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency. Negative values, from a clock that went backwards, count as 0.
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets[bucketOf(value)].increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Clears every recorded value.
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * Gets the index of the bucket of a non-negative value: the value itself below 32, and
+     * above that the position of its highest bit followed by the next four bits.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Gets the largest value that falls in a bucket.
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Copies the recorded values. Values recorded while the copy is made may be left out.
+     * @return The counts, mean, maximum and percentiles of the latencies recorded so far.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, total.sum(), max.get());
+    }
+
+    /**
+     * Latencies recorded into a histogram up to some point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long total, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * Gets the number of recorded latencies.
+         * @return The number of values.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the mean latency.
+         * @return The mean in nanoseconds, or 0 if nothing was recorded.
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * Gets the largest latency.
+         * @return The maximum in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Gets the latency that a percentage of the recorded latencies do not exceed.
+         * @param percentile The percentage, between 0 and 100.
+         * @return The upper bound of the bucket holding the percentile, at most the maximum,
+         *         in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getP50() {
+            return percentile(50);
+        }
+
+        public long getP99() {
+            return percentile(99);
+        }
+
+        public long getP999() {
+            return percentile(99.9);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Runs many simulated clients of a {@link Workload} at once against one shared, thread-safe
+ * {@link OrderedSet}, as the clients of a service use the index, and measures throughput and
+ * latency percentiles.
+ *
+ * Clients run either on virtual threads, one each, or on a pool of platform threads that
+ * share the clients among them. Virtual threads need Java 21; on older runtimes the driver
+ * falls back to one platform thread per client. In closed loop every client issues its next
+ * operation as soon as the previous one completes. In open loop the clients together issue
+ * operations at a target rate, each on a fixed schedule, and the latency of an operation is
+ * counted from the time it was scheduled rather than from the time it started. A stall
+ * therefore counts against every operation that should have run during it, instead of
+ * silently delaying them: the correction for coordinated omission described by Gil Tene
+ * ("How NOT to Measure Latency"). Both the corrected response time and the service time are
+ * reported, and the gap between them is the queueing the clients saw.
+ *
+ * Usage: {@code java -cp bin src.LoadDriver [-c 1000] [-n 100000] [-w B] [--rate 0]
+ * [--threads virtual|platform] [--pool P] [--warmup 2] [-d 10] [-e concurrentAvl|skipList] [--seed 42]}
+ * where -c is the number of clients, -n the number of records loaded first, -w the workload
+ * (see {@link Workload#parse}), --rate the target rate in operations per second over all
+ * clients (0 for closed loop), --pool the number of platform threads (by default one per
+ * client), --warmup and -d the warmup and measured durations in seconds and -e the index.
+ */
+public class LoadDriver {
+    /**
+     * The threads the clients run on.
+     */
+    public enum Threads {
+        VIRTUAL, PLATFORM
+    }
+
+    /**
+     * Delay before the first scheduled operation, so that every worker has started by then.
+     */
+    private static final long START_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final OrderedSet<Student> set;
+    private final Workload workload;
+    private final WorkloadGenerator generator;
+    private final AtomicLong recordCount;
+
+    /**
+     * Creates a driver over a set that holds records 0 to recordCount - 1 of a generator.
+     * @param set The shared set, which must be thread-safe.
+     * @param workload The operations of the clients.
+     * @param generator Generates the records.
+     * @param recordCount The number of records in the set.
+     */
+    public LoadDriver(OrderedSet<Student> set, Workload workload, WorkloadGenerator generator, long recordCount) {
+        this.set = set;
+        this.workload = workload;
+        this.generator = generator;
+        this.recordCount = new AtomicLong(recordCount);
+    }
+
+    /**
+     * Runs the clients for a warmup period, then for the measured period.
+     * @param threads The threads of the clients.
+     * @param poolSize The number of platform threads sharing the clients, used for
+     *                 {@link Threads#PLATFORM} only; 0 for one thread per client.
+     * @param clients The number of clients.
+     * @param targetRate Operations per second over all clients, or 0 for closed loop.
+     * @param warmupMillis The warmup, whose operations are not recorded.
+     * @param durationMillis The measured duration.
+     * @return The throughput and latencies of the operations scheduled in the measured period.
+     * @throws IllegalArgumentException If there is no client or the rate is negative.
+     */
+    public Result run(Threads threads, int poolSize, int clients, double targetRate, long warmupMillis,
+                      long durationMillis) {
+        if (clients <= 0 || targetRate < 0) {
+            throw new IllegalArgumentException("Expected clients > 0 and rate >= 0, got " + clients + " and " + targetRate);
+        }
+        ExecutorService executor = threads == Threads.VIRTUAL ? newVirtualThreadExecutor() : null;
+        String threadDescription;
+        int workerCount;
+        if (executor != null) {
+            threadDescription = "virtual threads";
+            workerCount = clients;
+        } else {
+            workerCount = threads == Threads.PLATFORM && poolSize > 0 ? Math.min(poolSize, clients) : clients;
+            threadDescription = (threads == Threads.VIRTUAL ? "platform threads (no virtual threads before Java 21), " : "platform threads, ")
+                    + workerCount + " for " + clients + " clients";
+            executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+                Thread thread = new Thread(runnable, "load-driver-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        Recorder recorder = new Recorder();
+        long intervalNanos = targetRate == 0 ? 0 : Math.max(1, (long) (clients * 1e9 / targetRate));
+        long startTime = System.nanoTime() + START_DELAY_NANOS;
+        long measureStart = startTime + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        long endTime = measureStart + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        List<Future<?>> futures = new ArrayList<>(workerCount);
+        try {
+            for (int w = 0; w < workerCount; w++) {
+                // Worker w runs clients w, w + workerCount, ..., whose schedules interleave in that order
+                int count = (clients - w + workerCount - 1) / workerCount;
+                Workload.Client[] workerClients = new Workload.Client[count];
+                long[] nextStart = new long[count];
+                for (int i = 0; i < count; i++) {
+                    int client = w + i * workerCount;
+                    workerClients[i] = workload.newClient(generator, recordCount,
+                            WorkloadGenerator.mix64(generator.getSeed() + client));
+                    nextStart[i] = startTime + (intervalNanos == 0 ? 0 : intervalNanos * client / clients);
+                }
+                futures.add(executor.submit(() ->
+                        drive(workerClients, nextStart, intervalNanos, measureStart, endTime, recorder)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    throw new IllegalStateException("A client failed", e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // Operations scheduled in the measured period may complete after it when the set cannot keep up
+        long lastEnd = Math.max(recorder.lastEnd.get(), endTime);
+        return new Result(workload, threadDescription, clients, targetRate, (lastEnd - measureStart) / 1e9, recorder);
+    }
+
+    /**
+     * Runs the clients of one worker in turn until the end of the run.
+     */
+    private void drive(Workload.Client[] clients, long[] nextStart, long intervalNanos, long measureStart,
+                       long endTime, Recorder recorder) {
+        waitUntil(nextStart[0]);
+        for (int i = 0; ; i = (i + 1) % clients.length) {
+            Workload.Client client = clients[i];
+            long intended;
+            if (intervalNanos == 0) {
+                intended = System.nanoTime();
+            } else {
+                intended = nextStart[i];
+                nextStart[i] += intervalNanos;
+                waitUntil(intended);
+            }
+            if (intended >= endTime) {
+                return;
+            }
+            Workload.Operation operation = client.nextOperation();
+            long start = System.nanoTime();
+            client.execute(set, operation);
+            long end = System.nanoTime();
+            if (intended >= measureStart) {
+                recorder.record(operation, end, end - start, end - intended);
+            }
+        }
+    }
+
+    private static void waitUntil(long time) {
+        for (long remaining = time - System.nanoTime(); remaining > 0; remaining = time - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task, through reflection so that the
+     * driver also compiles and runs on Java 17.
+     * @return The executor, or null if the runtime has no virtual threads.
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Latencies shared by the workers.
+     */
+    private static class Recorder {
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final LatencyHistogram responseTime = new LatencyHistogram();
+        private final LatencyHistogram[] responseTimeByOperation = new LatencyHistogram[Workload.Operation.values().length];
+        private final LongAdder operations = new LongAdder();
+        private final LongAccumulator lastEnd = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+        Recorder() {
+            for (int i = 0; i < responseTimeByOperation.length; i++) {
+                responseTimeByOperation[i] = new LatencyHistogram();
+            }
+        }
+
+        void record(Workload.Operation operation, long end, long serviceNanos, long responseNanos) {
+            lastEnd.accumulate(end);
+            serviceTime.record(serviceNanos);
+            responseTime.record(responseNanos);
+            responseTimeByOperation[operation.ordinal()].record(responseNanos);
+            operations.increment();
+        }
+    }
+
+    /**
+     * Throughput and latencies of a run.
+     */
+    public static class Result {
+        private final Workload workload;
+        private final String threads;
+        private final int clients;
+        private final double targetRate;
+        private final double seconds;
+        private final long operations;
+        private final LatencyHistogram.Snapshot serviceTime;
+        private final LatencyHistogram.Snapshot responseTime;
+        private final LatencyHistogram.Snapshot[] responseTimeByOperation;
+
+        private Result(Workload workload, String threads, int clients, double targetRate, double seconds,
+                       Recorder recorder) {
+            this.workload = workload;
+            this.threads = threads;
+            this.clients = clients;
+            this.targetRate = targetRate;
+            this.seconds = seconds;
+            this.operations = recorder.operations.sum();
+            this.serviceTime = recorder.serviceTime.snapshot();
+            this.responseTime = recorder.responseTime.snapshot();
+            this.responseTimeByOperation = new LatencyHistogram.Snapshot[recorder.responseTimeByOperation.length];
+            for (int i = 0; i < responseTimeByOperation.length; i++) {
+                responseTimeByOperation[i] = recorder.responseTimeByOperation[i].snapshot();
+            }
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        /**
+         * Gets the throughput of the measured period, up to the completion of its last operation.
+         * @return Operations per second.
+         */
+        public double getThroughput() {
+            return seconds == 0 ? 0 : operations / seconds;
+        }
+
+        /**
+         * Gets the time the operations took to execute, from their start.
+         * @return The service times.
+         */
+        public LatencyHistogram.Snapshot getServiceTime() {
+            return serviceTime;
+        }
+
+        /**
+         * Gets the time the operations took from when they were scheduled, corrected for
+         * coordinated omission; the same as the service time in closed loop.
+         * @return The response times.
+         */
+        public LatencyHistogram.Snapshot getResponseTime() {
+            return responseTime;
+        }
+
+        /**
+         * Gets the response times of one operation.
+         * @param operation The operation.
+         * @return Its response times.
+         */
+        public LatencyHistogram.Snapshot getResponseTime(Workload.Operation operation) {
+            return responseTimeByOperation[operation.ordinal()];
+        }
+
+        /**
+         * Prints the throughput and a table of latency percentiles.
+         */
+        public void print() {
+            System.out.printf(Locale.ROOT, "Workload %s, %d clients on %s, %s%n", workload, clients, threads,
+                    targetRate == 0 ? "closed loop" : String.format(Locale.ROOT, "open loop at %.0f ops/s", targetRate));
+            System.out.printf(Locale.ROOT, "Throughput: %.0f ops/s (%d operations in %.1f s)%n",
+                    getThroughput(), operations, seconds);
+            System.out.printf("%-22s %10s %10s %10s %10s %10s %10s%n",
+                    "Latency (ns)", "count", "p50", "p90", "p99", "p99.9", "max");
+            for (Workload.Operation operation : Workload.Operation.values()) {
+                LatencyHistogram.Snapshot latency = getResponseTime(operation);
+                if (latency.getCount() > 0) {
+                    printRow(operation.name().toLowerCase(Locale.ROOT), latency);
+                }
+            }
+            printRow("all, response time", responseTime);
+            printRow("all, service time", serviceTime);
+        }
+
+        private static void printRow(String label, LatencyHistogram.Snapshot latency) {
+            System.out.printf("%-22s %10d %10d %10d %10d %10d %10d%n", label, latency.getCount(), latency.getP50(),
+                    latency.percentile(90), latency.getP99(), latency.getP999(), latency.getMax());
+        }
+    }
+
+    public static void main(String[] args) {
+        int clients = 1000;
+        long records = 100_000;
+        String workloadSpec = "B";
+        double rate = 0;
+        Threads threads = Threads.VIRTUAL;
+        int poolSize = 0;
+        long warmupSeconds = 2;
+        long durationSeconds = 10;
+        String engine = "concurrentAvl";
+        long seed = PerformanceAnalyzer.DEFAULT_SEED;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-c":
+                    clients = Integer.parseInt(args[++i]);
+                    break;
+                case "-n":
+                    records = Long.parseLong(args[++i]);
+                    break;
+                case "-w":
+                    workloadSpec = args[++i];
+                    break;
+                case "--rate":
+                    rate = Double.parseDouble(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Threads.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                    break;
+                case "--pool":
+                    poolSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmupSeconds = Long.parseLong(args[++i]);
+                    break;
+                case "-d":
+                    durationSeconds = Long.parseLong(args[++i]);
+                    break;
+                case "-e":
+                    engine = args[++i];
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        OrderedSet<Student> set;
+        switch (engine) {
+            case "concurrentAvl":
+                set = new ConcurrentAVLTree<>();
+                break;
+            case "skipList":
+                set = JdkOrderedSet.skipList();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+        WorkloadGenerator generator = new WorkloadGenerator(seed);
+        long startTime = System.nanoTime();
+        set.bulkLoad(generator.students(records).collect(Collectors.toList()));
+        System.out.printf(Locale.ROOT, "Loaded %d records into %s in %.1f s%n", set.size(), engine,
+                (System.nanoTime() - startTime) / 1e9);
+
+        LoadDriver driver = new LoadDriver(set, Workload.parse(workloadSpec), generator, records);
+        driver.run(threads, poolSize, clients, rate, warmupSeconds * 1000, durationSeconds * 1000).print();
+    }
+}
@@ -0,0 +1,312 @@
+package src;
+
+import java.util.Arrays;
+
+/**
+ * AVL tree of primitive long keys, such as the numeric part of a student id.
+ * Nodes live in parallel arrays (keys, children indices and heights) instead of
+ * separate objects, so lookups compare primitives without calling compareTo and the
+ * garbage collector only sees a handful of arrays. Slots of removed nodes are kept in
+ * a free list and reused by later insertions.
+ */
+public class LongAVLTree {
+    /**
+     * Index of the sentinel slot that stands for "no node"; its height is always 0.
+     */
+    private static final int NIL = 0;
+    private static final int MAX_HEIGHT = 64;
+
+    private long[] keys;
+    private int[] left;
+    private int[] right;
+    private byte[] heights;
+
+    private int root = NIL;
+    private int size;
+    private int nextUnused = 1;
+    // Free slots are chained through their left index
+    private int freeList = NIL;
+
+    private final int[] path = new int[MAX_HEIGHT];
+
+    public LongAVLTree() {
+        this(16);
+    }
+
+    /**
+     * Creates a tree with room for a number of keys before the arrays grow.
+     * @param initialCapacity The expected number of keys.
+     */
+    public LongAVLTree(int initialCapacity) {
+        int capacity = Math.max(2, initialCapacity + 1);
+        keys = new long[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        heights = new byte[capacity];
+    }
+
+    /**
+     * Gets the size of the tree.
+     * @return The number of keys in the tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the tree is empty.
+     * @return true if the tree is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Inserts a key into the tree. Duplicate keys are ignored.
+     * @param key The key to insert.
+     */
+    public void insert(long key) {
+        if (root == NIL) {
+            root = newNode(key);
+            size++;
+            return;
+        }
+
+        int depth = 0;
+        int node = root;
+        while (true) {
+            path[depth++] = node;
+            long current = keys[node];
+            int next;
+            if (key < current) {
+                next = left[node];
+                if (next == NIL) {
+                    int child = newNode(key);
+                    left[node] = child;
+                    break;
+                }
+            } else if (key > current) {
+                next = right[node];
+                if (next == NIL) {
+                    int child = newNode(key);
+                    right[node] = child;
+                    break;
+                }
+            } else {
+                // Duplicate keys not allowed
+                return;
+            }
+            node = next;
+        }
+        size++;
+
+        for (int i = depth - 1; i >= 0; i--) {
+            int current = path[i];
+            int oldHeight = heights[current];
+            int leftHeight = heights[left[current]];
+            int rightHeight = heights[right[current]];
+            int balance = leftHeight - rightHeight;
+            if (balance > 1 || balance < -1) {
+                replaceChild(i, current, rebalance(current, balance));
+                break;
+            }
+            heights[current] = (byte) (1 + Math.max(leftHeight, rightHeight));
+            if (heights[current] == oldHeight) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Searches for a key in the tree.
+     * @param key The key to search for.
+     * @return true if the key is found, false otherwise.
+     */
+    public boolean search(long key) {
+        int node = root;
+        while (node != NIL) {
+            long current = keys[node];
+            if (key < current) {
+                node = left[node];
+            } else if (key > current) {
+                node = right[node];
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes a key from the tree.
+     * @param key The key to remove.
+     * @return true if the key was removed, false if it wasn't found.
+     */
+    public boolean remove(long key) {
+        int depth = 0;
+        int node = root;
+        while (node != NIL) {
+            path[depth++] = node;
+            long current = keys[node];
+            if (key < current) {
+                node = left[node];
+            } else if (key > current) {
+                node = right[node];
+            } else {
+                break;
+            }
+        }
+        if (node == NIL) {
+            return false;
+        }
+
+        if (left[node] != NIL && right[node] != NIL) {
+            // Node with two children: take the key of the inorder successor and unlink it instead
+            int successor = right[node];
+            path[depth++] = successor;
+            while (left[successor] != NIL) {
+                successor = left[successor];
+                path[depth++] = successor;
+            }
+            keys[node] = keys[successor];
+            node = successor;
+        }
+
+        replaceChild(depth - 1, node, left[node] != NIL ? left[node] : right[node]);
+        depth--;
+        freeNode(node);
+        size--;
+
+        for (int i = depth - 1; i >= 0; i--) {
+            int current = path[i];
+            int oldHeight = heights[current];
+            int leftHeight = heights[left[current]];
+            int rightHeight = heights[right[current]];
+            int balance = leftHeight - rightHeight;
+            if (balance > 1 || balance < -1) {
+                int newRoot = rebalance(current, balance);
+                replaceChild(i, current, newRoot);
+                if (heights[newRoot] == oldHeight) {
+                    break;
+                }
+            } else {
+                heights[current] = (byte) (1 + Math.max(leftHeight, rightHeight));
+                if (heights[current] == oldHeight) {
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Performs an inorder traversal of the tree.
+     * @return An array of all keys in ascending order.
+     */
+    public long[] inorderTraversal() {
+        long[] result = new long[size];
+        int[] stack = new int[MAX_HEIGHT];
+        int top = 0;
+        int count = 0;
+        int node = root;
+        while (node != NIL || top > 0) {
+            while (node != NIL) {
+                stack[top++] = node;
+                node = left[node];
+            }
+            node = stack[--top];
+            result[count++] = keys[node];
+            node = right[node];
+        }
+        return result;
+    }
+
+    /**
+     * Restores the balance of a node whose balance factor is 2 or -2.
+     * @return The index of the new root of the subtree.
+     */
+    private int rebalance(int node, int balance) {
+        if (balance > 1) {
+            int child = left[node];
+            if (heights[left[child]] < heights[right[child]]) {
+                left[node] = leftRotate(child);
+            }
+            return rightRotate(node);
+        }
+        int child = right[node];
+        if (heights[right[child]] < heights[left[child]]) {
+            right[node] = rightRotate(child);
+        }
+        return leftRotate(node);
+    }
+
+    private int rightRotate(int y) {
+        int x = left[y];
+        left[y] = right[x];
+        right[x] = y;
+        updateHeight(y);
+        updateHeight(x);
+        return x;
+    }
+
+    private int leftRotate(int x) {
+        int y = right[x];
+        right[x] = left[y];
+        left[y] = x;
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+
+    private void updateHeight(int node) {
+        heights[node] = (byte) (1 + Math.max(heights[left[node]], heights[right[node]]));
+    }
+
+    /**
+     * Links a new subtree in place of the node at an index of the path.
+     */
+    private void replaceChild(int index, int oldChild, int newChild) {
+        if (index == 0) {
+            root = newChild;
+        } else {
+            int parent = path[index - 1];
+            if (left[parent] == oldChild) {
+                left[parent] = newChild;
+            } else {
+                right[parent] = newChild;
+            }
+        }
+    }
+
+    /**
+     * Takes a slot from the free list, or a new one, growing the arrays when they are full.
+     */
+    private int newNode(long key) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = left[node];
+        } else {
+            if (nextUnused == keys.length) {
+                int capacity = keys.length + (keys.length >> 1);
+                keys = Arrays.copyOf(keys, capacity);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                heights = Arrays.copyOf(heights, capacity);
+            }
+            node = nextUnused++;
+        }
+        keys[node] = key;
+        left[node] = NIL;
+        right[node] = NIL;
+        heights[node] = 1;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        heights[node] = 0;
+        right[node] = NIL;
+        left[node] = freeList;
+        freeList = node;
+    }
+}
@@ -0,0 +1,505 @@
+package src;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded map from keys to values that evicts entries once it holds its capacity, with a
+ * choice of eviction policies, and counts its hits, misses and evictions. Used by
+ * {@link CachedOrderedSet} to answer repeated searches for hot keys without walking the tree.
+ * Not thread-safe, like {@link AVLTree}.
+ * @param <K> The type of the keys, with equals and hashCode.
+ * @param <V> The type of the values.
+ */
+public abstract class LookupCache<K, V> {
+    /**
+     * The eviction policies.
+     */
+    public enum Policy {
+        /**
+         * Evicts the least recently used entry.
+         */
+        LRU,
+        /**
+         * Second chance: a hand sweeps the entries in a ring, clearing their referenced bit,
+         * and evicts the first one not referenced since the hand last passed. Approximates LRU
+         * without moving entries on a hit.
+         */
+        CLOCK,
+        /**
+         * W-TinyLFU (Einziger et al., "TinyLFU: A Highly Efficient Cache Admission Policy",
+         * 2017): new entries go to a small LRU window; an entry leaving the window only
+         * replaces the victim of the main segmented LRU if its estimated frequency is higher.
+         * Frequencies are counted in a sketch of 4-bit counters that are halved periodically,
+         * so the cache keeps keys that stay popular over one-hit wonders.
+         */
+        W_TINY_LFU
+    }
+
+    protected final int capacity;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    protected LookupCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Creates a cache.
+     * @param policy The eviction policy.
+     * @param capacity The maximum number of entries.
+     * @param <K> The type of the keys.
+     * @param <V> The type of the values.
+     * @return The empty cache.
+     * @throws IllegalArgumentException If the capacity is not positive.
+     */
+    public static <K, V> LookupCache<K, V> create(Policy policy, int capacity) {
+        switch (policy) {
+            case LRU:
+                return new Lru<>(capacity);
+            case CLOCK:
+                return new Clock<>(capacity);
+            case W_TINY_LFU:
+                return new WindowTinyLfu<>(capacity);
+            default:
+                throw new AssertionError(policy);
+        }
+    }
+
+    /**
+     * Gets the value of a key, counting a hit or a miss.
+     * @param key The key.
+     * @return The value, or null if the key is not cached.
+     */
+    public final V get(K key) {
+        V value = lookup(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Caches the value of a key, evicting an entry if the cache is full. A W-TinyLFU cache
+     * may evict the new entry itself.
+     * @param key The key.
+     * @param value The value, not null.
+     */
+    public abstract void put(K key, V value);
+
+    /**
+     * Removes the entry of a key, if cached; not counted as an eviction.
+     * @param key The key.
+     */
+    public abstract void invalidate(K key);
+
+    /**
+     * Removes every entry.
+     */
+    public abstract void clear();
+
+    /**
+     * Gets the number of entries.
+     * @return The number of cached keys.
+     */
+    public abstract int size();
+
+    protected abstract V lookup(K key);
+
+    protected final void recordEviction() {
+        evictions++;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the fraction of lookups that were hits.
+     * @return The hit rate, from 0 to 1, or 0 before any lookup.
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Sets the hit, miss and eviction counts to zero, keeping the entries.
+     */
+    public void resetStats() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{size=%d/%d, hits=%d, misses=%d, evictions=%d}",
+                getClass().getSimpleName(), size(), capacity, hits, misses, evictions);
+    }
+
+    /**
+     * LRU on a {@link LinkedHashMap} in access order.
+     */
+    private static final class Lru<K, V> extends LookupCache<K, V> {
+        private final LinkedHashMap<K, V> map;
+
+        Lru(int capacity) {
+            super(capacity);
+            this.map = new LinkedHashMap<K, V>(Math.min(capacity, 1 << 16) * 4 / 3 + 1, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    if (size() > Lru.this.capacity) {
+                        recordEviction();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        protected V lookup(K key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(K key, V value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public void invalidate(K key) {
+            map.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+    }
+
+    /**
+     * CLOCK over a ring of slots, with a map from keys to their slot. Slots freed by
+     * invalidations are reused before the hand evicts anything.
+     */
+    private static final class Clock<K, V> extends LookupCache<K, V> {
+        private final HashMap<K, Integer> slots = new HashMap<>();
+        private final Object[] keys;
+        private final Object[] values;
+        private final boolean[] referenced;
+        private final int[] freeSlots;
+        private int freeCount;
+        private int hand;
+
+        Clock(int capacity) {
+            super(capacity);
+            this.keys = new Object[capacity];
+            this.values = new Object[capacity];
+            this.referenced = new boolean[capacity];
+            this.freeSlots = new int[capacity];
+            clear();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected V lookup(K key) {
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                return null;
+            }
+            referenced[slot] = true;
+            return (V) values[slot];
+        }
+
+        @Override
+        public void put(K key, V value) {
+            Integer existing = slots.get(key);
+            if (existing != null) {
+                values[existing] = value;
+                referenced[existing] = true;
+                return;
+            }
+            int slot;
+            if (freeCount > 0) {
+                slot = freeSlots[--freeCount];
+            } else {
+                while (referenced[hand]) {
+                    referenced[hand] = false;
+                    hand = (hand + 1) % capacity;
+                }
+                slot = hand;
+                hand = (hand + 1) % capacity;
+                slots.remove(keys[slot]);
+                recordEviction();
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            referenced[slot] = false;
+            slots.put(key, slot);
+        }
+
+        @Override
+        public void invalidate(K key) {
+            Integer slot = slots.remove(key);
+            if (slot != null) {
+                keys[slot] = null;
+                values[slot] = null;
+                referenced[slot] = false;
+                freeSlots[freeCount++] = slot;
+            }
+        }
+
+        @Override
+        public void clear() {
+            slots.clear();
+            for (int i = 0; i < capacity; i++) {
+                keys[i] = null;
+                values[i] = null;
+                referenced[i] = false;
+                // Popped from the end, so slots fill up from 0
+                freeSlots[i] = capacity - 1 - i;
+            }
+            freeCount = capacity;
+            hand = 0;
+        }
+
+        @Override
+        public int size() {
+            return slots.size();
+        }
+    }
+
+    /**
+     * W-TinyLFU with a window of 1% of the capacity and a main segmented LRU whose protected
+     * segment holds 80% of the rest, the proportions of Caffeine. Each segment is a doubly
+     * linked list from its least to its most recently used node.
+     */
+    private static final class WindowTinyLfu<K, V> extends LookupCache<K, V> {
+        private static final byte WINDOW = 0;
+        private static final byte PROBATION = 1;
+        private static final byte PROTECTED = 2;
+
+        private final HashMap<K, Node<K, V>> nodes = new HashMap<>();
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final Node<K, V>[] heads = new Node[] {new Node<>(), new Node<>(), new Node<>()};
+        private final int[] sizes = new int[3];
+        private final int windowCapacity;
+        private final int protectedCapacity;
+        private final FrequencySketch sketch;
+
+        WindowTinyLfu(int capacity) {
+            super(capacity);
+            this.windowCapacity = Math.max(1, capacity / 100);
+            this.protectedCapacity = (capacity - windowCapacity) * 4 / 5;
+            this.sketch = new FrequencySketch(capacity);
+            for (Node<K, V> head : heads) {
+                head.previous = head;
+                head.next = head;
+            }
+        }
+
+        @Override
+        protected V lookup(K key) {
+            sketch.increment(key.hashCode());
+            Node<K, V> node = nodes.get(key);
+            if (node == null) {
+                return null;
+            }
+            onHit(node);
+            return node.value;
+        }
+
+        private void onHit(Node<K, V> node) {
+            if (node.segment == PROBATION) {
+                // A second access earns a place in the protected segment
+                unlink(node);
+                append(node, PROTECTED);
+                if (sizes[PROTECTED] > protectedCapacity) {
+                    Node<K, V> demoted = heads[PROTECTED].next;
+                    unlink(demoted);
+                    append(demoted, PROBATION);
+                }
+            } else {
+                unlink(node);
+                append(node, node.segment);
+            }
+        }
+
+        @Override
+        public void put(K key, V value) {
+            Node<K, V> node = nodes.get(key);
+            if (node != null) {
+                node.value = value;
+                onHit(node);
+                return;
+            }
+            node = new Node<>();
+            node.key = key;
+            node.value = value;
+            nodes.put(key, node);
+            append(node, WINDOW);
+            if (sizes[WINDOW] > windowCapacity) {
+                Node<K, V> candidate = heads[WINDOW].next;
+                unlink(candidate);
+                append(candidate, PROBATION);
+                if (nodes.size() > capacity) {
+                    evict(candidate);
+                }
+            }
+        }
+
+        /**
+         * Evicts the less frequent of the candidate leaving the window and the least recently
+         * used node of the main segments.
+         */
+        private void evict(Node<K, V> candidate) {
+            Node<K, V> victim = heads[PROBATION].next;
+            if (victim == candidate) {
+                victim = sizes[PROTECTED] > 0 ? heads[PROTECTED].next : candidate;
+            }
+            Node<K, V> evicted = victim != candidate
+                    && sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())
+                    ? victim : candidate;
+            unlink(evicted);
+            nodes.remove(evicted.key);
+            recordEviction();
+        }
+
+        @Override
+        public void invalidate(K key) {
+            Node<K, V> node = nodes.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        }
+
+        @Override
+        public void clear() {
+            nodes.clear();
+            for (int segment = 0; segment < heads.length; segment++) {
+                heads[segment].previous = heads[segment];
+                heads[segment].next = heads[segment];
+                sizes[segment] = 0;
+            }
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+
+        private void append(Node<K, V> node, byte segment) {
+            Node<K, V> head = heads[segment];
+            node.segment = segment;
+            node.previous = head.previous;
+            node.next = head;
+            head.previous.next = node;
+            head.previous = node;
+            sizes[segment]++;
+        }
+
+        private void unlink(Node<K, V> node) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            sizes[node.segment]--;
+        }
+
+        private static final class Node<K, V> {
+            private K key;
+            private V value;
+            private byte segment;
+            private Node<K, V> previous;
+            private Node<K, V> next;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, 16 to a long, estimating how often a hash was seen
+     * among the last samples. When the number of increments reaches ten times the capacity
+     * of the cache, every counter is halved, so old popularity fades.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0x97cb3127L, 0xb3b8b6e1L, 0xa8ac5b2fL, 0xc6a4a793L
+        };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int length = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+            this.table = new long[length];
+            this.mask = length - 1;
+            this.sampleSize = 10 * capacity;
+        }
+
+        int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < SEEDS.length; row++) {
+                long index = indexOf(hash, row);
+                int counter = (int) ((table[(int) (index >>> 4)] >>> ((index & 15) << 2)) & 15);
+                frequency = Math.min(frequency, counter);
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                long index = indexOf(hash, row);
+                int word = (int) (index >>> 4);
+                int shift = (int) ((index & 15) << 2);
+                if (((table[word] >>> shift) & 15) < 15) {
+                    table[word] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        /**
+         * Gets the counter of a hash in a row, as a word index in the high bits and the
+         * position of the counter in the word in the low 4 bits.
+         */
+        private long indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * 0x9e3779b97f4a7c15L;
+            h ^= h >>> 32;
+            return ((h >>> 4) & mask) << 4 | (h & 15);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Sorted set of distinct elements, implemented by each of the interchangeable engines that
+ * can hold the students: {@link AVLTree}, {@link BPlusTree} and the JDK red-black tree and
+ * skip list wrapped by {@link JdkOrderedSet}. Iteration is in ascending order.
+ * @param <T> The type of the elements, must be comparable.
+ */
+public interface OrderedSet<T extends Comparable<T>> extends Iterable<T> {
+    /**
+     * Inserts a value. A value equal to one already in the set is ignored.
+     * @param value The value to insert.
+     */
+    void insert(T value);
+
+    /**
+     * Searches for a value.
+     * @param value The value to search for.
+     * @return true if an equal value is in the set.
+     */
+    boolean search(T value);
+
+    /**
+     * Removes the value equal to the given one.
+     * @param value The value to remove.
+     * @return true if a value was removed.
+     */
+    boolean remove(T value);
+
+    /**
+     * Gets the number of elements.
+     * @return The number of elements in the set.
+     */
+    int size();
+
+    /**
+     * Checks if the set is empty.
+     * @return true if the set is empty, false otherwise.
+     */
+    boolean isEmpty();
+
+    /**
+     * Adds every value of a collection; values equal to elements already in the set, or to
+     * earlier values of the collection, are ignored.
+     * @param values The values to add.
+     */
+    void bulkLoad(Collection<? extends T> values);
+
+    /**
+     * Adds every value of a collection. Engines with a faster batch algorithm override this.
+     * @param values The values to add.
+     * @return true if the set changed.
+     */
+    default boolean insertAll(Collection<? extends T> values) {
+        int previousSize = size();
+        for (T value : values) {
+            insert(value);
+        }
+        return size() != previousSize;
+    }
+
+    /**
+     * Removes every element equal to a value of a collection. Engines with a faster batch
+     * algorithm override this.
+     * @param values The values to remove.
+     * @return true if the set changed.
+     */
+    default boolean removeAll(Collection<? extends T> values) {
+        boolean changed = false;
+        for (T value : values) {
+            changed |= remove(value);
+        }
+        return changed;
+    }
+
+    /**
+     * Gets the comparator that orders the set.
+     * @return The comparator, or null if the elements use their natural order.
+     */
+    default Comparator<? super T> comparator() {
+        return null;
+    }
+
+    /**
+     * Gets the smallest elements greater than or equal to a value, in the order of the set, as
+     * a range scan of a database. Engines that can seek to the value override this; the
+     * default walks the set from its first element.
+     * @param from The lower bound, inclusive.
+     * @param limit The maximum number of elements.
+     * @return Up to limit elements, in ascending order.
+     */
+    default List<T> scan(T from, int limit) {
+        Comparator<? super T> comparator = comparator();
+        List<T> result = new ArrayList<>(Math.min(limit, 16));
+        for (T value : this) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if ((comparator == null ? value.compareTo(from) : comparator.compare(value, from)) >= 0) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the elements in ascending order.
+     * @return A list of all elements.
+     */
+    List<T> inorderTraversal();
+}
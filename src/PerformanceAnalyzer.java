@@ -1,47 +1,145 @@
 package src;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.function.Supplier;
 
 /**
- * Utility class for analyzing the performance of AVL tree operations.
+ * Utility class for analyzing the performance of ordered set operations, on the AVL tree
+ * or on any other {@link OrderedSet} engine.
  */
 public class PerformanceAnalyzer {
+    /**
+     * The engines compared by {@link #runEngineComparison}, by name.
+     */
+    public static final Map<String, Supplier<OrderedSet<Student>>> ENGINES = new LinkedHashMap<>();
+
+    /**
+     * Seed of the random choices when none is given, so that every run searches the same students.
+     */
+    public static final long DEFAULT_SEED = 42L;
+
+    /**
+     * Phases of the workload of {@link #runTrials}, as named in the report files.
+     */
+    private static final String[] TRIAL_PHASES = {"insert", "bulkLoad", "search", "traversal", "remove"};
+    private static final String[] TRIAL_PHASE_LABELS = {"Inserção", "Carga em lote", "Busca", "Travessia", "Remoção"};
+
+    static {
+        ENGINES.put("AVL", AVLTree::new);
+        ENGINES.put("B+tree(" + BPlusTree.DEFAULT_FANOUT + ")", BPlusTree::new);
+        ENGINES.put("B+tree(16)", () -> new BPlusTree<>(16));
+        ENGINES.put("Rubro-negra", JdkOrderedSet::redBlack);
+        ENGINES.put("Skip list", JdkOrderedSet::skipList);
+    }
+
     private List<Student> students;
-    private AVLTree<Student> avlTree;
+    private String engineName;
+    private Supplier<OrderedSet<Student>> engine;
+    private OrderedSet<Student> tree;
+    private boolean recordMetrics;
+    private long seed;
     private Random random;
 
     /**
-     * Creates a new PerformanceAnalyzer with the specified list of students.
+     * Creates a new PerformanceAnalyzer of the AVL tree with the specified list of students.
      * 
      * @param students The list of students to analyze.
      */
     public PerformanceAnalyzer(List<Student> students) {
+        this(students, "AVL", AVLTree::new);
+    }
+
+    /**
+     * Creates a new PerformanceAnalyzer of an ordered set engine with the specified list of students.
+     * 
+     * @param students The list of students to analyze.
+     * @param engineName The name of the engine, shown in the report.
+     * @param engine Creates empty sets of the engine.
+     */
+    public PerformanceAnalyzer(List<Student> students, String engineName, Supplier<OrderedSet<Student>> engine) {
+        this(students, engineName, engine, DEFAULT_SEED);
+    }
+
+    /**
+     * Creates a new PerformanceAnalyzer of an ordered set engine whose random choices, the
+     * students searched and removed, are fixed by a seed so that runs can be compared.
+     * 
+     * @param students The list of students to analyze.
+     * @param engineName The name of the engine, shown in the report.
+     * @param engine Creates empty sets of the engine.
+     * @param seed The seed of the random choices.
+     */
+    public PerformanceAnalyzer(List<Student> students, String engineName, Supplier<OrderedSet<Student>> engine,
+                               long seed) {
         this.students = students;
-        this.avlTree = new AVLTree<>();
-        this.random = new Random(System.currentTimeMillis());
+        this.engineName = engineName;
+        this.engine = engine;
+        this.seed = seed;
+        this.tree = engine.get();
+        this.random = new Random(seed);
     }
 
     /**
-     * Measures the time it takes to insert all students into the AVL tree.
+     * Sets whether {@link #runCompleteAnalysis} ends with the metrics of the tree. The metrics
+     * are recorded by replaying the workload on a separate instrumented tree after the timed
+     * phases, so the times never include the cost of recording them. Only AVL trees have metrics.
      * 
-     * @return The time taken in milliseconds.
+     * @param recordMetrics true to record and print the metrics.
+     */
+    public void setRecordMetrics(boolean recordMetrics) {
+        this.recordMetrics = recordMetrics;
+    }
+
+    /**
+     * Measures the time it takes to insert all students into the set.
+     * 
+     * @return The time taken in nanoseconds.
      */
     public long measureInsertionTime() {
         System.out.println("Medindo tempo de inserção para " + students.size() + " estudantes...");
         System.out.flush();
 
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
         for (Student student : students) {
-            avlTree.insert(student);
+            tree.insert(student);
         }
 
-        long endTime = System.currentTimeMillis();
+        long endTime = System.nanoTime();
         long duration = endTime - startTime;
 
-        System.out.println("Tempo de inserção: " + duration + " ms");
-        System.out.println("Tamanho da árvore após inserção: " + avlTree.size());
+        System.out.println("Tempo de inserção: " + formatMillis(duration));
+        System.out.println("Tamanho da árvore após inserção: " + tree.size());
+        System.out.flush();
+
+        return duration;
+    }
+
+    /**
+     * Measures the time it takes to build a separate set from all students
+     * with a single bulk load instead of one insertion per student.
+     * 
+     * @return The time taken in nanoseconds.
+     */
+    public long measureBulkLoadTime() {
+        System.out.println("Medindo tempo de carga em lote para " + students.size() + " estudantes...");
+        System.out.flush();
+
+        long startTime = System.nanoTime();
+
+        OrderedSet<Student> bulkTree = engine.get();
+        bulkTree.bulkLoad(students);
+
+        long endTime = System.nanoTime();
+        long duration = endTime - startTime;
+
+        System.out.println("Tempo de carga em lote: " + formatMillis(duration));
+        System.out.println("Tamanho da árvore após carga em lote: " + bulkTree.size());
         System.out.flush();
 
         return duration;
@@ -49,13 +147,13 @@ public class PerformanceAnalyzer {
 
     /**
      * Measures the time it takes to search for a specified number of random
-     * students in the AVL tree.
+     * students in the set.
      * 
      * @param numberOfSearches The number of searches to perform.
-     * @return The time taken in milliseconds.
+     * @return The time taken in nanoseconds.
      */
     public long measureSearchTime(int numberOfSearches) {
-        if (avlTree.isEmpty()) {
+        if (tree.isEmpty()) {
             System.out.println("Árvore vazia. Não é possível medir o tempo de busca.");
             System.out.flush();
             return 0;
@@ -64,7 +162,7 @@ public class PerformanceAnalyzer {
         System.out.println("Medindo tempo de busca para " + numberOfSearches + " estudantes aleatórios...");
         System.out.flush();
 
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
         int found = 0;
         // Estudante para mostrar como exemplo
@@ -73,7 +171,7 @@ public class PerformanceAnalyzer {
 
         for (int i = 0; i < numberOfSearches; i++) {
             Student studentToSearch = students.get(random.nextInt(students.size()));
-            boolean isFound = avlTree.search(studentToSearch);
+            boolean isFound = tree.search(studentToSearch);
 
             if (isFound) {
                 found++;
@@ -86,10 +184,10 @@ public class PerformanceAnalyzer {
             }
         }
 
-        long endTime = System.currentTimeMillis();
+        long endTime = System.nanoTime();
         long duration = endTime - startTime;
 
-        System.out.println("Tempo de busca: " + duration + " ms");
+        System.out.println("Tempo de busca: " + formatMillis(duration));
         System.out.println("Estudantes encontrados: " + found + " de " + numberOfSearches);
 
         // Mostra o exemplo de busca
@@ -105,12 +203,12 @@ public class PerformanceAnalyzer {
     }
 
     /**
-     * Measures the time it takes to perform an inorder traversal of the AVL tree.
+     * Measures the time it takes to perform an inorder traversal of the set.
      * 
-     * @return The time taken in milliseconds.
+     * @return The time taken in nanoseconds.
      */
     public long measureTraversalTime() {
-        if (avlTree.isEmpty()) {
+        if (tree.isEmpty()) {
             System.out.println("Árvore vazia. Não é possível medir o tempo de travessia em ordem.");
             System.out.flush();
             return 0;
@@ -119,19 +217,19 @@ public class PerformanceAnalyzer {
         System.out.println("Medindo tempo de travessia em ordem...");
         System.out.flush();
 
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
         int traversalSize = 0;
         try {
-            List<Student> sortedStudents = avlTree.inorderTraversal();
-            traversalSize = sortedStudents.size();
-            System.out.println("Número de estudantes na travessia em ordem: " + traversalSize);
-
-            // Print first few students to verify sort order
+            // Iterates the tree lazily instead of copying it into a list first
             System.out.println("Primeiros 5 estudantes em ordem:");
-            for (int i = 0; i < Math.min(5, traversalSize); i++) {
-                System.out.println("  " + (i + 1) + ". " + sortedStudents.get(i));
+            for (Student student : tree) {
+                traversalSize++;
+                if (traversalSize <= 5) {
+                    System.out.println("  " + traversalSize + ". " + student);
+                }
             }
+            System.out.println("Número de estudantes na travessia em ordem: " + traversalSize);
             System.out.flush();
         } catch (Exception e) {
             System.out.println("Erro durante a travessia em ordem: " + e.getMessage());
@@ -139,10 +237,59 @@ public class PerformanceAnalyzer {
             System.out.flush();
         }
 
-        long endTime = System.currentTimeMillis();
+        long endTime = System.nanoTime();
+        long duration = endTime - startTime;
+
+        System.out.println("Tempo de travessia: " + formatMillis(duration));
+        System.out.flush();
+
+        return duration;
+    }
+
+    /**
+     * Measures the time it takes to scan an O(1) snapshot of a persistent tree holding all
+     * students, while the live tree is updated, without copying the elements into a list.
+     * 
+     * @return The time taken in nanoseconds.
+     */
+    public long measureSnapshotTraversalTime() {
+        if (students.isEmpty()) {
+            System.out.println("Sem estudantes. Não é possível medir o tempo de travessia de snapshot.");
+            System.out.flush();
+            return 0;
+        }
+
+        System.out.println("Medindo tempo de travessia de snapshot...");
+        System.out.flush();
+
+        PersistentAVLTree<Student> persistentTree = new PersistentAVLTree<>();
+        persistentTree.bulkLoad(students);
+
+        long startTime = System.nanoTime();
+
+        PersistentAVLTree.Snapshot<Student> snapshot = persistentTree.snapshot();
+        int traversalSize = 0;
+        Student previous = null;
+        boolean sorted = true;
+        for (Student student : snapshot) {
+            // Updates to the live tree are not visible in the snapshot being scanned
+            if (traversalSize % 10 == 0) {
+                persistentTree.remove(student);
+            }
+            if (previous != null && previous.compareTo(student) >= 0) {
+                sorted = false;
+            }
+            previous = student;
+            traversalSize++;
+        }
+
+        long endTime = System.nanoTime();
         long duration = endTime - startTime;
 
-        System.out.println("Tempo de travessia: " + duration + " ms");
+        System.out.println("Número de estudantes na travessia de snapshot: " + traversalSize
+                + (sorted ? " (em ordem)" : " (fora de ordem!)"));
+        System.out.println("Tamanho da árvore viva após remoções durante a travessia: " + persistentTree.size());
+        System.out.println("Tempo de travessia de snapshot: " + formatMillis(duration));
         System.out.flush();
 
         return duration;
@@ -150,13 +297,13 @@ public class PerformanceAnalyzer {
 
     /**
      * Measures the time it takes to remove a specified number of random students
-     * from the AVL tree.
+     * from the set.
      * 
      * @param numberOfRemovals The number of removals to perform.
-     * @return The time taken in milliseconds.
+     * @return The time taken in nanoseconds.
      */
     public long measureRemovalTime(int numberOfRemovals) {
-        if (avlTree.isEmpty()) {
+        if (tree.isEmpty()) {
             System.out.println("Árvore vazia. Não é possível medir o tempo de remoção.");
             System.out.flush();
             return 0;
@@ -166,41 +313,379 @@ public class PerformanceAnalyzer {
         System.out.println("Medindo tempo de remoção para " + actualRemovals + " estudantes aleatórios...");
         System.out.flush();
 
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
         int removed = 0;
         for (int i = 0; i < actualRemovals; i++) {
             Student studentToRemove = students.get(i);
-            if (avlTree.remove(studentToRemove)) {
+            if (tree.remove(studentToRemove)) {
                 removed++;
             }
         }
 
-        long endTime = System.currentTimeMillis();
+        long endTime = System.nanoTime();
         long duration = endTime - startTime;
 
-        System.out.println("Tempo de remoção: " + duration + " ms");
+        System.out.println("Tempo de remoção: " + formatMillis(duration));
         System.out.println("Estudantes removidos: " + removed + " de " + actualRemovals);
-        System.out.println("Tamanho da árvore após remoção: " + avlTree.size());
+        System.out.println("Tamanho da árvore após remoção: " + tree.size());
         System.out.flush();
 
         return duration;
     }
 
     /**
-     * Runs a complete performance analysis on the AVL tree.
+     * Measures the time it takes to remove, as a single batch, the specified number of
+     * students following the ones removed by {@link #measureRemovalTime(int)}.
+     * 
+     * @param numberOfRemovals The number of removals to perform.
+     * @return The time taken in nanoseconds.
+     */
+    public long measureBatchRemovalTime(int numberOfRemovals) {
+        if (tree.isEmpty()) {
+            System.out.println("Árvore vazia. Não é possível medir o tempo de remoção em lote.");
+            System.out.flush();
+            return 0;
+        }
+
+        int first = Math.min(numberOfRemovals, students.size());
+        int last = Math.min(first + numberOfRemovals, students.size());
+        List<Student> batch = students.subList(first, last);
+        System.out.println("Medindo tempo de remoção em lote para " + batch.size() + " estudantes...");
+        System.out.flush();
+
+        int sizeBefore = tree.size();
+        long startTime = System.nanoTime();
+
+        tree.removeAll(batch);
+
+        long endTime = System.nanoTime();
+        long duration = endTime - startTime;
+
+        System.out.println("Tempo de remoção em lote: " + formatMillis(duration));
+        System.out.println("Estudantes removidos: " + (sizeBefore - tree.size()) + " de " + batch.size());
+        System.out.println("Tamanho da árvore após remoção em lote: " + tree.size());
+        System.out.flush();
+
+        return duration;
+    }
+
+    /**
+     * Runs the same workload on each engine and prints a table with one column per engine:
+     * inserting every student, a bulk load, random searches, a full traversal and removals.
+     * Every engine runs the workload twice and the second run is reported, so that the
+     * engines measured first are not penalized by the warmup of the JIT compiler.
+     * 
+     * @param numberOfSearches The number of searches to perform.
+     * @param numberOfRemovals The number of removals to perform.
+     * @param engines The engines to compare, by name.
+     */
+    public void runEngineComparison(int numberOfSearches, int numberOfRemovals,
+                                    Map<String, Supplier<OrderedSet<Student>>> engines) {
+        String[] operations = {"Inserção", "Carga em lote", "Busca", "Travessia", "Remoção"};
+        List<Student> probes = new ArrayList<>(numberOfSearches);
+        for (int i = 0; i < numberOfSearches; i++) {
+            probes.add(students.get(random.nextInt(students.size())));
+        }
+        List<Student> victims = students.subList(0, Math.min(numberOfRemovals, students.size()));
+
+        System.out.println("\n===== Comparação de Estruturas (ms) =====");
+        System.out.println("Mesma carga em todas: " + students.size() + " inserções, " + probes.size()
+                + " buscas, " + victims.size() + " remoções");
+        System.out.flush();
+
+        List<double[]> columns = new ArrayList<>();
+        for (Supplier<OrderedSet<Student>> factory : engines.values()) {
+            double[] times = null;
+            for (int run = 0; run < 2; run++) {
+                times = runWorkload(factory, probes, victims);
+            }
+            columns.add(times);
+        }
+
+        StringBuilder header = new StringBuilder(String.format("%-15s", "Operação"));
+        for (String name : engines.keySet()) {
+            header.append(String.format("%14s", name));
+        }
+        System.out.println(header);
+        for (int row = 0; row < operations.length; row++) {
+            StringBuilder line = new StringBuilder(String.format("%-15s", operations[row]));
+            for (double[] times : columns) {
+                line.append(String.format("%14.3f", times[row]));
+            }
+            System.out.println(line);
+        }
+        System.out.println("=========================================\n");
+        System.out.flush();
+    }
+
+    /**
+     * Runs the comparison workload once on a new set of an engine.
+     * @return The time of each operation in milliseconds.
+     */
+    private double[] runWorkload(Supplier<OrderedSet<Student>> factory, List<Student> probes, List<Student> victims) {
+        double[] times = new double[5];
+        OrderedSet<Student> set = factory.get();
+
+        long startTime = System.nanoTime();
+        for (Student student : students) {
+            set.insert(student);
+        }
+        times[0] = (System.nanoTime() - startTime) / 1e6;
+
+        startTime = System.nanoTime();
+        factory.get().bulkLoad(students);
+        times[1] = (System.nanoTime() - startTime) / 1e6;
+
+        int found = 0;
+        startTime = System.nanoTime();
+        for (Student probe : probes) {
+            if (set.search(probe)) {
+                found++;
+            }
+        }
+        times[2] = (System.nanoTime() - startTime) / 1e6;
+
+        int expectedSize = set.size();
+        int traversed = 0;
+        startTime = System.nanoTime();
+        for (Student student : set) {
+            traversed++;
+        }
+        times[3] = (System.nanoTime() - startTime) / 1e6;
+
+        int removed = 0;
+        startTime = System.nanoTime();
+        for (Student victim : victims) {
+            if (set.remove(victim)) {
+                removed++;
+            }
+        }
+        times[4] = (System.nanoTime() - startTime) / 1e6;
+
+        if (found != probes.size() || traversed != expectedSize || set.size() != expectedSize - removed) {
+            throw new IllegalStateException("Resultados inconsistentes na comparação de estruturas");
+        }
+        return times;
+    }
+
+    /**
+     * Runs the workload of the analysis repeatedly, each time on a new set of the engine, and
+     * summarizes every phase: insertion of every student, a bulk load, the searches, a full
+     * traversal and the removals. The warmup iterations run the same workload unmeasured, so
+     * that it is compiled by the JIT before it is timed. The students searched and removed are
+     * drawn once from the seed, so every iteration, and every run with the same seed, uses the
+     * same ones. Insertions, searches and removals are timed one by one for their percentiles,
+     * which therefore include the cost of reading the clock. The garbage collector is run
+     * between iterations so that a collection left over from one does not land in the next.
+     * 
+     * @param numberOfSearches The number of searches of each iteration.
+     * @param numberOfRemovals The number of removals of each iteration.
+     * @param warmupIterations The number of unmeasured iterations.
+     * @param measurementIterations The number of measured iterations, at least 1.
+     * @return The report of the measured iterations.
+     */
+    public PerformanceReport runTrials(int numberOfSearches, int numberOfRemovals, int warmupIterations,
+                                       int measurementIterations) {
+        if (measurementIterations < 1 || warmupIterations < 0) {
+            throw new IllegalArgumentException("Invalid iterations: " + warmupIterations + " warmup, "
+                    + measurementIterations + " measured");
+        }
+        Random trialRandom = new Random(seed);
+        Student[] all = students.toArray(new Student[0]);
+        Student[] probes = new Student[all.length == 0 ? 0 : numberOfSearches];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = all[trialRandom.nextInt(all.length)];
+        }
+        List<Student> shuffled = new ArrayList<>(students);
+        Collections.shuffle(shuffled, trialRandom);
+        Student[] victims = shuffled.subList(0, Math.min(numberOfRemovals, all.length)).toArray(new Student[0]);
+
+        int[] operations = {all.length, all.length, probes.length, all.length, victims.length};
+        double[][] means = new double[TRIAL_PHASES.length][measurementIterations];
+        LatencyHistogram insertLatency = new LatencyHistogram();
+        LatencyHistogram searchLatency = new LatencyHistogram();
+        LatencyHistogram removeLatency = new LatencyHistogram();
+
+        for (int iteration = -warmupIterations; iteration < measurementIterations; iteration++) {
+            boolean measured = iteration >= 0;
+            // Collects the garbage of the previous iteration before the clock starts
+            System.gc();
+            OrderedSet<Student> set = engine.get();
+
+            long total = 0;
+            for (Student student : all) {
+                long startTime = System.nanoTime();
+                set.insert(student);
+                long latency = System.nanoTime() - startTime;
+                total += latency;
+                if (measured) {
+                    insertLatency.record(latency);
+                }
+            }
+            long[] phaseNanos = new long[TRIAL_PHASES.length];
+            phaseNanos[0] = total;
+
+            long startTime = System.nanoTime();
+            OrderedSet<Student> bulkSet = engine.get();
+            bulkSet.bulkLoad(students);
+            phaseNanos[1] = System.nanoTime() - startTime;
+
+            int found = 0;
+            total = 0;
+            for (Student probe : probes) {
+                long probeStart = System.nanoTime();
+                boolean isFound = set.search(probe);
+                long latency = System.nanoTime() - probeStart;
+                total += latency;
+                if (isFound) {
+                    found++;
+                }
+                if (measured) {
+                    searchLatency.record(latency);
+                }
+            }
+            phaseNanos[2] = total;
+
+            int traversed = 0;
+            startTime = System.nanoTime();
+            for (Student student : set) {
+                traversed++;
+            }
+            phaseNanos[3] = System.nanoTime() - startTime;
+
+            int removed = 0;
+            total = 0;
+            for (Student victim : victims) {
+                long removalStart = System.nanoTime();
+                boolean isRemoved = set.remove(victim);
+                long latency = System.nanoTime() - removalStart;
+                total += latency;
+                if (isRemoved) {
+                    removed++;
+                }
+                if (measured) {
+                    removeLatency.record(latency);
+                }
+            }
+            phaseNanos[4] = total;
+
+            if (found != probes.length || traversed != all.length || removed != victims.length
+                    || bulkSet.size() != set.size() + removed) {
+                throw new IllegalStateException("Resultados inconsistentes nos ensaios de desempenho");
+            }
+            if (measured) {
+                for (int phase = 0; phase < TRIAL_PHASES.length; phase++) {
+                    means[phase][iteration] = operations[phase] == 0 ? 0 : (double) phaseNanos[phase] / operations[phase];
+                }
+            }
+        }
+
+        LatencyHistogram.Snapshot[] latencies = {insertLatency.snapshot(), null, searchLatency.snapshot(), null,
+                removeLatency.snapshot()};
+        List<PerformanceReport.Phase> phases = new ArrayList<>();
+        for (int phase = 0; phase < TRIAL_PHASES.length; phase++) {
+            phases.add(PerformanceReport.Phase.of(TRIAL_PHASES[phase], operations[phase], means[phase],
+                    latencies[phase]));
+        }
+        return new PerformanceReport(engineName, seed, warmupIterations, measurementIterations, phases);
+    }
+
+    /**
+     * Prints the phases of a trials report: mean time per operation with its confidence
+     * interval and, for the phases timed operation by operation, the latency percentiles.
+     * 
+     * @param report The report to print.
+     */
+    public static void printReport(PerformanceReport report) {
+        System.out.println("\n===== Ensaios Repetidos: " + report.getEngineName() + " =====");
+        System.out.println("Semente: " + report.getSeed() + ", " + report.getWarmupIterations()
+                + " iterações de aquecimento, " + report.getMeasurementIterations() + " iterações medidas");
+        System.out.println(String.format("%-15s%10s%12s%12s%10s%10s%10s%10s", "Fase (ns/op)", "operações",
+                "média", "± IC 99%", "p50", "p90", "p99", "p99,9"));
+        for (PerformanceReport.Phase phase : report.getPhases()) {
+            System.out.println(String.format("%-15s%10d%12.1f%12s%10s%10s%10s%10s", phaseLabel(phase.getName()),
+                    phase.getOperations(), phase.getMeanNanos(), formatNanos(phase.getCiNanos(), 1),
+                    formatNanos(phase.getP50Nanos(), 0), formatNanos(phase.getP90Nanos(), 0),
+                    formatNanos(phase.getP99Nanos(), 0), formatNanos(phase.getP999Nanos(), 0)));
+        }
+        System.out.println("=============================\n");
+        System.out.flush();
+    }
+
+    /**
+     * Prints the comparison of a trials report against a baseline and tells if any phase regressed.
+     * 
+     * @param comparisons The comparisons of every phase, from {@link PerformanceReport#compareTo}.
+     * @param thresholdPercent The slowdown tolerated, in percent.
+     * @return true if any phase regressed.
+     */
+    public static boolean printComparison(List<PerformanceReport.Comparison> comparisons, double thresholdPercent) {
+        System.out.println("===== Comparação com a Linha de Base (tolerância: "
+                + String.format("%.1f", thresholdPercent) + "%) =====");
+        System.out.println(String.format("%-15s%14s%14s%10s  %s", "Fase (ns/op)", "linha de base", "atual",
+                "variação", "situação"));
+        boolean regression = false;
+        for (PerformanceReport.Comparison comparison : comparisons) {
+            String status;
+            if (comparison.isRegression()) {
+                status = "REGRESSÃO";
+                regression = true;
+            } else if (comparison.getChangePercent() > thresholdPercent) {
+                status = "mais lento, dentro do ruído";
+            } else if (comparison.getChangePercent() < -thresholdPercent) {
+                status = "mais rápido";
+            } else {
+                status = "ok";
+            }
+            System.out.println(String.format("%-15s%14.1f%14.1f%9.1f%%  %s",
+                    phaseLabel(comparison.getCurrent().getName()), comparison.getBaseline().getMeanNanos(),
+                    comparison.getCurrent().getMeanNanos(), comparison.getChangePercent(), status));
+        }
+        System.out.println(regression ? "Regressões de desempenho detectadas!" : "Nenhuma regressão de desempenho.");
+        System.out.println("=============================\n");
+        System.out.flush();
+        return regression;
+    }
+
+    private static String phaseLabel(String phase) {
+        for (int i = 0; i < TRIAL_PHASES.length; i++) {
+            if (TRIAL_PHASES[i].equals(phase)) {
+                return TRIAL_PHASE_LABELS[i];
+            }
+        }
+        return phase;
+    }
+
+    private static String formatNanos(double nanos, int decimals) {
+        return Double.isNaN(nanos) ? "-" : String.format("%." + decimals + "f", nanos);
+    }
+
+    /**
+     * Formats a duration in milliseconds with microsecond precision.
+     */
+    private static String formatMillis(long nanos) {
+        return String.format("%.3f ms", nanos / 1e6);
+    }
+
+    /**
+     * Runs a complete performance analysis on the set.
      * 
      * @param numberOfSearches The number of searches to perform.
      * @param numberOfRemovals The number of removals to perform.
      */
     public void runCompleteAnalysis(int numberOfSearches, int numberOfRemovals) {
-        System.out.println("\n===== Análise de Desempenho da Árvore AVL =====\n");
+        System.out.println("\n===== Análise de Desempenho: " + engineName + " =====\n");
         System.out.flush();
 
         // Insertion test
         long insertionTime = measureInsertionTime();
         System.out.println();
 
+        // Bulk load test
+        long bulkLoadTime = measureBulkLoadTime();
+        System.out.println();
+
         // Search test
         long searchTime = measureSearchTime(numberOfSearches);
         System.out.println();
@@ -209,26 +694,103 @@ public class PerformanceAnalyzer {
         long traversalTime = measureTraversalTime();
         System.out.println();
 
+        // Snapshot traversal test
+        long snapshotTraversalTime = measureSnapshotTraversalTime();
+        System.out.println();
+
         // Removal test
         long removalTime = measureRemovalTime(numberOfRemovals);
         System.out.println();
 
-        // Calculate average times per operation
+        // Batch removal test
+        long batchRemovalTime = measureBatchRemovalTime(numberOfRemovals);
+        System.out.println();
+
+        // Calculate average times per operation, in nanoseconds
         double avgInsertionTime = students.isEmpty() ? 0 : (double) insertionTime / students.size();
         double avgSearchTime = numberOfSearches == 0 ? 0 : (double) searchTime / numberOfSearches;
         double avgRemovalTime = numberOfRemovals == 0 ? 0 : (double) removalTime / numberOfRemovals;
 
         System.out.println("\n===== Resumo de Desempenho =====");
         System.out.println("Número total de estudantes: " + students.size());
-        System.out.println("Tempo total de inserção: " + insertionTime + " ms (média: "
-                + String.format("%.6f", avgInsertionTime) + " ms por estudante)");
-        System.out.println("Tempo total de busca: " + searchTime + " ms (média: " + String.format("%.6f", avgSearchTime)
-                + " ms por busca)");
-        System.out.println("Tempo total de travessia em ordem: " + traversalTime + " ms");
-        System.out.println("Tempo total de remoção: " + removalTime + " ms (média: "
-                + String.format("%.6f", avgRemovalTime) + " ms por remoção)");
+        System.out.println("Tempo total de inserção: " + formatMillis(insertionTime) + " (média: "
+                + String.format("%.0f", avgInsertionTime) + " ns por estudante)");
+        System.out.println("Tempo total de carga em lote: " + formatMillis(bulkLoadTime));
+        System.out.println("Tempo total de busca: " + formatMillis(searchTime) + " (média: "
+                + String.format("%.0f", avgSearchTime) + " ns por busca)");
+        System.out.println("Tempo total de travessia em ordem: " + formatMillis(traversalTime));
+        System.out.println("Tempo total de travessia de snapshot: " + formatMillis(snapshotTraversalTime));
+        System.out.println("Tempo total de remoção: " + formatMillis(removalTime) + " (média: "
+                + String.format("%.0f", avgRemovalTime) + " ns por remoção)");
+        System.out.println("Tempo total de remoção em lote: " + formatMillis(batchRemovalTime));
 
         System.out.println("=============================\n");
         System.out.flush();
+
+        if (recordMetrics) {
+            TreeMetrics metrics = recordMetrics(numberOfSearches, numberOfRemovals);
+            if (metrics != null) {
+                printMetrics(metrics.snapshot());
+            }
+        }
+    }
+
+    /**
+     * Replays the insertions, searches and removals of the analysis, untimed, on a new tree
+     * of the engine with metrics enabled.
+     * 
+     * @return The metrics of the tree, or null if the engine is not an AVL tree or metrics
+     *         are turned off with -Davl.metrics=false.
+     */
+    private TreeMetrics recordMetrics(int numberOfSearches, int numberOfRemovals) {
+        OrderedSet<Student> set = engine.get();
+        if (!(set instanceof AVLTree)) {
+            return null;
+        }
+        // Also exposed over JMX while the application runs
+        TreeMetrics metrics = ((AVLTree<Student>) set).enableMetrics(engineName);
+        if (metrics == null || students.isEmpty()) {
+            return metrics;
+        }
+        Random replay = new Random(seed);
+        for (Student student : students) {
+            set.insert(student);
+        }
+        for (int i = 0; i < numberOfSearches; i++) {
+            set.search(students.get(replay.nextInt(students.size())));
+        }
+        int actualRemovals = Math.min(numberOfRemovals, students.size());
+        for (int i = 0; i < actualRemovals; i++) {
+            set.remove(students.get(i));
+        }
+        return metrics;
+    }
+
+    /**
+     * Prints the metrics recorded by a tree: comparisons, rotations,
+     * path lengths and the latency percentiles of each operation.
+     * 
+     * @param snapshot The metrics to print.
+     */
+    public void printMetrics(TreeMetrics.Snapshot snapshot) {
+        System.out.println("===== Métricas da Árvore: " + engineName + " =====");
+        System.out.println("Comparações: " + snapshot.getComparisons());
+        System.out.println("Rotações: " + snapshot.getLeftRotations() + " à esquerda, "
+                + snapshot.getRightRotations() + " à direita");
+        System.out.println("Caminho médio: " + String.format("%.2f", snapshot.getAveragePathLength())
+                + " nós (máximo: " + snapshot.getMaxDepth() + ")");
+        System.out.println("Altura atual: " + snapshot.getHeight() + " com " + snapshot.getSize() + " estudantes");
+        System.out.println(String.format("%-12s%10s%10s%10s%10s%10s", "Latência", "operações",
+                "p50 ns", "p99 ns", "p99,9 ns", "máx ns"));
+        printLatency("Inserção", snapshot.getInsertLatency());
+        printLatency("Busca", snapshot.getSearchLatency());
+        printLatency("Remoção", snapshot.getRemoveLatency());
+        System.out.println("=============================\n");
+        System.out.flush();
+    }
+
+    private static void printLatency(String operation, LatencyHistogram.Snapshot latency) {
+        System.out.println(String.format("%-12s%10d%10d%10d%10d%10d", operation, latency.getCount(),
+                latency.getP50(), latency.getP99(), latency.getP999(), latency.getMax()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,374 @@
+package src;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Results of the repeated trials of {@link PerformanceAnalyzer#runTrials}: for every phase of
+ * the workload, the mean time per operation with its confidence interval and, for the phases
+ * timed operation by operation, the latency percentiles of a {@link LatencyHistogram}. A report can be written as JSON or
+ * CSV, read back, and compared against a baseline report to flag regressions.
+ */
+public class PerformanceReport {
+    /**
+     * Confidence level of the intervals of the mean. Lower than the 99.9% of
+     * {@link BenchmarkRunner}, since a report has only a few iterations of a single JVM.
+     */
+    public static final double CONFIDENCE = 0.99;
+
+    private static final String CSV_HEADER =
+            "engine,seed,warmupIterations,measurementIterations,phase,operations,meanNanos,ciNanos,"
+                    + "p50Nanos,p90Nanos,p99Nanos,p999Nanos";
+    private static final Pattern JSON_FIELD =
+            Pattern.compile("\"(\\w+)\"\\s*:\\s*(\"(?:[^\"\\\\]|\\\\.)*\"|[-+.\\w]+)");
+    private static final Pattern JSON_OBJECT = Pattern.compile("\\{[^{}\\[\\]]*\\}");
+
+    /**
+     * Timing of one phase of the workload.
+     */
+    public static class Phase {
+        private final String name;
+        private final int operations;
+        private final double meanNanos;
+        private final double ciNanos;
+        private final double p50Nanos;
+        private final double p90Nanos;
+        private final double p99Nanos;
+        private final double p999Nanos;
+
+        public Phase(String name, int operations, double meanNanos, double ciNanos,
+                     double p50Nanos, double p90Nanos, double p99Nanos, double p999Nanos) {
+            this.name = name;
+            this.operations = operations;
+            this.meanNanos = meanNanos;
+            this.ciNanos = ciNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.p999Nanos = p999Nanos;
+        }
+
+        /**
+         * Summarizes the measured iterations of a phase.
+         * @param name The name of the phase.
+         * @param operations The number of operations of one iteration.
+         * @param iterationMeans The mean nanoseconds per operation of every iteration.
+         * @param latencies The latencies of the operations of every iteration, or null if the
+         *                  operations were not timed one by one.
+         * @return The timing of the phase.
+         */
+        static Phase of(String name, int operations, double[] iterationMeans, LatencyHistogram.Snapshot latencies) {
+            boolean timed = latencies != null && latencies.getCount() > 0;
+            return new Phase(name, operations, Statistics.mean(iterationMeans),
+                    Statistics.confidenceHalfWidth(iterationMeans, CONFIDENCE),
+                    timed ? latencies.getP50() : Double.NaN, timed ? latencies.percentile(90) : Double.NaN,
+                    timed ? latencies.getP99() : Double.NaN, timed ? latencies.getP999() : Double.NaN);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getOperations() {
+            return operations;
+        }
+
+        public double getMeanNanos() {
+            return meanNanos;
+        }
+
+        /**
+         * Gets the half-width of the confidence interval of the mean.
+         * @return The half-width in nanoseconds, or NaN with fewer than two iterations.
+         */
+        public double getCiNanos() {
+            return ciNanos;
+        }
+
+        public double getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public double getP90Nanos() {
+            return p90Nanos;
+        }
+
+        public double getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public double getP999Nanos() {
+            return p999Nanos;
+        }
+    }
+
+    /**
+     * Change of one phase between a baseline and a current report.
+     */
+    public static class Comparison {
+        private final Phase baseline;
+        private final Phase current;
+        private final boolean regression;
+
+        Comparison(Phase baseline, Phase current, double thresholdPercent) {
+            this.baseline = baseline;
+            this.current = current;
+            // Slower by more than the threshold, and by more than the interval of the difference
+            // of the two means, which combines the intervals of both runs
+            double slowdown = current.meanNanos - baseline.meanNanos;
+            double noise = Math.hypot(ciOrZero(baseline), ciOrZero(current));
+            this.regression = slowdown > baseline.meanNanos * thresholdPercent / 100 && slowdown > noise;
+        }
+
+        private static double ciOrZero(Phase phase) {
+            return Double.isNaN(phase.ciNanos) ? 0 : phase.ciNanos;
+        }
+
+        public Phase getBaseline() {
+            return baseline;
+        }
+
+        public Phase getCurrent() {
+            return current;
+        }
+
+        /**
+         * Gets the relative change of the mean.
+         * @return The change in percent, positive when the current run is slower.
+         */
+        public double getChangePercent() {
+            return (current.meanNanos / baseline.meanNanos - 1) * 100;
+        }
+
+        public boolean isRegression() {
+            return regression;
+        }
+    }
+
+    private final String engineName;
+    private final long seed;
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final List<Phase> phases;
+
+    public PerformanceReport(String engineName, long seed, int warmupIterations, int measurementIterations,
+                             List<Phase> phases) {
+        this.engineName = engineName;
+        this.seed = seed;
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.phases = Collections.unmodifiableList(new ArrayList<>(phases));
+    }
+
+    public String getEngineName() {
+        return engineName;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public int getMeasurementIterations() {
+        return measurementIterations;
+    }
+
+    public List<Phase> getPhases() {
+        return phases;
+    }
+
+    /**
+     * Gets the timing of a phase.
+     * @param name The name of the phase.
+     * @return The phase, or null if the report has no phase with that name.
+     */
+    public Phase getPhase(String name) {
+        for (Phase phase : phases) {
+            if (phase.name.equals(name)) {
+                return phase;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares this report against a baseline, phase by phase. A phase regresses when its mean
+     * is slower than the baseline mean by more than the threshold and by more than the
+     * confidence interval of the difference of the means, taken as the root of the sum of the
+     * squares of the two intervals. Phases missing from the baseline are skipped.
+     * @param baseline The report of the reference run.
+     * @param thresholdPercent The slowdown tolerated, in percent.
+     * @return The comparison of every phase found in both reports.
+     */
+    public List<Comparison> compareTo(PerformanceReport baseline, double thresholdPercent) {
+        List<Comparison> comparisons = new ArrayList<>();
+        for (Phase phase : phases) {
+            Phase reference = baseline.getPhase(phase.name);
+            if (reference != null) {
+                comparisons.add(new Comparison(reference, phase, thresholdPercent));
+            }
+        }
+        return comparisons;
+    }
+
+    /**
+     * Writes the report as a JSON object.
+     * @param path The path of the file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeJson(Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"engine\": " + quote(engineName) + ",\n");
+            out.write("  \"seed\": " + seed + ",\n");
+            out.write("  \"warmupIterations\": " + warmupIterations + ",\n");
+            out.write("  \"measurementIterations\": " + measurementIterations + ",\n");
+            out.write("  \"confidence\": " + CONFIDENCE + ",\n");
+            out.write("  \"phases\": [\n");
+            for (int i = 0; i < phases.size(); i++) {
+                Phase phase = phases.get(i);
+                out.write("    {\"phase\": " + quote(phase.name)
+                        + ", \"operations\": " + phase.operations
+                        + ", \"meanNanos\": " + number(phase.meanNanos)
+                        + ", \"ciNanos\": " + number(phase.ciNanos)
+                        + ", \"p50Nanos\": " + number(phase.p50Nanos)
+                        + ", \"p90Nanos\": " + number(phase.p90Nanos)
+                        + ", \"p99Nanos\": " + number(phase.p99Nanos)
+                        + ", \"p999Nanos\": " + number(phase.p999Nanos) + "}"
+                        + (i + 1 < phases.size() ? ",\n" : "\n"));
+            }
+            out.write("  ]\n");
+            out.write("}\n");
+        }
+    }
+
+    /**
+     * Writes the report as CSV, one line per phase, with the run settings repeated on every
+     * line so that the files of several runs can be concatenated.
+     * @param path The path of the file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeCsv(Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(CSV_HEADER + "\n");
+            for (Phase phase : phases) {
+                out.write(String.join(",", csvField(engineName), Long.toString(seed),
+                        Integer.toString(warmupIterations), Integer.toString(measurementIterations),
+                        csvField(phase.name), Integer.toString(phase.operations),
+                        csvNumber(phase.meanNanos), csvNumber(phase.ciNanos), csvNumber(phase.p50Nanos),
+                        csvNumber(phase.p90Nanos), csvNumber(phase.p99Nanos), csvNumber(phase.p999Nanos)) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Reads a report written by {@link #writeJson} or, for a file whose name ends in ".csv",
+     * by {@link #writeCsv}.
+     * @param path The path of the file.
+     * @return The report.
+     * @throws IOException If an I/O error occurs, or the file is not a valid report.
+     */
+    public static PerformanceReport read(Path path) throws IOException {
+        String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        try {
+            return path.toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? parseCsv(content) : parseJson(content);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid performance report " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static PerformanceReport parseJson(String content) {
+        int phasesStart = content.indexOf("\"phases\"");
+        if (phasesStart < 0) {
+            throw new IllegalArgumentException("no phases");
+        }
+        Map<String, String> header = fields(content.substring(0, phasesStart));
+        List<Phase> phases = new ArrayList<>();
+        Matcher object = JSON_OBJECT.matcher(content);
+        object.region(phasesStart, content.length());
+        while (object.find()) {
+            Map<String, String> fields = fields(object.group());
+            phases.add(new Phase(fields.get("phase"), Integer.parseInt(fields.get("operations")),
+                    parseNumber(fields.get("meanNanos")), parseNumber(fields.get("ciNanos")),
+                    parseNumber(fields.get("p50Nanos")), parseNumber(fields.get("p90Nanos")),
+                    parseNumber(fields.get("p99Nanos")), parseNumber(fields.get("p999Nanos"))));
+        }
+        return new PerformanceReport(header.get("engine"), Long.parseLong(header.get("seed")),
+                Integer.parseInt(header.get("warmupIterations")),
+                Integer.parseInt(header.get("measurementIterations")), phases);
+    }
+
+    private static Map<String, String> fields(String json) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        Matcher field = JSON_FIELD.matcher(json);
+        while (field.find()) {
+            String value = field.group(2);
+            if (value.startsWith("\"")) {
+                value = value.substring(1, value.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+            }
+            fields.put(field.group(1), value);
+        }
+        return fields;
+    }
+
+    private static PerformanceReport parseCsv(String content) {
+        String[] lines = content.split("\r?\n");
+        if (lines.length < 2 || !lines[0].equals(CSV_HEADER)) {
+            throw new IllegalArgumentException("unexpected header");
+        }
+        List<Phase> phases = new ArrayList<>();
+        String[] first = null;
+        for (int i = 1; i < lines.length; i++) {
+            if (lines[i].isEmpty()) {
+                continue;
+            }
+            String[] values = lines[i].split(",", -1);
+            if (first == null) {
+                first = values;
+            }
+            phases.add(new Phase(values[4], Integer.parseInt(values[5]), parseNumber(values[6]),
+                    parseNumber(values[7]), parseNumber(values[8]), parseNumber(values[9]),
+                    parseNumber(values[10]), parseNumber(values[11])));
+        }
+        if (first == null) {
+            throw new IllegalArgumentException("no phases");
+        }
+        return new PerformanceReport(first[0], Long.parseLong(first[1]), Integer.parseInt(first[2]),
+                Integer.parseInt(first[3]), phases);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String csvField(String value) {
+        // Names never need quoting in practice; commas would break the columns
+        return value.replace(',', ';');
+    }
+
+    private static String csvNumber(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static double parseNumber(String value) {
+        return value == null || value.isEmpty() || value.equals("null") ? Double.NaN : Double.parseDouble(value);
+    }
+}
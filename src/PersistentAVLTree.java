@@ -0,0 +1,355 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persistent AVL tree. Nodes are immutable: insert and remove copy only the nodes on the
+ * path they change (O(log n) new nodes) and publish the new root atomically, so every root
+ * ever published stays a valid, unchanging version of the tree. {@link #snapshot()} is
+ * therefore O(1), and a snapshot can be searched and traversed without locks or copying
+ * while other threads keep updating the tree.
+ * @param <T> The type of data stored in the tree, must be comparable.
+ */
+public class PersistentAVLTree<T extends Comparable<T>> {
+    private static final int MAX_HEIGHT = 64;
+
+    /**
+     * Immutable node. The subtree size is kept so a snapshot knows its size in O(1).
+     */
+    private static final class Node<T> {
+        final T data;
+        final Node<T> left;
+        final Node<T> right;
+        final int height;
+        final int size;
+
+        Node(T data, Node<T> left, Node<T> right) {
+            this.data = data;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private final AtomicReference<Node<T>> root = new AtomicReference<>();
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Gets the size of the current version of the tree.
+     * @return The number of nodes in the tree.
+     */
+    public int size() {
+        return size(root.get());
+    }
+
+    /**
+     * Checks if the tree is empty.
+     * @return true if the tree is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return root.get() == null;
+    }
+
+    /**
+     * Inserts a value into the tree. Duplicate values are ignored.
+     * Concurrent writers retry on a newer version if another write was published first.
+     * @param value The value to insert.
+     */
+    public void insert(T value) {
+        while (true) {
+            Node<T> current = root.get();
+            Node<T> updated = insert(current, value);
+            if (updated == current || root.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds every value of a collection. An empty tree is built directly from the sorted
+     * values in linear time after the sort; otherwise the values are inserted one by one.
+     * @param values The values to add; for duplicates, the first occurrence is kept.
+     */
+    public void bulkLoad(Collection<? extends T> values) {
+        if (root.get() != null) {
+            insertAll(values);
+            return;
+        }
+        Object[] sorted = values.toArray();
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (Object value : sorted) {
+            if (unique == 0 || cast(sorted[unique - 1]).compareTo(cast(value)) != 0) {
+                sorted[unique++] = value;
+            }
+        }
+        Node<T> built = build(sorted, 0, unique - 1);
+        if (!root.compareAndSet(null, built)) {
+            // Another writer filled the tree while it was being built
+            insertAll(values);
+        }
+    }
+
+    private void insertAll(Collection<? extends T> values) {
+        for (T value : values) {
+            insert(value);
+        }
+    }
+
+    /**
+     * Searches for a value in the current version of the tree.
+     * @param value The value to search for.
+     * @return true if the value is found, false otherwise.
+     */
+    public boolean search(T value) {
+        return search(root.get(), value);
+    }
+
+    /**
+     * Removes a value from the tree.
+     * @param value The value to remove.
+     * @return true if the value was removed, false if it wasn't found.
+     */
+    public boolean remove(T value) {
+        while (true) {
+            Node<T> current = root.get();
+            Node<T> updated = remove(current, value);
+            if (updated == current) {
+                return false;
+            }
+            if (root.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Performs an inorder traversal of the current version of the tree.
+     * @return A list of all elements in sorted order.
+     */
+    public List<T> inorderTraversal() {
+        return snapshot().inorderTraversal();
+    }
+
+    /**
+     * Takes a read-only view of the current version of the tree in O(1).
+     * Later updates to the tree are never visible through the snapshot.
+     * @return The snapshot.
+     */
+    public Snapshot<T> snapshot() {
+        return new Snapshot<>(root.get());
+    }
+
+    /**
+     * Immutable version of a {@link PersistentAVLTree}, safe to share between threads.
+     * @param <T> The type of data stored in the tree.
+     */
+    public static final class Snapshot<T extends Comparable<T>> implements Iterable<T> {
+        private final Node<T> root;
+
+        private Snapshot(Node<T> root) {
+            this.root = root;
+        }
+
+        /**
+         * Gets the size of this version.
+         * @return The number of elements.
+         */
+        public int size() {
+            return PersistentAVLTree.size(root);
+        }
+
+        /**
+         * Checks if this version is empty.
+         * @return true if it has no elements.
+         */
+        public boolean isEmpty() {
+            return root == null;
+        }
+
+        /**
+         * Searches for a value in this version.
+         * @param value The value to search for.
+         * @return true if the value is found, false otherwise.
+         */
+        public boolean search(T value) {
+            return PersistentAVLTree.search(root, value);
+        }
+
+        /**
+         * Copies this version into a list.
+         * @return A list of all elements in sorted order.
+         */
+        public List<T> inorderTraversal() {
+            List<T> result = new ArrayList<>(size());
+            for (T value : this) {
+                result.add(value);
+            }
+            return result;
+        }
+
+        /**
+         * Iterates over the elements in sorted order with an explicit stack, without copying.
+         * @return The iterator.
+         */
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                private final Node<T>[] stack = (Node<T>[]) new Node[MAX_HEIGHT];
+                private int top = pushLeft(root, 0);
+
+                private int pushLeft(Node<T> node, int top) {
+                    while (node != null) {
+                        stack[top++] = node;
+                        node = node.left;
+                    }
+                    return top;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return top > 0;
+                }
+
+                @Override
+                public T next() {
+                    if (top == 0) {
+                        throw new NoSuchElementException();
+                    }
+                    Node<T> node = stack[--top];
+                    top = pushLeft(node.right, top);
+                    return node.data;
+                }
+            };
+        }
+    }
+
+    private static <T extends Comparable<T>> boolean search(Node<T> node, T value) {
+        while (node != null) {
+            int compareResult = value.compareTo(node.data);
+            if (compareResult < 0) {
+                node = node.left;
+            } else if (compareResult > 0) {
+                node = node.right;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts a value below a node, copying the nodes on the way down.
+     * @return The new subtree, or the same node if the value was already present.
+     */
+    private Node<T> insert(Node<T> node, T value) {
+        if (node == null) {
+            return new Node<>(value, null, null);
+        }
+        int compareResult = value.compareTo(node.data);
+        if (compareResult < 0) {
+            Node<T> left = insert(node.left, value);
+            return left == node.left ? node : balance(node.data, left, node.right);
+        } else if (compareResult > 0) {
+            Node<T> right = insert(node.right, value);
+            return right == node.right ? node : balance(node.data, node.left, right);
+        }
+        // Duplicate values not allowed
+        return node;
+    }
+
+    /**
+     * Removes a value below a node, copying the nodes on the way down.
+     * @return The new subtree, or the same node if the value wasn't found.
+     */
+    private Node<T> remove(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        int compareResult = value.compareTo(node.data);
+        if (compareResult < 0) {
+            Node<T> left = remove(node.left, value);
+            return left == node.left ? node : balance(node.data, left, node.right);
+        } else if (compareResult > 0) {
+            Node<T> right = remove(node.right, value);
+            return right == node.right ? node : balance(node.data, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        // Node with two children: take the inorder successor's data
+        Node<T> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.data, node.left, removeMin(node.right));
+    }
+
+    private Node<T> removeMin(Node<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.data, removeMin(node.left), node.right);
+    }
+
+    /**
+     * Creates a node from its parts, rotating if the two subtrees differ in height by 2.
+     * Only new nodes are created; the subtrees passed in are never modified.
+     * @return The root of the balanced subtree.
+     */
+    private Node<T> balance(T data, Node<T> left, Node<T> right) {
+        int balance = height(left) - height(right);
+        if (balance > 1) {
+            if (height(left.left) < height(left.right)) {
+                // Left Right Case
+                Node<T> pivot = left.right;
+                return new Node<>(pivot.data, new Node<>(left.data, left.left, pivot.left),
+                        new Node<>(data, pivot.right, right));
+            }
+            // Left Left Case
+            return new Node<>(left.data, left.left, new Node<>(data, left.right, right));
+        }
+        if (balance < -1) {
+            if (height(right.right) < height(right.left)) {
+                // Right Left Case
+                Node<T> pivot = right.left;
+                return new Node<>(pivot.data, new Node<>(data, left, pivot.left),
+                        new Node<>(right.data, pivot.right, right.right));
+            }
+            // Right Right Case
+            return new Node<>(right.data, new Node<>(data, left, right.left), right.right);
+        }
+        return new Node<>(data, left, right);
+    }
+
+    private Node<T> build(Object[] sorted, int low, int high) {
+        if (low > high) {
+            return null;
+        }
+        int middle = (low + high) >>> 1;
+        return new Node<>(cast(sorted[middle]), build(sorted, low, middle - 1), build(sorted, middle + 1, high));
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object value) {
+        return (T) value;
+    }
+}
@@ -0,0 +1,134 @@
+package src;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Count, sum, minimum, maximum, mean and variance of the columns of an {@link AggregateSpec}
+ * over the elements of a range, as returned by {@link AVLTree#aggregate}.
+ */
+public class RangeAggregate {
+    private final List<String> names;
+    private final double[] values;
+    private long count;
+
+    RangeAggregate(List<String> names) {
+        this.names = names;
+        this.values = new double[names.size() * AggregateSpec.SLOTS];
+        for (int i = 0; i < values.length; i += AggregateSpec.SLOTS) {
+            values[i + AggregateSpec.MIN] = Double.POSITIVE_INFINITY;
+            values[i + AggregateSpec.MAX] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Adds the aggregates of a whole subtree.
+     */
+    void addSubtree(double[] aggregates, int size) {
+        if (size == 0) {
+            return;
+        }
+        count += size;
+        for (int i = 0; i < values.length; i += AggregateSpec.SLOTS) {
+            values[i + AggregateSpec.SUM] += aggregates[i + AggregateSpec.SUM];
+            values[i + AggregateSpec.MIN] = Math.min(values[i + AggregateSpec.MIN], aggregates[i + AggregateSpec.MIN]);
+            values[i + AggregateSpec.MAX] = Math.max(values[i + AggregateSpec.MAX], aggregates[i + AggregateSpec.MAX]);
+            values[i + AggregateSpec.SUM_OF_SQUARES] += aggregates[i + AggregateSpec.SUM_OF_SQUARES];
+        }
+    }
+
+    /**
+     * Adds the column values of a single element.
+     */
+    void addValues(double[] columnValues) {
+        count++;
+        for (int c = 0; c < columnValues.length; c++) {
+            int i = c * AggregateSpec.SLOTS;
+            double value = columnValues[c];
+            values[i + AggregateSpec.SUM] += value;
+            values[i + AggregateSpec.MIN] = Math.min(values[i + AggregateSpec.MIN], value);
+            values[i + AggregateSpec.MAX] = Math.max(values[i + AggregateSpec.MAX], value);
+            values[i + AggregateSpec.SUM_OF_SQUARES] += value * value;
+        }
+    }
+
+    /**
+     * Gets the number of elements in the range.
+     * @return The count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the sum of a column.
+     * @param column The name of the column.
+     * @return The sum, 0 for an empty range.
+     */
+    public double getSum(String column) {
+        return values[slot(column) + AggregateSpec.SUM];
+    }
+
+    /**
+     * Gets the minimum of a column.
+     * @param column The name of the column.
+     * @return The minimum, or NaN for an empty range.
+     */
+    public double getMin(String column) {
+        return count == 0 ? Double.NaN : values[slot(column) + AggregateSpec.MIN];
+    }
+
+    /**
+     * Gets the maximum of a column.
+     * @param column The name of the column.
+     * @return The maximum, or NaN for an empty range.
+     */
+    public double getMax(String column) {
+        return count == 0 ? Double.NaN : values[slot(column) + AggregateSpec.MAX];
+    }
+
+    /**
+     * Gets the mean of a column.
+     * @param column The name of the column.
+     * @return The mean, or NaN for an empty range.
+     */
+    public double getMean(String column) {
+        return count == 0 ? Double.NaN : getSum(column) / count;
+    }
+
+    /**
+     * Gets the population variance of a column, from its sum and sum of squares.
+     * @param column The name of the column.
+     * @return The variance, or NaN for an empty range.
+     */
+    public double getVariance(String column) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double mean = getMean(column);
+        // Rounding can make the difference slightly negative when all values are equal
+        return Math.max(0, values[slot(column) + AggregateSpec.SUM_OF_SQUARES] / count - mean * mean);
+    }
+
+    /**
+     * Gets the population standard deviation of a column.
+     * @param column The name of the column.
+     * @return The standard deviation, or NaN for an empty range.
+     */
+    public double getStdDev(String column) {
+        return Math.sqrt(getVariance(column));
+    }
+
+    private int slot(String column) {
+        int index = names.indexOf(column);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        return index * AggregateSpec.SLOTS;
+    }
+
+    @Override
+    public String toString() {
+        return "RangeAggregate{count=" + count + ", columns=" + names + ", values=" + Arrays.toString(values) + '}';
+    }
+}
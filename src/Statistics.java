@@ -0,0 +1,187 @@
+package src;
+
+/**
+ * Small collection of descriptive statistics used by the benchmark harness.
+ */
+public final class Statistics {
+
+    private Statistics() {
+    }
+
+    /**
+     * Computes the arithmetic mean of the samples.
+     * @param samples The samples.
+     * @return The mean, or NaN if there are no samples.
+     */
+    public static double mean(double[] samples) {
+        if (samples.length == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (double sample : samples) {
+            sum += sample;
+        }
+        return sum / samples.length;
+    }
+
+    /**
+     * Computes the sample standard deviation (n - 1 denominator).
+     * @param samples The samples.
+     * @return The standard deviation, or NaN if there are fewer than two samples.
+     */
+    public static double stdev(double[] samples) {
+        if (samples.length < 2) {
+            return Double.NaN;
+        }
+        double mean = mean(samples);
+        double squares = 0;
+        for (double sample : samples) {
+            double delta = sample - mean;
+            squares += delta * delta;
+        }
+        return Math.sqrt(squares / (samples.length - 1));
+    }
+
+    /**
+     * Computes the half-width of the two-sided confidence interval of the mean,
+     * using the Student t distribution.
+     * @param samples The samples.
+     * @param confidence The confidence level, e.g. 0.999.
+     * @return The half-width of the interval, or NaN if there are fewer than two samples.
+     */
+    public static double confidenceHalfWidth(double[] samples, double confidence) {
+        if (samples.length < 2) {
+            return Double.NaN;
+        }
+        double t = studentTQuantile(1 - (1 - confidence) / 2, samples.length - 1);
+        return t * stdev(samples) / Math.sqrt(samples.length);
+    }
+
+    /**
+     * Gets a percentile from an already sorted array, interpolating between ranks.
+     * @param sorted The samples, sorted in ascending order.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The value at the percentile, or NaN if the array is empty.
+     */
+    public static double percentile(double[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        double rank = percentile / 100.0 * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        if (lower == upper) {
+            return sorted[lower];
+        }
+        return sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    /**
+     * Computes the quantile of the Student t distribution by bisecting its CDF.
+     * @param p The cumulative probability, between 0 and 1.
+     * @param degreesOfFreedom The degrees of freedom.
+     * @return The value t such that P(T <= t) = p.
+     */
+    public static double studentTQuantile(double p, int degreesOfFreedom) {
+        if (p == 0.5) {
+            return 0;
+        }
+        if (p < 0.5) {
+            return -studentTQuantile(1 - p, degreesOfFreedom);
+        }
+        double low = 0;
+        double high = 1;
+        while (studentTCdf(high, degreesOfFreedom) < p) {
+            high *= 2;
+        }
+        for (int i = 0; i < 100; i++) {
+            double mid = (low + high) / 2;
+            if (studentTCdf(mid, degreesOfFreedom) < p) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * Computes the CDF of the Student t distribution.
+     * @param t The value.
+     * @param degreesOfFreedom The degrees of freedom.
+     * @return P(T <= t).
+     */
+    public static double studentTCdf(double t, int degreesOfFreedom) {
+        double x = degreesOfFreedom / (degreesOfFreedom + t * t);
+        double tail = 0.5 * regularizedIncompleteBeta(x, degreesOfFreedom / 2.0, 0.5);
+        return t >= 0 ? 1 - tail : tail;
+    }
+
+    /**
+     * Computes the regularized incomplete beta function I_x(a, b).
+     */
+    private static double regularizedIncompleteBeta(double x, double a, double b) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b)
+                + a * Math.log(x) + b * Math.log(1 - x));
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaContinuedFraction(x, a, b) / a;
+        }
+        return 1 - front * betaContinuedFraction(1 - x, b, a) / b;
+    }
+
+    /**
+     * Evaluates the continued fraction of the incomplete beta function (modified Lentz).
+     */
+    private static double betaContinuedFraction(double x, double a, double b) {
+        final double tiny = 1e-300;
+        double c = 1;
+        double d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double result = d;
+        for (int m = 1; m <= 300; m++) {
+            int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+            d = 1 + aa * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + aa / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            result *= d * c;
+
+            aa = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+            d = 1 + aa * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + aa / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            double delta = d * c;
+            result *= delta;
+            if (Math.abs(delta - 1) < 1e-15) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes ln(Gamma(x)) with the Lanczos approximation.
+     */
+    private static double logGamma(double x) {
+        final double[] coefficients = {
+                76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5
+        };
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+}
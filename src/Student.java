@@ -2,9 +2,18 @@ package src;
 
 /**
  * Represents a student record from the dataset.
+ * Students are ordered by id. Ids of the form "S&lt;digits&gt;" are parsed once, when the record
+ * is created, into a numeric key, so they compare with a single long comparison and in
+ * numeric order (S2000 before S10000); any other id sorts after all of them, by String order.
  */
 public class Student implements Comparable<Student> {
+    /**
+     * Key of the ids that are not of the form "S&lt;digits&gt;", greater than every numeric id.
+     */
+    static final long NON_NUMERIC_ID = Long.MAX_VALUE;
+
     private String studentId;
+    private final long idKey;
     private int age;
     private String gender;
     private double studyHoursPerDay;
@@ -26,6 +35,7 @@ public class Student implements Comparable<Student> {
                    String dietQuality, int exerciseFrequency, String parentalEducationLevel, String internetQuality,
                    int mentalHealthRating, boolean extracurricularParticipation, double examScore) {
         this.studentId = studentId;
+        this.idKey = idKey(studentId);
         this.age = age;
         this.gender = gender;
         this.studyHoursPerDay = studyHoursPerDay;
@@ -47,6 +57,14 @@ public class Student implements Comparable<Student> {
         return studentId;
     }
 
+    /**
+     * Gets the numeric sort key of the id.
+     * @return The number of an id "S&lt;digits&gt;", or Long.MAX_VALUE for an id of another form.
+     */
+    public long getIdKey() {
+        return idKey;
+    }
+
     public int getAge() {
         return age;
     }
@@ -109,8 +127,57 @@ public class Student implements Comparable<Student> {
 
     @Override
     public int compareTo(Student other) {
-        // Comparing students by their ID
-        return this.studentId.compareTo(other.studentId);
+        // Comparing students by their ID, as numbers unless both ids are non-numeric
+        int result = Long.compare(idKey, other.idKey);
+        if (result != 0 || idKey != NON_NUMERIC_ID) {
+            return result;
+        }
+        return studentId.compareTo(other.studentId);
+    }
+
+    /**
+     * Compares two ids in the order of {@link #compareTo}, without creating students.
+     * @param a The first id.
+     * @param b The second id.
+     * @return A negative number, zero or a positive number as a sorts before, with or after b.
+     */
+    public static int compareIds(String a, String b) {
+        long keyA = idKey(a);
+        long keyB = idKey(b);
+        int result = Long.compare(keyA, keyB);
+        if (result != 0 || keyA != NON_NUMERIC_ID) {
+            return result;
+        }
+        return a.compareTo(b);
+    }
+
+    /**
+     * Gets the sort key of an id.
+     * @return The number of an id "S&lt;digits&gt;", or NON_NUMERIC_ID.
+     */
+    static long idKey(String id) {
+        long number = parseId(id);
+        return number >= 0 ? number : NON_NUMERIC_ID;
+    }
+
+    /**
+     * Parses an id of the form "S" followed by 1 to 18 digits without leading zeros.
+     * @return The number, or -1 if the id has another form.
+     */
+    static long parseId(String id) {
+        int length = id == null ? 0 : id.length();
+        if (length < 2 || length > 19 || id.charAt(0) != 'S' || (id.charAt(1) == '0' && length > 2)) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 1; i < length; i++) {
+            int digit = id.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
     }
 
     @Override
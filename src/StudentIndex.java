@@ -0,0 +1,227 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Set of students indexed by id and by any number of numeric columns.
+ * The primary index is an {@link AVLMap} from the numeric key of the id to record, so a
+ * student is looked up by its id alone with one parse of the id and long comparisons during
+ * the descent; the rare ids that are not "S&lt;digits&gt;" are kept in a small map by String.
+ * Each secondary index is an {@link AVLTree} over the same records, ordered by its
+ * column with ties broken by id. Insertions
+ * and removals update all of them, so a query such as "exam score between 90 and 100"
+ * is a logarithmic seek in one index instead of a scan of every student.
+ */
+public class StudentIndex {
+    public static final String EXAM_SCORE = "examScore";
+    public static final String AGE = "age";
+    public static final String ATTENDANCE_PERCENTAGE = "attendancePercentage";
+
+    private static class SecondaryIndex {
+        private final ToDoubleFunction<Student> key;
+        private final AVLTree<Student> tree;
+
+        SecondaryIndex(ToDoubleFunction<Student> key) {
+            this.key = key;
+            this.tree = new AVLTree<>(Comparator.comparingDouble(key).thenComparing(Comparator.naturalOrder()));
+        }
+
+        /**
+         * Places a student relative to the range [low, high] of the indexed column.
+         */
+        ToIntFunction<Student> range(double low, double high) {
+            return student -> {
+                double value = key.applyAsDouble(student);
+                return Double.compare(value, low) < 0 ? -1 : Double.compare(value, high) > 0 ? 1 : 0;
+            };
+        }
+    }
+
+    private final AVLMap<Long, Student> byId = new AVLMap<>();
+    private final AVLMap<String, Student> byOtherId = new AVLMap<>();
+    private final Map<String, SecondaryIndex> indexes = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty set with indexes on exam score, age and attendance percentage.
+     */
+    public StudentIndex() {
+        addIndex(EXAM_SCORE, Student::getExamScore);
+        addIndex(AGE, Student::getAge);
+        addIndex(ATTENDANCE_PERCENTAGE, Student::getAttendancePercentage);
+    }
+
+    /**
+     * Adds a secondary index on a numeric column, filled with the students already in the set.
+     * @param name The name of the index, used by the queries.
+     * @param key The column to index.
+     * @throws IllegalArgumentException if an index with that name already exists.
+     */
+    public void addIndex(String name, ToDoubleFunction<Student> key) {
+        if (indexes.containsKey(name)) {
+            throw new IllegalArgumentException("Index already exists: " + name);
+        }
+        SecondaryIndex index = new SecondaryIndex(key);
+        if (!isEmpty()) {
+            index.tree.bulkLoad(inorderTraversal());
+        }
+        indexes.put(name, index);
+    }
+
+    /**
+     * Gets the number of students.
+     * @return The number of students in the set.
+     */
+    public int size() {
+        return byId.size() + byOtherId.size();
+    }
+
+    /**
+     * Checks if the set is empty.
+     * @return true if the set is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return byId.isEmpty() && byOtherId.isEmpty();
+    }
+
+    /**
+     * Adds a student to every index. A student whose id is already present is ignored.
+     * @param student The student to add.
+     * @return true if the student was added.
+     */
+    public boolean insert(Student student) {
+        if (!putIfAbsent(student)) {
+            return false;
+        }
+        for (SecondaryIndex index : indexes.values()) {
+            index.tree.insert(student);
+        }
+        return true;
+    }
+
+    /**
+     * Adds every student of a collection with one bulk load per secondary index.
+     * As with {@link #insert}, students whose id is already present are ignored.
+     * @param students The students to add.
+     */
+    public void bulkLoad(Collection<Student> students) {
+        List<Student> added = new ArrayList<>(students.size());
+        for (Student student : students) {
+            if (putIfAbsent(student)) {
+                added.add(student);
+            }
+        }
+        for (SecondaryIndex index : indexes.values()) {
+            index.tree.bulkLoad(added);
+        }
+    }
+
+    /**
+     * Removes the student with the same id from every index.
+     * @param student The student to remove; only its id is used.
+     * @return true if a student was removed, false if the id wasn't found.
+     */
+    public boolean remove(Student student) {
+        return remove(student.getStudentId()) != null;
+    }
+
+    /**
+     * Removes the student with an id from every index.
+     * @param studentId The id of the student.
+     * @return The removed student, or null if the id wasn't found.
+     */
+    public Student remove(String studentId) {
+        // The secondary indexes must be searched with the stored values
+        long idKey = Student.idKey(studentId);
+        Student stored = idKey == Student.NON_NUMERIC_ID ? byOtherId.remove(studentId) : byId.remove(idKey);
+        if (stored != null) {
+            for (SecondaryIndex index : indexes.values()) {
+                index.tree.remove(stored);
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Searches for a student by id.
+     * @param student The student to search for; only its id is used.
+     * @return true if a student with that id is in the set.
+     */
+    public boolean search(Student student) {
+        long idKey = student.getIdKey();
+        return idKey == Student.NON_NUMERIC_ID ? byOtherId.containsKey(student.getStudentId())
+                : byId.containsKey(idKey);
+    }
+
+    /**
+     * Gets the student with an id, without building a probe Student.
+     * @param studentId The id of the student.
+     * @return The student, or null if the id wasn't found.
+     */
+    public Student get(String studentId) {
+        long idKey = Student.idKey(studentId);
+        return idKey == Student.NON_NUMERIC_ID ? byOtherId.get(studentId) : byId.get(idKey);
+    }
+
+    /**
+     * Gets the students whose indexed column lies between two values, both included.
+     * @param indexName The name of the index.
+     * @param low The lower bound.
+     * @param high The upper bound.
+     * @return The students in the range, ordered by the column and then by id.
+     */
+    public List<Student> rangeQuery(String indexName, double low, double high) {
+        List<Student> result = new ArrayList<>();
+        SecondaryIndex index = index(indexName);
+        index.tree.forEachInRange(index.range(low, high), result::add);
+        return result;
+    }
+
+    /**
+     * Counts the students whose indexed column lies between two values, both included, in O(log n).
+     * @param indexName The name of the index.
+     * @param low The lower bound.
+     * @param high The upper bound.
+     * @return The number of students in the range.
+     */
+    public int countInRange(String indexName, double low, double high) {
+        SecondaryIndex index = index(indexName);
+        return index.tree.countInRange(index.range(low, high));
+    }
+
+    /**
+     * Gets the students ordered by id.
+     * @return A list of all students in id order.
+     */
+    public List<Student> inorderTraversal() {
+        // Non-numeric ids sort after every numeric id
+        List<Student> result = byId.values();
+        byOtherId.forEach((id, student) -> result.add(student));
+        return result;
+    }
+
+    /**
+     * Adds a student to the primary index unless its id is already present.
+     */
+    private boolean putIfAbsent(Student student) {
+        long idKey = student.getIdKey();
+        Student present = idKey == Student.NON_NUMERIC_ID
+                ? byOtherId.putIfAbsent(student.getStudentId(), student)
+                : byId.putIfAbsent(idKey, student);
+        return present == null;
+    }
+
+    private SecondaryIndex index(String name) {
+        SecondaryIndex index = indexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown index: " + name);
+        }
+        return index;
+    }
+}
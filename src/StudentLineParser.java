@@ -0,0 +1,387 @@
+package src;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Parses CSV lines into Student objects directly from a byte buffer.
+ * Numbers and booleans are read straight from the bytes and the categorical columns
+ * are shared through a small dictionary, so the only String created per line is the id.
+ * Lines the fast path does not fully understand are decoded and parsed field by field
+ * as Strings, which keeps the results and the error messages of the original parser.
+ * Instances keep scratch state and are not thread-safe.
+ */
+class StudentLineParser {
+    private static final int FIELDS = 16;
+    private static final int DICTIONARY_SIZE = 256;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Charset charset;
+    private final PrintStream errors;
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    private byte[] scratch = new byte[64];
+
+    // Open-addressing dictionary of the categorical values seen so far
+    private final byte[][] dictionaryKeys = new byte[DICTIONARY_SIZE][];
+    private final String[] dictionaryValues = new String[DICTIONARY_SIZE];
+    private int dictionaryCount;
+
+    /**
+     * Creates a parser that reports invalid lines on standard error.
+     * @param charset The charset used to decode lines that contain non-ASCII bytes.
+     */
+    StudentLineParser(Charset charset) {
+        this(charset, System.err);
+    }
+
+    /**
+     * Creates a parser.
+     * @param charset The charset used to decode lines that contain non-ASCII bytes.
+     * @param errors The stream where invalid lines are reported.
+     */
+    StudentLineParser(Charset charset, PrintStream errors) {
+        this.charset = charset;
+        this.errors = errors;
+    }
+
+    /**
+     * Parses every line of a byte range. Lines end with "\n", "\r" or "\r\n",
+     * and the last line of the range does not need a terminator.
+     * @param buffer The buffer holding the CSV text.
+     * @param start The index of the first byte of the range.
+     * @param end The index after the last byte of the range.
+     * @param skipFirstLine Whether the first line is a header to ignore.
+     * @param sink Receives every successfully parsed student, in order.
+     */
+    void parseLines(ByteBuffer buffer, int start, int end, boolean skipFirstLine, Consumer<Student> sink) {
+        int position = start;
+        boolean skip = skipFirstLine;
+        while (position < end) {
+            int lineEnd = position;
+            byte b = 0;
+            while (lineEnd < end && (b = buffer.get(lineEnd)) != '\n' && b != '\r') {
+                lineEnd++;
+            }
+            if (skip) {
+                skip = false;
+            } else {
+                Student student = parse(buffer, position, lineEnd);
+                if (student != null) {
+                    sink.accept(student);
+                }
+            }
+            position = lineEnd + 1;
+            if (b == '\r' && position < end && buffer.get(position) == '\n') {
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Parses a single line without its terminator.
+     * @param buffer The buffer holding the line.
+     * @param start The index of the first byte of the line.
+     * @param end The index after the last byte of the line.
+     * @return A Student object, or null if the line couldn't be parsed.
+     */
+    Student parse(ByteBuffer buffer, int start, int end) {
+        if (!splitAscii(buffer, start, end)) {
+            return parse(decode(buffer, start, end));
+        }
+
+        int age = parseInt(buffer, 1);
+        int exerciseFrequency = parseInt(buffer, 10);
+        int mentalHealthRating = parseInt(buffer, 13);
+        double studyHoursPerDay = parseDouble(buffer, 3);
+        double socialMediaHours = parseDouble(buffer, 4);
+        double netflixHours = parseDouble(buffer, 5);
+        double attendancePercentage = parseDouble(buffer, 7);
+        double sleepHours = parseDouble(buffer, 8);
+        double examScore = parseDouble(buffer, 15);
+        if (age == Integer.MIN_VALUE || exerciseFrequency == Integer.MIN_VALUE
+                || mentalHealthRating == Integer.MIN_VALUE
+                || Double.isNaN(studyHoursPerDay) || Double.isNaN(socialMediaHours) || Double.isNaN(netflixHours)
+                || Double.isNaN(attendancePercentage) || Double.isNaN(sleepHours) || Double.isNaN(examScore)) {
+            // Something the fast path does not handle: signs, exponents, overflow or invalid numbers
+            return parse(decode(buffer, start, end));
+        }
+
+        return new Student(
+                text(buffer, 0), age, dictionary(buffer, 2), studyHoursPerDay, socialMediaHours,
+                netflixHours, parseBoolean(buffer, 6), attendancePercentage, sleepHours,
+                dictionary(buffer, 9), exerciseFrequency, dictionary(buffer, 11), dictionary(buffer, 12),
+                mentalHealthRating, parseBoolean(buffer, 14), examScore
+        );
+    }
+
+    /**
+     * Parses a CSV line into a Student object.
+     * @param line The CSV line to parse.
+     * @return A Student object, or null if the line couldn't be parsed.
+     */
+    Student parse(String line) {
+        try {
+            String[] values = line.split(",");
+
+            if (values.length < 16) {
+                errors.println("Invalid line: " + line);
+                return null;
+            }
+
+            String studentId = values[0];
+            int age = parseInt(values[1]);
+            String gender = values[2];
+            double studyHoursPerDay = parseDouble(values[3]);
+            double socialMediaHours = parseDouble(values[4]);
+            double netflixHours = parseDouble(values[5]);
+            boolean partTimeJob = parseBoolean(values[6]);
+            double attendancePercentage = parseDouble(values[7]);
+            double sleepHours = parseDouble(values[8]);
+            String dietQuality = values[9];
+            int exerciseFrequency = parseInt(values[10]);
+            String parentalEducationLevel = values[11];
+            String internetQuality = values[12];
+            int mentalHealthRating = parseInt(values[13]);
+            boolean extracurricularParticipation = parseBoolean(values[14]);
+            double examScore = parseDouble(values[15]);
+
+            return new Student(
+                    studentId, age, gender, studyHoursPerDay, socialMediaHours,
+                    netflixHours, partTimeJob, attendancePercentage, sleepHours,
+                    dietQuality, exerciseFrequency, parentalEducationLevel, internetQuality,
+                    mentalHealthRating, extracurricularParticipation, examScore
+            );
+        } catch (Exception e) {
+            errors.println("Error parsing line: " + line);
+            errors.println("Error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records the bounds of the first 16 fields.
+     * @return false if the line has non-ASCII bytes in those fields, too few fields,
+     *         or an empty last field (which String.split would drop).
+     */
+    private boolean splitAscii(ByteBuffer buffer, int start, int end) {
+        int field = 0;
+        fieldStart[0] = start;
+        int i = start;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < 0) {
+                return false;
+            }
+            if (b == ',') {
+                fieldEnd[field] = i;
+                if (field == FIELDS - 1) {
+                    break;
+                }
+                fieldStart[++field] = i + 1;
+            }
+        }
+        if (field < FIELDS - 1) {
+            return false;
+        }
+        if (i == end) {
+            fieldEnd[field] = end;
+        }
+        return fieldEnd[FIELDS - 1] > fieldStart[FIELDS - 1];
+    }
+
+    /**
+     * Parses an integer field as Integer.parseInt would after trimming, treating an
+     * empty field or "null" as 0.
+     * @return The value, or Integer.MIN_VALUE if the field needs the String parser.
+     */
+    private int parseInt(ByteBuffer buffer, int field) {
+        int start = trimStart(buffer, fieldStart[field], fieldEnd[field]);
+        int end = trimEnd(buffer, start, fieldEnd[field]);
+        if (start == end || isNull(buffer, start, end)) {
+            return 0;
+        }
+        int length = end - start;
+        if (length > 9) {
+            return Integer.MIN_VALUE;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parses a plain decimal field such as "85.0" as Double.parseDouble would after
+     * trimming, treating an empty field or "null" as 0.0. The mantissa is kept below
+     * 2^53 and divided by an exact power of ten, so the result is correctly rounded.
+     * @return The value, or NaN if the field needs the String parser.
+     */
+    private double parseDouble(ByteBuffer buffer, int field) {
+        int start = trimStart(buffer, fieldStart[field], fieldEnd[field]);
+        int end = trimEnd(buffer, start, fieldEnd[field]);
+        if (start == end || isNull(buffer, start, end)) {
+            return 0.0;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && !fraction) {
+                fraction = true;
+            } else if (b >= '0' && b <= '9') {
+                if (++digits > 18) {
+                    return Double.NaN;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0 || mantissa > MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+        return mantissa / POWERS_OF_TEN[fractionDigits];
+    }
+
+    /**
+     * Parses a boolean field, where "Yes" (ignoring case and surrounding whitespace) is true.
+     */
+    private boolean parseBoolean(ByteBuffer buffer, int field) {
+        int start = trimStart(buffer, fieldStart[field], fieldEnd[field]);
+        int end = trimEnd(buffer, start, fieldEnd[field]);
+        return end - start == 3
+                && (buffer.get(start) | 0x20) == 'y'
+                && (buffer.get(start + 1) | 0x20) == 'e'
+                && (buffer.get(start + 2) | 0x20) == 's';
+    }
+
+    private static boolean isNull(ByteBuffer buffer, int start, int end) {
+        return end - start == 4
+                && (buffer.get(start) | 0x20) == 'n'
+                && (buffer.get(start + 1) | 0x20) == 'u'
+                && (buffer.get(start + 2) | 0x20) == 'l'
+                && (buffer.get(start + 3) | 0x20) == 'l';
+    }
+
+    // Same whitespace rule as String.trim()
+    private static int trimStart(ByteBuffer buffer, int start, int end) {
+        while (start < end && buffer.get(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(ByteBuffer buffer, int start, int end) {
+        while (end > start && buffer.get(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Creates a String from an ASCII field.
+     */
+    private String text(ByteBuffer buffer, int field) {
+        int length = fieldEnd[field] - fieldStart[field];
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(fieldStart[field], scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Gets the shared String for a categorical field, creating it the first time the value is seen.
+     */
+    private String dictionary(ByteBuffer buffer, int field) {
+        int start = fieldStart[field];
+        int length = fieldEnd[field] - start;
+        int hash = length;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(start + i);
+        }
+        int mask = DICTIONARY_SIZE - 1;
+        for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+            byte[] key = dictionaryKeys[slot];
+            if (key == null) {
+                String value = text(buffer, field);
+                // Keep the table at most half full; rare values beyond that are not shared
+                if (dictionaryCount < DICTIONARY_SIZE / 2) {
+                    dictionaryKeys[slot] = value.getBytes(StandardCharsets.ISO_8859_1);
+                    dictionaryValues[slot] = value;
+                    dictionaryCount++;
+                }
+                return value;
+            }
+            if (key.length == length && matches(buffer, start, key)) {
+                return dictionaryValues[slot];
+            }
+        }
+    }
+
+    private static boolean matches(ByteBuffer buffer, int start, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Parses a string into an integer, handling null or empty values.
+     * @param value The string to parse.
+     * @return The parsed integer, or 0 if the string is null or "null".
+     */
+    private int parseInt(String value) {
+        if (value == null || value.trim().isEmpty() || value.trim().equalsIgnoreCase("null")) {
+            return 0;
+        }
+        return Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Parses a string into a double, handling null or empty values.
+     * @param value The string to parse.
+     * @return The parsed double, or 0.0 if the string is null or "null".
+     */
+    private double parseDouble(String value) {
+        if (value == null || value.trim().isEmpty() || value.trim().equalsIgnoreCase("null")) {
+            return 0.0;
+        }
+        return Double.parseDouble(value.trim());
+    }
+
+    /**
+     * Parses a string into a boolean, where "Yes" is true and "No" is false.
+     * @param value The string to parse.
+     * @return true if the string is "Yes", false otherwise.
+     */
+    private boolean parseBoolean(String value) {
+        return "Yes".equalsIgnoreCase(value.trim());
+    }
+}
@@ -0,0 +1,381 @@
+package src;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of a set of students, loaded much faster than the CSV file.
+ *
+ * The records are stored in the order of the tree they were written from, column by column:
+ * ids as numbers when they all have the form "S&lt;digits&gt;" (as UTF-8 strings otherwise),
+ * integer columns in the narrowest of 1, 2 or 4 bytes that fits all values, decimal columns
+ * as tenths in 2 bytes when that is lossless (as doubles otherwise), categorical columns as
+ * codes into a per-column string dictionary, and the two flags packed in one byte.
+ * Strings are stored as a length and their UTF-8 bytes, with the length -1 for null, so a
+ * missing categorical value survives a round trip.
+ * The file starts with a magic number and a format version and ends with a CRC-32 of
+ * everything before it.
+ *
+ * Usage: {@code java -cp bin src.StudentSnapshot data/dataset.csv data/dataset.snapshot}
+ */
+public class StudentSnapshot {
+    private static final int MAGIC = 0x41564C53; // "AVLS"
+    private static final short VERSION = 1;
+
+    private static final byte IDS_NUMERIC = 0;
+    private static final byte IDS_STRINGS = 1;
+    private static final byte DOUBLES_RAW = 0;
+    private static final byte DOUBLES_TENTHS = 1;
+
+    private static final int NULL_LENGTH = -1;
+
+    private static final int PART_TIME_JOB = 1;
+    private static final int EXTRACURRICULAR = 2;
+
+    private static final int INT_COLUMNS = 3;
+    private static final int DOUBLE_COLUMNS = 6;
+    private static final int STRING_COLUMNS = 4;
+
+    /**
+     * Getters of the columns, in file order. Only the writer needs them, so they live in a
+     * holder class that a JVM which only loads snapshots never initializes.
+     */
+    private static class Columns {
+        static final List<ToIntFunction<Student>> INTS = Arrays.asList(
+                Student::getAge, Student::getExerciseFrequency, Student::getMentalHealthRating);
+        static final List<ToDoubleFunction<Student>> DOUBLES = Arrays.asList(
+                Student::getStudyHoursPerDay, Student::getSocialMediaHours, Student::getNetflixHours,
+                Student::getAttendancePercentage, Student::getSleepHours, Student::getExamScore);
+        static final List<Function<Student, String>> STRINGS = Arrays.asList(
+                Student::getGender, Student::getDietQuality, Student::getParentalEducationLevel,
+                Student::getInternetQuality);
+    }
+
+    private StudentSnapshot() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Uso: java -cp bin src.StudentSnapshot <arquivo.csv> <arquivo.snapshot>");
+            System.exit(1);
+        }
+        AVLTree<Student> tree = new AVLTree<>();
+        new CSVReader(args[0]).readIntoTree(tree);
+        write(tree, args[1]);
+        System.out.println("Snapshot com " + tree.size() + " estudantes gravado em " + args[1]);
+    }
+
+    /**
+     * Writes the students of a tree, in its order, to a snapshot file.
+     * @param tree The tree to dump.
+     * @param path The path of the snapshot file, replaced if it exists.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void write(AVLTree<Student> tree, String path) throws IOException {
+        Student[] students = new Student[tree.size()];
+        int count = 0;
+        for (Student student : tree) {
+            students[count++] = student;
+        }
+        write(students, path);
+    }
+
+    /**
+     * Writes students, in the order of the collection, to a snapshot file.
+     * @param students The students to dump.
+     * @param path The path of the snapshot file, replaced if it exists.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void write(Collection<Student> students, String path) throws IOException {
+        write(students.toArray(new Student[0]), path);
+    }
+
+    private static void write(Student[] students, String path) throws IOException {
+        int count = students.length;
+        CRC32 crc = new CRC32();
+        try (OutputStream file = new FileOutputStream(path);
+             DataOutputStream out = new DataOutputStream(
+                     new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(count);
+
+            writeIds(out, students);
+            for (ToIntFunction<Student> column : Columns.INTS) {
+                writeInts(out, students, column);
+            }
+            for (ToDoubleFunction<Student> column : Columns.DOUBLES) {
+                writeDoubles(out, students, column);
+            }
+            for (Function<Student, String> column : Columns.STRINGS) {
+                writeStrings(out, students, column);
+            }
+            for (Student student : students) {
+                out.writeByte((student.isPartTimeJob() ? PART_TIME_JOB : 0)
+                        | (student.isExtracurricularParticipation() ? EXTRACURRICULAR : 0));
+            }
+
+            out.flush();
+            // The checksum itself is outside the checked stream
+            new DataOutputStream(file).writeLong(crc.getValue());
+        }
+    }
+
+    /**
+     * Reads the students of a snapshot file, in the order they were written.
+     * @param path The path of the snapshot file.
+     * @return The students.
+     * @throws IOException If an I/O error occurs, or the file is not a valid snapshot.
+     */
+    public static List<Student> read(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < 20 || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a student snapshot: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+            CRC32 crc = new CRC32();
+            ByteBuffer body = buffer.duplicate();
+            body.limit((int) length - 8);
+            crc.update(body);
+            if (buffer.getLong((int) length - 8) != crc.getValue()) {
+                throw new IOException("Corrupt student snapshot (checksum mismatch): " + path);
+            }
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a student snapshot: " + path);
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported student snapshot version " + version + ": " + path);
+            }
+            buffer.getShort();
+            int count = buffer.getInt();
+
+            String[] ids = readIds(buffer, count);
+            int[][] ints = new int[INT_COLUMNS][];
+            for (int c = 0; c < ints.length; c++) {
+                ints[c] = readInts(buffer, count);
+            }
+            double[][] doubles = new double[DOUBLE_COLUMNS][];
+            for (int c = 0; c < doubles.length; c++) {
+                doubles[c] = readDoubles(buffer, count);
+            }
+            String[][] strings = new String[STRING_COLUMNS][];
+            for (int c = 0; c < strings.length; c++) {
+                strings[c] = readStrings(buffer, count);
+            }
+
+            List<Student> students = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int flags = buffer.get();
+                students.add(new Student(ids[i], ints[0][i], strings[0][i], doubles[0][i], doubles[1][i],
+                        doubles[2][i], (flags & PART_TIME_JOB) != 0, doubles[3][i], doubles[4][i], strings[1][i],
+                        ints[1][i], strings[2][i], strings[3][i], ints[2][i], (flags & EXTRACURRICULAR) != 0,
+                        doubles[5][i]));
+            }
+            return students;
+        }
+    }
+
+    /**
+     * Loads a snapshot file into a new tree. The records are stored sorted, so the tree is
+     * built in linear time by {@link AVLTree#bulkLoad(java.util.Collection)}.
+     * @param path The path of the snapshot file.
+     * @return The tree.
+     * @throws IOException If an I/O error occurs, or the file is not a valid snapshot.
+     */
+    public static AVLTree<Student> load(String path) throws IOException {
+        AVLTree<Student> tree = new AVLTree<>();
+        tree.bulkLoad(read(path));
+        return tree;
+    }
+
+    private static void writeIds(DataOutputStream out, Student[] students) throws IOException {
+        long[] numbers = new long[students.length];
+        boolean numeric = true;
+        for (int i = 0; i < students.length && numeric; i++) {
+            numbers[i] = Student.parseId(students[i].getStudentId());
+            numeric = numbers[i] >= 0;
+        }
+        if (numeric) {
+            out.writeByte(IDS_NUMERIC);
+            for (long number : numbers) {
+                out.writeLong(number);
+            }
+            return;
+        }
+        out.writeByte(IDS_STRINGS);
+        for (Student student : students) {
+            writeString(out, student.getStudentId());
+        }
+    }
+
+    private static String[] readIds(ByteBuffer buffer, int count) throws IOException {
+        String[] ids = new String[count];
+        byte encoding = buffer.get();
+        for (int i = 0; i < count; i++) {
+            if (encoding == IDS_NUMERIC) {
+                // String.concat rather than +, which would bootstrap an invokedynamic call site at startup
+                ids[i] = "S".concat(Long.toString(buffer.getLong()));
+            } else if (encoding == IDS_STRINGS) {
+                ids[i] = readString(buffer);
+            } else {
+                throw new IOException("Unknown id encoding: " + encoding);
+            }
+        }
+        return ids;
+    }
+
+    private static void writeInts(DataOutputStream out, Student[] students, ToIntFunction<Student> column)
+            throws IOException {
+        int min = 0;
+        int max = 0;
+        for (Student student : students) {
+            int value = column.applyAsInt(student);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        int width = min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE ? 1
+                : min >= Short.MIN_VALUE && max <= Short.MAX_VALUE ? 2 : 4;
+        out.writeByte(width);
+        for (Student student : students) {
+            writeInt(out, column.applyAsInt(student), width);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) throws IOException {
+        int width = buffer.get();
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = readInt(buffer, width);
+        }
+        return values;
+    }
+
+    private static void writeDoubles(DataOutputStream out, Student[] students, ToDoubleFunction<Student> column)
+            throws IOException {
+        boolean tenths = true;
+        for (int i = 0; i < students.length && tenths; i++) {
+            tenths = CompactStudent.toTenths(column.applyAsDouble(students[i])) != Integer.MIN_VALUE;
+        }
+        out.writeByte(tenths ? DOUBLES_TENTHS : DOUBLES_RAW);
+        for (Student student : students) {
+            double value = column.applyAsDouble(student);
+            if (tenths) {
+                out.writeShort(CompactStudent.toTenths(value));
+            } else {
+                out.writeDouble(value);
+            }
+        }
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int count) throws IOException {
+        byte encoding = buffer.get();
+        if (encoding != DOUBLES_TENTHS && encoding != DOUBLES_RAW) {
+            throw new IOException("Unknown decimal encoding: " + encoding);
+        }
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = encoding == DOUBLES_TENTHS ? buffer.getShort() / 10.0 : buffer.getDouble();
+        }
+        return values;
+    }
+
+    private static void writeStrings(DataOutputStream out, Student[] students, Function<Student, String> column)
+            throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int[] codes = new int[students.length];
+        for (int i = 0; i < students.length; i++) {
+            codes[i] = dictionary.computeIfAbsent(column.apply(students[i]), value -> dictionary.size());
+        }
+        out.writeInt(dictionary.size());
+        for (String value : dictionary.keySet()) {
+            writeString(out, value);
+        }
+        int width = dictionary.size() <= 1 << 8 ? 1 : dictionary.size() <= 1 << 16 ? 2 : 4;
+        out.writeByte(width);
+        for (int code : codes) {
+            // Codes are unsigned: up to 255 fits in one byte, 65535 in two
+            writeInt(out, code, width);
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer, int count) {
+        String[] dictionary = new String[buffer.getInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = readString(buffer);
+        }
+        int width = buffer.get();
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            int code = width == 1 ? buffer.get() & 0xFF : width == 2 ? buffer.getShort() & 0xFFFF : buffer.getInt();
+            values[i] = dictionary[code];
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInt(DataOutputStream out, int value, int width) throws IOException {
+        if (width == 1) {
+            out.writeByte(value);
+        } else if (width == 2) {
+            out.writeShort(value);
+        } else {
+            out.writeInt(value);
+        }
+    }
+
+    private static int readInt(ByteBuffer buffer, int width) throws IOException {
+        switch (width) {
+            case 1:
+                return buffer.get();
+            case 2:
+                return buffer.getShort();
+            case 4:
+                return buffer.getInt();
+            default:
+                throw new IOException("Unknown integer width: " + width);
+        }
+    }
+}
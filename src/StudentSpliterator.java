@@ -0,0 +1,202 @@
+package src;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the students of a byte range of a CSV file. The range is mapped
+ * lazily in line-aligned windows and parsed one line at a time, so no list of the
+ * records is ever built. Splitting halves the remaining bytes at a line boundary.
+ */
+class StudentSpliterator implements Spliterator<Student> {
+    /**
+     * Ranges smaller than this are not split any further.
+     */
+    private static final long MIN_SPLIT = 1 << 20;
+
+    /**
+     * Rough size of a CSV line, used only to estimate the number of remaining students.
+     */
+    private static final int ESTIMATED_LINE_LENGTH = 64;
+
+    private final FileChannel channel;
+    private final String filePath;
+    private final Charset charset;
+    private long position;
+    private final long end;
+    private boolean skipHeader;
+
+    private StudentLineParser parser;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int windowPosition;
+    private int windowLimit;
+
+    /**
+     * Creates a spliterator over a range of the file.
+     * @param channel The open channel of the file.
+     * @param filePath The path of the file, for error messages.
+     * @param start The offset of the first byte, at a line start.
+     * @param end The offset after the last byte, at a line start or the end of the file.
+     * @param skipHeader Whether the first line of the range is a header to ignore.
+     * @param charset The charset used to decode lines that contain non-ASCII bytes.
+     */
+    StudentSpliterator(FileChannel channel, String filePath, long start, long end, boolean skipHeader,
+                       Charset charset) {
+        this.channel = channel;
+        this.filePath = filePath;
+        this.position = start;
+        this.end = end;
+        this.skipHeader = skipHeader;
+        this.charset = charset;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Student> action) {
+        while (nextWindow()) {
+            while (windowPosition < windowLimit) {
+                int lineStart = windowPosition;
+                int lineEnd = lineStart;
+                byte b = 0;
+                while (lineEnd < windowLimit && (b = window.get(lineEnd)) != '\n' && b != '\r') {
+                    lineEnd++;
+                }
+                windowPosition = lineEnd + 1;
+                if (b == '\r' && windowPosition < windowLimit && window.get(windowPosition) == '\n') {
+                    windowPosition++;
+                }
+                if (skipHeader) {
+                    skipHeader = false;
+                    continue;
+                }
+                Student student = parser().parse(window, lineStart, lineEnd);
+                if (student != null) {
+                    action.accept(student);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Student> action) {
+        while (nextWindow()) {
+            parser().parseLines(window, windowPosition, windowLimit, skipHeader, action::accept);
+            skipHeader = false;
+            windowPosition = windowLimit;
+        }
+    }
+
+    @Override
+    public Spliterator<Student> trySplit() {
+        long start = window == null ? position : windowStart + windowPosition;
+        if (end - start < MIN_SPLIT) {
+            return null;
+        }
+        long middle = nextLineStart(start + (end - start) / 2);
+        if (middle >= end) {
+            return null;
+        }
+        StudentSpliterator prefix = new StudentSpliterator(channel, filePath, start, middle, skipHeader, charset);
+        position = middle;
+        skipHeader = false;
+        window = null;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        long start = window == null ? position : windowStart + windowPosition;
+        return (end - start) / ESTIMATED_LINE_LENGTH + 1;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    private StudentLineParser parser() {
+        if (parser == null) {
+            parser = new StudentLineParser(charset);
+        }
+        return parser;
+    }
+
+    /**
+     * Makes sure the current window has unread bytes, mapping the next one when needed.
+     * @return false once the whole range has been read.
+     */
+    private boolean nextWindow() {
+        if (window != null && windowPosition < windowLimit) {
+            return true;
+        }
+        if (window != null) {
+            position = windowStart + windowLimit;
+            window = null;
+        }
+        if (position >= end) {
+            return false;
+        }
+        try {
+            int length = (int) Math.min(CSVReader.MAX_WINDOW, end - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            windowStart = position;
+            windowPosition = 0;
+            windowLimit = position + length == end ? length : CSVReader.lastLineEnd(window, length, filePath);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finds the first line start at or after a file offset by reading the file directly.
+     * @param from The offset to start looking from.
+     * @return The offset after the first complete line terminator, or the end of the range.
+     */
+    private long nextLineStart(long from) {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        try {
+            long offset = from;
+            while (offset < end) {
+                buffer.clear();
+                int read = (int) Math.min(channel.read(buffer, offset), end - offset);
+                if (read <= 0) {
+                    return end;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+                    if (b == '\n') {
+                        return offset + i + 1;
+                    }
+                    if (b == '\r') {
+                        if (i + 1 < read) {
+                            return offset + i + (buffer.get(i + 1) == '\n' ? 2 : 1);
+                        }
+                        // The byte after "\r" is in the next read
+                        return nextByteIsNewline(offset + i + 1) ? offset + i + 2 : offset + i + 1;
+                    }
+                }
+                offset += read;
+            }
+            return end;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean nextByteIsNewline(long offset) throws IOException {
+        if (offset >= end) {
+            return false;
+        }
+        ByteBuffer single = ByteBuffer.allocate(1);
+        return channel.read(single, offset) == 1 && single.get(0) == '\n';
+    }
+}
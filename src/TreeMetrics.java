@@ -0,0 +1,259 @@
+package src;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of the work done by a tree: comparisons, rotations, path lengths and the deepest
+ * path, and a latency histogram per operation, so that slow workloads can be correlated with
+ * rebalancing activity. Counters are {@link LongAdder}s, which concurrent readers of a
+ * {@link ConcurrentAVLTree} update without contending.
+ *
+ * A tree only records metrics after {@link AVLTree#enableMetrics}, and otherwise pays a null
+ * check per operation. Running with {@code -Davl.metrics=false} turns them off for every
+ * tree: {@link #ENABLED} is then a constant false and the JIT compiler removes the checks.
+ */
+public class TreeMetrics implements TreeMetricsMXBean {
+    /**
+     * Whether trees may record metrics, false when the system property avl.metrics is "false".
+     */
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("avl.metrics"));
+
+    private final ObjectName objectName;
+    private final IntSupplier height;
+    private final IntSupplier size;
+
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder pathLength = new LongAdder();
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder leftRotations = new LongAdder();
+    private final LongAdder rightRotations = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LatencyHistogram insertLatency = new LatencyHistogram();
+    private final LatencyHistogram searchLatency = new LatencyHistogram();
+    private final LatencyHistogram removeLatency = new LatencyHistogram();
+
+    /**
+     * Creates the metrics of a tree and registers them as an MXBean, replacing any bean
+     * registered under the same name.
+     * @param name The name of the bean, or null to not register one.
+     * @param height Gets the current height of the tree.
+     * @param size Gets the current size of the tree.
+     * @throws IllegalStateException If the bean cannot be registered.
+     */
+    TreeMetrics(String name, IntSupplier height, IntSupplier size) {
+        this.height = height;
+        this.size = size;
+        if (name == null) {
+            this.objectName = null;
+            return;
+        }
+        try {
+            this.objectName = new ObjectName("src:type=AVLTree,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the metrics of " + name, e);
+        }
+    }
+
+    /**
+     * Removes the MXBean of these metrics from the platform MBean server, if it is still there.
+     */
+    public void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister " + objectName, e);
+        }
+    }
+
+    void recordInsert(int comparisons, int pathLength, long nanos) {
+        record(comparisons, pathLength);
+        insertLatency.record(nanos);
+    }
+
+    void recordSearch(int comparisons, long nanos) {
+        record(comparisons, comparisons);
+        searchLatency.record(nanos);
+    }
+
+    void recordRemove(int comparisons, int pathLength, long nanos) {
+        record(comparisons, pathLength);
+        removeLatency.record(nanos);
+    }
+
+    private void record(int comparisons, int pathLength) {
+        this.comparisons.add(comparisons);
+        this.pathLength.add(pathLength);
+        operations.increment();
+        int deepest = maxDepth.get();
+        while (pathLength > deepest && !maxDepth.compareAndSet(deepest, pathLength)) {
+            deepest = maxDepth.get();
+        }
+    }
+
+    void recordLeftRotation() {
+        leftRotations.increment();
+    }
+
+    void recordRightRotation() {
+        rightRotations.increment();
+    }
+
+    @Override
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    @Override
+    public long getLeftRotations() {
+        return leftRotations.sum();
+    }
+
+    @Override
+    public long getRightRotations() {
+        return rightRotations.sum();
+    }
+
+    @Override
+    public double getAveragePathLength() {
+        long count = operations.sum();
+        return count == 0 ? 0 : (double) pathLength.sum() / count;
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    @Override
+    public int getHeight() {
+        return height.getAsInt();
+    }
+
+    @Override
+    public int getSize() {
+        return size.getAsInt();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getInsertLatency() {
+        return insertLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getSearchLatency() {
+        return searchLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getRemoveLatency() {
+        return removeLatency.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        comparisons.reset();
+        pathLength.reset();
+        operations.reset();
+        leftRotations.reset();
+        rightRotations.reset();
+        maxDepth.set(0);
+        insertLatency.reset();
+        searchLatency.reset();
+        removeLatency.reset();
+    }
+
+    /**
+     * Copies every counter and histogram. Operations running while the copy is made may be
+     * counted in some values and not in others.
+     * @return The metrics recorded so far.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Metrics of a tree at some point in time.
+     */
+    public static class Snapshot {
+        private final long comparisons;
+        private final long leftRotations;
+        private final long rightRotations;
+        private final double averagePathLength;
+        private final int maxDepth;
+        private final int height;
+        private final int size;
+        private final LatencyHistogram.Snapshot insertLatency;
+        private final LatencyHistogram.Snapshot searchLatency;
+        private final LatencyHistogram.Snapshot removeLatency;
+
+        private Snapshot(TreeMetrics metrics) {
+            this.comparisons = metrics.getComparisons();
+            this.leftRotations = metrics.getLeftRotations();
+            this.rightRotations = metrics.getRightRotations();
+            this.averagePathLength = metrics.getAveragePathLength();
+            this.maxDepth = metrics.getMaxDepth();
+            this.height = metrics.getHeight();
+            this.size = metrics.getSize();
+            this.insertLatency = metrics.getInsertLatency();
+            this.searchLatency = metrics.getSearchLatency();
+            this.removeLatency = metrics.getRemoveLatency();
+        }
+
+        public long getComparisons() {
+            return comparisons;
+        }
+
+        public long getLeftRotations() {
+            return leftRotations;
+        }
+
+        public long getRightRotations() {
+            return rightRotations;
+        }
+
+        public double getAveragePathLength() {
+            return averagePathLength;
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public LatencyHistogram.Snapshot getInsertLatency() {
+            return insertLatency;
+        }
+
+        public LatencyHistogram.Snapshot getSearchLatency() {
+            return searchLatency;
+        }
+
+        public LatencyHistogram.Snapshot getRemoveLatency() {
+            return removeLatency;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package src;
+
+/**
+ * Management interface of the {@link TreeMetrics} of a tree, registered in the platform
+ * MBean server as {@code src:type=AVLTree,name=<name>} so that tools such as JConsole can
+ * follow the rebalancing activity and the latencies of a running tree.
+ */
+public interface TreeMetricsMXBean {
+    /**
+     * @return The number of comparisons made by insertions, searches and removals.
+     */
+    long getComparisons();
+
+    /**
+     * @return The number of left rotations.
+     */
+    long getLeftRotations();
+
+    /**
+     * @return The number of right rotations.
+     */
+    long getRightRotations();
+
+    /**
+     * @return The mean number of nodes visited by an insertion, search or removal.
+     */
+    double getAveragePathLength();
+
+    /**
+     * @return The longest path visited by an insertion, search or removal.
+     */
+    int getMaxDepth();
+
+    /**
+     * @return The current height of the tree.
+     */
+    int getHeight();
+
+    /**
+     * @return The current number of elements of the tree.
+     */
+    int getSize();
+
+    /**
+     * @return The latencies of the insertions.
+     */
+    LatencyHistogram.Snapshot getInsertLatency();
+
+    /**
+     * @return The latencies of the searches.
+     */
+    LatencyHistogram.Snapshot getSearchLatency();
+
+    /**
+     * @return The latencies of the removals.
+     */
+    LatencyHistogram.Snapshot getRemoveLatency();
+
+    /**
+     * Clears every counter and histogram.
+     */
+    void reset();
+}
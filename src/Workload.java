@@ -0,0 +1,273 @@
+package src;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A mix of operations on an ordered set of the records of a {@link WorkloadGenerator}, like
+ * the core workloads of YCSB (Cooper et al., "Benchmarking Cloud Serving Systems with YCSB",
+ * SoCC 2010). Each operation is drawn with the percentages of the mix, and the record it
+ * reads or updates with a {@link KeyDistribution}. The operations are executed by
+ * {@link Client}s, one per thread, sharing the count of inserted records.
+ */
+public class Workload {
+    /**
+     * Maximum number of records of a scan; scan lengths are uniform from 1 to this.
+     */
+    public static final int MAX_SCAN_LENGTH = 100;
+
+    /**
+     * The operations of a workload.
+     */
+    public enum Operation {
+        /**
+         * Searches for a record.
+         */
+        READ,
+        /**
+         * Replaces a record with a new version: remove then insert, since the sets ignore
+         * the insert of an element equal to one they hold.
+         */
+        UPDATE,
+        /**
+         * Inserts the next record, after every record inserted so far.
+         */
+        INSERT,
+        /**
+         * Gets the records from a record on, with {@link OrderedSet#scan}.
+         */
+        SCAN,
+        /**
+         * Searches for a record, then updates it.
+         */
+        READ_MODIFY_WRITE
+    }
+
+    private final String name;
+    private final int[] cumulativePercents;
+    private final KeyDistribution distribution;
+
+    /**
+     * Creates a workload.
+     * @param name The name of the workload.
+     * @param distribution How the records of reads, updates and scans are picked.
+     * @param percents The percentage of each operation, in the order of {@link Operation}; they must sum to 100.
+     * @throws IllegalArgumentException If there is not one percentage per operation or they do not sum to 100.
+     */
+    public Workload(String name, KeyDistribution distribution, int... percents) {
+        if (percents.length != Operation.values().length) {
+            throw new IllegalArgumentException("Expected " + Operation.values().length + " percentages");
+        }
+        this.name = name;
+        this.distribution = distribution;
+        this.cumulativePercents = new int[percents.length];
+        int sum = 0;
+        for (int i = 0; i < percents.length; i++) {
+            if (percents[i] < 0) {
+                throw new IllegalArgumentException("Negative percentage: " + percents[i]);
+            }
+            sum += percents[i];
+            cumulativePercents[i] = sum;
+        }
+        if (sum != 100) {
+            throw new IllegalArgumentException("Percentages sum to " + sum + ", not 100");
+        }
+    }
+
+    /**
+     * Gets a core workload of YCSB.
+     * @param letter A to F: A is 50% reads and 50% updates, B 95% reads and 5% updates,
+     *               C only reads, D 95% reads of the latest records and 5% inserts, E 95% short
+     *               scans and 5% inserts and F 50% reads and 50% read-modify-writes.
+     * @return The workload, on Zipfian keys except for D.
+     * @throws IllegalArgumentException If the letter is not A to F.
+     */
+    public static Workload ycsb(char letter) {
+        switch (Character.toUpperCase(letter)) {
+            case 'A':
+                return new Workload("A", KeyDistribution.ZIPFIAN, 50, 50, 0, 0, 0);
+            case 'B':
+                return new Workload("B", KeyDistribution.ZIPFIAN, 95, 5, 0, 0, 0);
+            case 'C':
+                return new Workload("C", KeyDistribution.ZIPFIAN, 100, 0, 0, 0, 0);
+            case 'D':
+                return new Workload("D", KeyDistribution.LATEST, 95, 0, 5, 0, 0);
+            case 'E':
+                return new Workload("E", KeyDistribution.ZIPFIAN, 0, 0, 5, 95, 0);
+            case 'F':
+                return new Workload("F", KeyDistribution.ZIPFIAN, 50, 0, 0, 0, 50);
+            default:
+                throw new IllegalArgumentException("Unknown YCSB workload: " + letter);
+        }
+    }
+
+    /**
+     * Gets a mix of reads and updates.
+     * @param readPercent The percentage of reads, the rest being updates.
+     * @param distribution How the records are picked.
+     * @return The workload.
+     */
+    public static Workload readWrite(int readPercent, KeyDistribution distribution) {
+        return new Workload("read" + readPercent + "-" + distribution.name().toLowerCase(Locale.ROOT),
+                distribution, readPercent, 100 - readPercent, 0, 0, 0);
+    }
+
+    /**
+     * Parses a workload: a YCSB letter, "A" to "F", or a read percentage and a distribution,
+     * as in "90:uniform" for 90% reads and 10% updates on uniform keys.
+     * @param spec The workload.
+     * @return The workload.
+     * @throws IllegalArgumentException If the workload cannot be parsed.
+     */
+    public static Workload parse(String spec) {
+        if (spec.length() == 1) {
+            return ycsb(spec.charAt(0));
+        }
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Expected A to F or <read percent>:<distribution>, got " + spec);
+        }
+        int readPercent = Integer.parseInt(spec.substring(0, colon));
+        if (readPercent < 0 || readPercent > 100) {
+            throw new IllegalArgumentException("Read percentage out of range: " + readPercent);
+        }
+        return readWrite(readPercent,
+                KeyDistribution.valueOf(spec.substring(colon + 1).toUpperCase(Locale.ROOT)));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public KeyDistribution getDistribution() {
+        return distribution;
+    }
+
+    /**
+     * Gets the percentage of an operation.
+     * @param operation The operation.
+     * @return Its percentage of the operations of the workload.
+     */
+    public int getPercent(Operation operation) {
+        int i = operation.ordinal();
+        return cumulativePercents[i] - (i == 0 ? 0 : cumulativePercents[i - 1]);
+    }
+
+    /**
+     * Creates a client executing this workload.
+     * @param generator Generates the records.
+     * @param recordCount The number of records inserted so far, shared by the clients: the
+     *                    records 0 to recordCount - 1 are in the set, and inserts take the next index.
+     * @param seed The seed of the operations and keys of the client.
+     * @return The client.
+     */
+    public Client newClient(WorkloadGenerator generator, AtomicLong recordCount, long seed) {
+        return new Client(generator, recordCount, seed);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder(name).append(" (");
+        for (Operation operation : Operation.values()) {
+            int percent = getPercent(operation);
+            if (percent > 0) {
+                description.append(percent).append("% ").append(operation.name().toLowerCase(Locale.ROOT)).append(", ");
+            }
+        }
+        return description.append(distribution.name().toLowerCase(Locale.ROOT)).append(')').toString();
+    }
+
+    /**
+     * Executes the operations of a workload for one thread. A client is not thread-safe, but
+     * the clients of a workload can run concurrently on a thread-safe set. Keys are picked
+     * among the records whose insert was started, so a read may miss a record that another
+     * client is still inserting, or is updating.
+     */
+    public class Client {
+        private final WorkloadGenerator generator;
+        private final AtomicLong recordCount;
+        private final SplittableRandom random;
+        private final KeyDistribution.Chooser chooser;
+        private final long[] counts = new long[Operation.values().length];
+
+        private Client(WorkloadGenerator generator, AtomicLong recordCount, long seed) {
+            this.generator = generator;
+            this.recordCount = recordCount;
+            this.random = new SplittableRandom(seed);
+            this.chooser = distribution.newChooser(WorkloadGenerator.mix64(seed));
+        }
+
+        /**
+         * Draws the next operation with the percentages of the workload.
+         * @return The operation.
+         */
+        public Operation nextOperation() {
+            int draw = random.nextInt(100);
+            int i = 0;
+            while (draw >= cumulativePercents[i]) {
+                i++;
+            }
+            return Operation.values()[i];
+        }
+
+        /**
+         * Draws and executes the next operation.
+         * @param set The set of records.
+         * @return The operation executed.
+         */
+        public Operation execute(OrderedSet<Student> set) {
+            Operation operation = nextOperation();
+            execute(set, operation);
+            return operation;
+        }
+
+        /**
+         * Executes an operation on a record picked by the distribution of the workload.
+         * @param set The set of records.
+         * @param operation The operation.
+         * @return The number of records read or written.
+         */
+        public int execute(OrderedSet<Student> set, Operation operation) {
+            counts[operation.ordinal()]++;
+            switch (operation) {
+                case READ:
+                    return set.search(WorkloadGenerator.key(nextKey())) ? 1 : 0;
+                case UPDATE:
+                    return update(set, nextKey());
+                case INSERT:
+                    set.insert(generator.student(recordCount.getAndIncrement()));
+                    return 1;
+                case SCAN:
+                    return set.scan(WorkloadGenerator.key(nextKey()), 1 + random.nextInt(MAX_SCAN_LENGTH)).size();
+                case READ_MODIFY_WRITE: {
+                    long key = nextKey();
+                    return set.search(WorkloadGenerator.key(key)) ? update(set, key) : 0;
+                }
+                default:
+                    throw new AssertionError(operation);
+            }
+        }
+
+        private int update(OrderedSet<Student> set, long key) {
+            if (!set.remove(WorkloadGenerator.key(key))) {
+                return 0;
+            }
+            set.insert(generator.student(key, 1 + random.nextInt(Integer.MAX_VALUE)));
+            return 1;
+        }
+
+        private long nextKey() {
+            return chooser.next(Math.max(1, recordCount.get()));
+        }
+
+        /**
+         * Gets the number of times an operation was executed by this client.
+         * @param operation The operation.
+         * @return The count.
+         */
+        public long getCount(Operation operation) {
+            return counts[operation.ordinal()];
+        }
+    }
+}
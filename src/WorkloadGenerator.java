@@ -0,0 +1,221 @@
+package src;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic student records at any scale, with the value distributions of
+ * data/dataset.csv: ages 17 to 24, uniform hours and percentages over the ranges of the
+ * dataset, categorical columns with its frequencies and exam scores from 18.4 to 100.
+ *
+ * Record i has the id "S" + (1000 + i), like the dataset, and its values depend only on the
+ * seed and on i. Records can therefore be streamed, in parallel, without keeping them in
+ * memory, and any record can be generated again to search for it or update it, which is how
+ * {@link Workload} picks its keys.
+ *
+ * Usage: {@code java -cp bin src.WorkloadGenerator [-n 1000000] [-o data/synthetic.csv] [--seed 42]}
+ * writes n records, in id order, to a CSV file that {@link CSVReader} can read.
+ */
+public class WorkloadGenerator {
+    /**
+     * Number of the id of the first record.
+     */
+    public static final long FIRST_ID = 1000;
+
+    private static final String CSV_HEADER = "student_id,age,gender,study_hours_per_day,social_media_hours,"
+            + "netflix_hours,part_time_job,attendance_percentage,sleep_hours,diet_quality,exercise_frequency,"
+            + "parental_education_level,internet_quality,mental_health_rating,extracurricular_participation,"
+            + "exam_score";
+
+    // Categories with their cumulative frequencies in the dataset, in percent
+    private static final String[] GENDERS = {"Male", "Female", "Other"};
+    private static final int[] GENDER_SHARES = {35, 69, 100};
+    private static final String[] DIETS = {"Good", "Fair", "Poor"};
+    private static final int[] DIET_SHARES = {34, 68, 100};
+    private static final String[] EDUCATION = {"Bachelor", "High School", "Master", "None"};
+    private static final int[] EDUCATION_SHARES = {27, 53, 77, 100};
+    private static final String[] INTERNET = {"Good", "Average", "Poor"};
+    private static final int[] INTERNET_SHARES = {34, 68, 100};
+
+    private final long seed;
+
+    public WorkloadGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the id of a record.
+     * @param index The index of the record, from 0.
+     * @return The id "S" + (1000 + index).
+     */
+    public static String id(long index) {
+        return "S" + (FIRST_ID + index);
+    }
+
+    /**
+     * Creates a search key for a record: a student with its id and no other values, much
+     * cheaper to build than the record when only its id is compared.
+     * @param index The index of the record, from 0.
+     * @return A student equal to the record.
+     */
+    public static Student key(long index) {
+        return new Student(id(index), 0, "", 0, 0, 0, false, 0, 0, "", 0, "", "", 0, false, 0);
+    }
+
+    /**
+     * Generates a record.
+     * @param index The index of the record, from 0.
+     * @return The record, always the same for the same seed and index.
+     */
+    public Student student(long index) {
+        return student(index, 0);
+    }
+
+    /**
+     * Generates a new version of a record: the same id with other values, as written by an update.
+     * @param index The index of the record, from 0.
+     * @param version The version, 0 for the record returned by {@link #student(long)}.
+     * @return The version of the record.
+     */
+    public Student student(long index, long version) {
+        SplittableRandom random = new SplittableRandom(mix64(seed ^ mix64(mix64(index) + version)));
+        return new Student(id(index),
+                17 + random.nextInt(8),
+                pick(random, GENDERS, GENDER_SHARES),
+                tenths(random, 0, 85),
+                tenths(random, 0, 72),
+                tenths(random, 0, 55),
+                random.nextInt(100) < 48,
+                tenths(random, 560, 1000),
+                tenths(random, 32, 100),
+                pick(random, DIETS, DIET_SHARES),
+                random.nextInt(11),
+                pick(random, EDUCATION, EDUCATION_SHARES),
+                pick(random, INTERNET, INTERNET_SHARES),
+                1 + random.nextInt(10),
+                random.nextInt(100) < 48,
+                // Scores from 18.4 to 100, with the top half percent capped at 100 as in the dataset
+                Math.min(1000, 184 + random.nextInt(821)) / 10.0);
+    }
+
+    /**
+     * Streams records 0 to count - 1, in id order. The stream can be made parallel.
+     * @param count The number of records.
+     * @return The records.
+     */
+    public Stream<Student> students(long count) {
+        return LongStream.range(0, count).mapToObj(this::student);
+    }
+
+    /**
+     * Generates records 0 to count - 1 into a list in random order, so that inserting them one
+     * by one does not only append at the right edge of a tree.
+     * @param count The number of records.
+     * @return The records, shuffled with the seed.
+     */
+    public List<Student> shuffledStudents(int count) {
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(student(i));
+        }
+        Collections.shuffle(students, new Random(seed));
+        return students;
+    }
+
+    /**
+     * Writes records 0 to count - 1 to a CSV file with the header of the dataset.
+     * @param path The path of the file.
+     * @param count The number of records.
+     * @throws IOException If an I/O error occurs.
+     */
+    public void writeCsv(Path path, long count) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(CSV_HEADER);
+            out.newLine();
+            StringBuilder line = new StringBuilder(128);
+            for (long i = 0; i < count; i++) {
+                Student s = student(i);
+                line.setLength(0);
+                line.append(s.getStudentId()).append(',').append(s.getAge()).append(',').append(s.getGender())
+                        .append(',').append(s.getStudyHoursPerDay()).append(',').append(s.getSocialMediaHours())
+                        .append(',').append(s.getNetflixHours()).append(',').append(yesNo(s.isPartTimeJob()))
+                        .append(',').append(s.getAttendancePercentage()).append(',').append(s.getSleepHours())
+                        .append(',').append(s.getDietQuality()).append(',').append(s.getExerciseFrequency())
+                        .append(',').append(s.getParentalEducationLevel()).append(',').append(s.getInternetQuality())
+                        .append(',').append(s.getMentalHealthRating()).append(',')
+                        .append(yesNo(s.isExtracurricularParticipation())).append(',').append(s.getExamScore());
+                out.append(line);
+                out.newLine();
+            }
+        }
+    }
+
+    private static String yesNo(boolean value) {
+        return value ? "Yes" : "No";
+    }
+
+    /**
+     * Draws a value with one decimal, uniform between two bounds given in tenths.
+     */
+    private static double tenths(SplittableRandom random, int lowTenths, int highTenths) {
+        return (lowTenths + random.nextInt(highTenths - lowTenths + 1)) / 10.0;
+    }
+
+    private static String pick(SplittableRandom random, String[] values, int[] cumulativeShares) {
+        int draw = random.nextInt(100);
+        int i = 0;
+        while (draw >= cumulativeShares[i]) {
+            i++;
+        }
+        return values[i];
+    }
+
+    /**
+     * Scrambles a long (the finalizer of SplitMix64), so that the generators of consecutive
+     * records are unrelated.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public static void main(String[] args) throws IOException {
+        long count = 1_000_000;
+        String output = "data/synthetic.csv";
+        long seed = PerformanceAnalyzer.DEFAULT_SEED;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-n":
+                    count = Long.parseLong(args[++i]);
+                    break;
+                case "-o":
+                    output = args[++i];
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        long startTime = System.nanoTime();
+        new WorkloadGenerator(seed).writeCsv(Paths.get(output), count);
+        System.out.printf("Wrote %d students to %s in %.1f s%n", count, output, (System.nanoTime() - startTime) / 1e9);
+    }
+}